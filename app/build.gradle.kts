@@ -33,6 +33,9 @@ android {
 	kotlinOptions {
 		jvmTarget = "11"
 	}
+	testOptions {
+		unitTests.isReturnDefaultValues = true
+	}
 }
 
 dependencies {
@@ -41,4 +44,6 @@ dependencies {
 	implementation("androidx.appcompat:appcompat:1.7.0")
 	implementation("com.google.android.material:material:1.12.0")
 	implementation("org.lsposed.hiddenapibypass:hiddenapibypass:4.3")
+
+	testImplementation("junit:junit:4.13.2")
 }
\ No newline at end of file
@@ -51,7 +51,7 @@ class MyCanvas(val w: Int, val h: Int) : Canvas() {
 			unsupported("The default paint is using a weird shader?")
 	}
 	val st = RemoteComposeState()
-	val buf = RemoteComposeBuffer(st)
+	val buf = RemoteComposeBuffer.obtain(st, 4096)
 	private val region = Region(0, 0, w, h)
 	private val boundsCache = RectF()
 
@@ -27,7 +27,8 @@ abstract class BaseWidgetProvider : AppWidgetProvider() {
 				if (it == null) {
 					return@createWidgetInSizes RemoteViews(context.packageName, R.layout.unsupported_launcher)
 				}
-				RemoteViews(render(context, it).toDrawInstructions())
+				val buf = render(context, it)
+				RemoteViews(buf.toDrawInstructions()).also { buf.recycle() }
 			}
 			appWidgetManager.updateAppWidget(appWidgetId, views)
 		}
@@ -51,7 +52,7 @@ abstract class BaseWidgetProvider : AppWidgetProvider() {
 }
 
 fun RemoteComposeBuffer.toDrawInstructions() =
-	RemoteViews.DrawInstructions.Builder(listOf(buffer.buffer)).build()
+	RemoteViews.DrawInstructions.Builder(listOf(toByteArray())).build()
 
 fun AppWidgetManager.createWidgetInSizes(context: Context, appWidgetId: Int, creator: (SizeF?) -> RemoteViews): RemoteViews {
 	val sizes =
@@ -87,7 +88,7 @@ class MainActivity : Activity() {
 			setTheme(Theme.UNSPECIFIED)
 			val stBuf: RemoteComposeBuffer = renderComposeWidget(SizeF(100f, 100f))
 			doOnLayout {
-				setDocument(RemoteComposeDocument(ByteArrayInputStream(stBuf.buffer.buffer)))
+				setDocument(RemoteComposeDocument(ByteArrayInputStream(stBuf.toByteArray())))
 			}
 		})*/
 		//finish()
@@ -28,7 +28,7 @@ class AgslWidgetProvider : BaseWidgetProvider() {
 
 	override fun render(context: Context, size: SizeF): RemoteComposeBuffer {
 		val state = RemoteComposeState()
-		val buf = RemoteComposeBuffer(state)
+		val buf = RemoteComposeBuffer.obtain(state, 4096)
 		buf.header(size.width.toInt(), size.height.toInt(), null)
 		// This throws an error but I do not care. I couldn't get the scale stuff working properly.
 		buf.setRootContentBehavior(
@@ -96,7 +96,7 @@ class WidgetProvider : BaseWidgetProvider() {
 class AnimationWidgetProvider : BaseWidgetProvider() {
 	override fun render(context: Context, size: SizeF): RemoteComposeBuffer {
 		val state = RemoteComposeState()
-		val buf = RemoteComposeBuffer(state)
+		val buf = RemoteComposeBuffer.obtain(state, 4096)
 		buf.header(size.width.toInt(), size.height.toInt(), null)
 		// This throws an error but I do not care. I couldn't get the scale stuff working properly.
 		buf.setRootContentBehavior(
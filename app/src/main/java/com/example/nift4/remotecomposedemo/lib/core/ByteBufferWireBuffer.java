@@ -0,0 +1,186 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.nift4.remotecomposedemo.lib.core;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * A read only WireBuffer backed by a ByteBuffer (direct or memory mapped)
+ * Documents are decoded in place, without copying them on the heap first.
+ */
+public class ByteBufferWireBuffer extends WireBuffer {
+    private final ByteBuffer mByteBuffer;
+
+    /**
+     * Read from [position, limit) of the given buffer.
+     * The buffer is sliced, so the caller's position and limit are left untouched.
+     *
+     * @param byteBuffer the buffer holding the document
+     */
+    public ByteBufferWireBuffer(ByteBuffer byteBuffer) {
+        super(new byte[0], 0);
+        mByteBuffer = byteBuffer.slice().order(ByteOrder.BIG_ENDIAN);
+        mSize = mByteBuffer.remaining();
+        mMaxSize = mSize;
+    }
+
+    public ByteBuffer getByteBuffer() {
+        return mByteBuffer;
+    }
+
+    /**
+     * The content is not held in a heap array, use asByteBuffer() to read it in place
+     * or toByteArray() for an explicit copy.
+     *
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public byte[] getBuffer() {
+        throw new UnsupportedOperationException("ByteBufferWireBuffer has no backing array,"
+                + " use asByteBuffer() or toByteArray()");
+    }
+
+    @Override
+    public byte[] toByteArray() {
+        byte[] copy = new byte[mSize];
+        mByteBuffer.get(0, copy, 0, mSize);
+        return copy;
+    }
+
+    @Override
+    public ByteBuffer asByteBuffer() {
+        return mByteBuffer.asReadOnlyBuffer();
+    }
+
+    @Override
+    public void recycle() {
+        // not pooled, the ByteBuffer is owned by the caller
+    }
+
+    @Override
+    void resize(int need) {
+        throw new UnsupportedOperationException("ByteBufferWireBuffer is read only");
+    }
+
+    ///////////////////////////////////////////////////////////////////////////
+    // Read values
+    ///////////////////////////////////////////////////////////////////////////
+
+    @Override
+    public boolean readBoolean() {
+        return mByteBuffer.get(mIndex++) == 1;
+    }
+
+    @Override
+    public int readByte() {
+        return 0xFF & mByteBuffer.get(mIndex++);
+    }
+
+    @Override
+    public int readShort() {
+        int value = 0xFFFF & mByteBuffer.getShort(mIndex);
+        mIndex += 2;
+        return value;
+    }
+
+    @Override
+    public int peekInt() {
+        return mByteBuffer.getInt(mIndex);
+    }
+
+    @Override
+    public int readInt() {
+        int value = mByteBuffer.getInt(mIndex);
+        mIndex += 4;
+        return value;
+    }
+
+    @Override
+    public long readLong() {
+        long value = mByteBuffer.getLong(mIndex);
+        mIndex += 8;
+        return value;
+    }
+
+    @Override
+    public byte[] readBuffer() {
+        int count = readCompactInt();
+        checkRemaining(count);
+        byte[] b = new byte[count];
+        mByteBuffer.get(mIndex, b, 0, count);
+        mIndex += count;
+        return b;
+    }
+
+    @Override
+    public byte[] readBuffer(int maxSize) {
+        int count = readCompactInt();
+        if (count < 0 || count > maxSize) {
+            throw new RuntimeException("attempt read a buff of invalid size 0 <= "
+                    + count + " > " + maxSize);
+        }
+        checkRemaining(count);
+        byte[] b = new byte[count];
+        mByteBuffer.get(mIndex, b, 0, count);
+        mIndex += count;
+        return b;
+    }
+
+    @Override
+    public void readFloats(float[] dst, int off, int len) {
+        if (len < BULK_THRESHOLD) {
+            checkRemaining(len * 4);
+            for (int i = off; i < off + len; i++) {
+                dst[i] = Float.intBitsToFloat(readInt());
+            }
+            return;
+        }
+        view(len * 4).asFloatBuffer().get(dst, off, len);
+        mIndex += len * 4;
+    }
+
+    @Override
+    public void readInts(int[] dst, int off, int len) {
+        if (len < BULK_THRESHOLD) {
+            checkRemaining(len * 4);
+            for (int i = off; i < off + len; i++) {
+                dst[i] = readInt();
+            }
+            return;
+        }
+        view(len * 4).asIntBuffer().get(dst, off, len);
+        mIndex += len * 4;
+    }
+
+    private ByteBuffer view(int length) {
+        checkRemaining(length);
+        ByteBuffer view = mByteBuffer.duplicate();
+        view.position(mIndex).limit(mIndex + length);
+        return view;
+    }
+
+    /**
+     * Fail before allocating anything if the content is shorter than announced,
+     * e.g. while a document is still being received.
+     */
+    private void checkRemaining(int length) {
+        if (length < 0 || length > mSize - mIndex) {
+            throw new IndexOutOfBoundsException("cannot read " + length
+                    + " bytes at " + mIndex + ", size " + mSize);
+        }
+    }
+}
@@ -28,6 +28,32 @@ public interface CompanionOperation {
      */
     void read(WireBuffer buffer, List<Operation> operations);
 
+    /**
+     * Read past the operation without creating it, used to index documents lazily
+     * (see LazyOperationList). Only operations painting constant values can be skipped.
+     *
+     * @param buffer positioned after the operation type
+     * @return true if the operation was skipped, false if it needs to be created now
+     * (the position of the buffer is then unspecified)
+     */
+    default boolean skip(WireBuffer buffer) {
+        return false;
+    }
+
+    /**
+     * Check the operation without creating it (see DocumentVerifier). Operations with
+     * variable sized payloads or referencing variables check them here, before anything
+     * is allocated by read().
+     *
+     * @param buffer   positioned after the operation type
+     * @param verifier checks ids and lengths, throws if they are invalid
+     * @return true if the buffer was moved past the operation, false if the operation
+     * needs to be read to be checked (the position of the buffer is then unspecified)
+     */
+    default boolean verify(WireBuffer buffer, DocumentVerifier verifier) {
+        return false;
+    }
+
     // Debugging / Documentation utility functions
     String name();
     int id();
@@ -0,0 +1,231 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.nift4.remotecomposedemo.lib.core;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Optional deflate container around a RemoteCompose document.
+ * <p>
+ * Layout: MAGIC (4 bytes), then a sequence of blocks
+ * [raw length (int)][compressed length (int)][deflate data], terminated by a block
+ * with a raw length of 0. Each block is compressed independently so the document
+ * can be inflated block by block while it is being read.
+ * A plain document always starts with the HEADER operation (0), so the magic
+ * cannot be mistaken for one.
+ */
+public class CompressedContainer {
+    public static final int MAGIC = 0x52435A01; // "RCZ" + container version 1
+    static final int BLOCK_SIZE = 64 * 1024;
+    private static final int MAX_BLOCK_SIZE = 16 * 1024 * 1024;
+
+    private CompressedContainer() {
+    }
+
+    /**
+     * Returns true if the content at the current position of the ByteBuffer
+     * is a compressed container. The position is not modified.
+     */
+    public static boolean isCompressed(ByteBuffer byteBuffer) {
+        return byteBuffer.remaining() >= 4
+                && byteBuffer.duplicate().order(ByteOrder.BIG_ENDIAN).getInt() == MAGIC;
+    }
+
+    /**
+     * Returns true if the given first bytes of a document are the container magic
+     */
+    public static boolean isCompressed(byte[] start, int length) {
+        return length >= 4
+                && ((start[0] & 0xFF) << 24 | (start[1] & 0xFF) << 16
+                | (start[2] & 0xFF) << 8 | (start[3] & 0xFF)) == MAGIC;
+    }
+
+    /**
+     * Write the content of the buffer as a compressed container
+     *
+     * @param buffer the document to compress, [0, size)
+     * @param out    where to write the container
+     */
+    public static void write(WireBuffer buffer, OutputStream out) throws IOException {
+        DataOutputStream dos = new DataOutputStream(out);
+        ByteBuffer src = buffer.asByteBuffer(); // no copy, the buffer may be direct
+        int size = buffer.getSize();
+        byte[] scratch = new byte[BLOCK_SIZE + BLOCK_SIZE / 2];
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+        try {
+            dos.writeInt(MAGIC);
+            for (int offset = 0; offset < size; offset += BLOCK_SIZE) {
+                int length = Math.min(BLOCK_SIZE, size - offset);
+                deflater.reset();
+                src.limit(offset + length).position(offset);
+                deflater.setInput(src);
+                deflater.finish();
+                int compressed = 0;
+                while (!deflater.finished()) {
+                    if (compressed == scratch.length) {
+                        scratch = Arrays.copyOf(scratch, scratch.length * 2);
+                    }
+                    compressed += deflater.deflate(scratch, compressed,
+                            scratch.length - compressed);
+                }
+                dos.writeInt(length);
+                dos.writeInt(compressed);
+                dos.write(scratch, 0, compressed);
+            }
+            dos.writeInt(0);
+            dos.flush();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Compress the content of the buffer into a new array
+     */
+    public static byte[] compress(WireBuffer buffer) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(buffer.getSize() / 4 + 64);
+        try {
+            write(buffer, out);
+        } catch (IOException e) {
+            throw new RuntimeException(e); // cannot happen on a ByteArrayOutputStream
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Inflate a container from a stream, one block at a time. The stream must be
+     * positioned after the magic.
+     *
+     * @param in the stream to read blocks from
+     * @return a WireBuffer holding the document, positioned at 0
+     */
+    public static WireBuffer inflate(InputStream in) throws IOException {
+        DataInputStream dis = new DataInputStream(in);
+        WireBuffer buffer = new WireBuffer(BLOCK_SIZE);
+        byte[] scratch = new byte[BLOCK_SIZE];
+        Inflater inflater = new Inflater();
+        try {
+            while (true) {
+                int length = dis.readInt();
+                if (length == 0) {
+                    break;
+                }
+                int compressed = dis.readInt();
+                checkBlock(length, compressed);
+                if (compressed > scratch.length) {
+                    scratch = new byte[compressed];
+                }
+                dis.readFully(scratch, 0, compressed);
+                inflateBlock(inflater, scratch, compressed, length, buffer);
+            }
+        } finally {
+            inflater.end();
+        }
+        buffer.setIndex(0);
+        return buffer;
+    }
+
+    /**
+     * Inflate a container held in a ByteBuffer (heap, direct or memory mapped),
+     * starting at its position (the magic).
+     *
+     * @param byteBuffer the container
+     * @return a WireBuffer holding the document, positioned at 0
+     */
+    public static WireBuffer inflate(ByteBuffer byteBuffer) {
+        ByteBuffer in = byteBuffer.duplicate().order(ByteOrder.BIG_ENDIAN);
+        if (in.getInt() != MAGIC) {
+            throw new RuntimeException("not a compressed RemoteCompose document");
+        }
+        WireBuffer buffer = new WireBuffer(BLOCK_SIZE);
+        byte[] scratch = new byte[BLOCK_SIZE];
+        Inflater inflater = new Inflater();
+        try {
+            while (true) {
+                int length = in.getInt();
+                if (length == 0) {
+                    break;
+                }
+                int compressed = in.getInt();
+                checkBlock(length, compressed);
+                if (compressed > scratch.length) {
+                    scratch = new byte[compressed];
+                }
+                in.get(scratch, 0, compressed);
+                inflateBlock(inflater, scratch, compressed, length, buffer);
+            }
+        } finally {
+            inflater.end();
+        }
+        buffer.setIndex(0);
+        return buffer;
+    }
+
+    private static void checkBlock(int length, int compressed) {
+        if (length < 0 || length > MAX_BLOCK_SIZE
+                || compressed < 0 || compressed > deflateBound(length)) {
+            throw new RuntimeException("corrupted block " + length + "/" + compressed);
+        }
+    }
+
+    /**
+     * Largest deflate output for length bytes (zlib's compressBound()), a larger
+     * compressed length is corrupt and is rejected before allocating it
+     */
+    static int deflateBound(int length) {
+        return length + (length >> 12) + (length >> 14) + (length >> 25) + 13;
+    }
+
+    /**
+     * Inflate one block directly at the end of the destination buffer
+     */
+    private static void inflateBlock(Inflater inflater, byte[] in, int compressed,
+                                     int length, WireBuffer out) {
+        out.resize(length + 1);
+        inflater.reset();
+        inflater.setInput(in, 0, compressed);
+        try {
+            int count = 0;
+            while (count < length) {
+                int n = inflater.inflate(out.mBuffer, out.mIndex + count, length - count);
+                if (n == 0) {
+                    // all the input is given and there is room left: the stream ended,
+                    // is truncated or needs a preset dictionary, it can't progress
+                    break;
+                }
+                count += n;
+            }
+            if (count != length) {
+                throw new RuntimeException("truncated block " + count + "/" + length);
+            }
+        } catch (DataFormatException e) {
+            throw new RuntimeException(e);
+        }
+        out.mIndex += length;
+        out.mSize = out.mIndex;
+    }
+}
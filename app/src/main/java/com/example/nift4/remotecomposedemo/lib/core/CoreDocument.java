@@ -15,11 +15,19 @@
  */
 package com.example.nift4.remotecomposedemo.lib.core;
 
+import com.example.nift4.remotecomposedemo.lib.core.operations.Header;
 import com.example.nift4.remotecomposedemo.lib.core.operations.RootContentBehavior;
+import com.example.nift4.remotecomposedemo.lib.core.operations.RootContentDescription;
+import com.example.nift4.remotecomposedemo.lib.core.operations.TextData;
 import com.example.nift4.remotecomposedemo.lib.core.operations.Theme;
+import com.example.nift4.remotecomposedemo.lib.core.operations.utilities.easing.AnimationSpecCache;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Clock;
 import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 /**
@@ -28,7 +36,7 @@ import java.util.Set;
  */
 public class CoreDocument {
 
-    ArrayList<Operation> mOperations;
+    List<Operation> mOperations;
     RemoteComposeState mRemoteComposeState = new RemoteComposeState();
     TimeVariables mTimeVariables = new TimeVariables();
     // Semantic version of the document
@@ -48,6 +56,10 @@ public class CoreDocument {
 
     RemoteComposeBuffer mBuffer = new RemoteComposeBuffer(mRemoteComposeState);
 
+    DisplayList mDisplayList; // compiled operations, built in initializeContext()
+    ExpressionGraph mExpressionGraph; // built in initializeContext()
+    float mBakedEasingError = 0; // see setBakedEasingError()
+
     public String getContentDescription() {
         return mContentDescription;
     }
@@ -266,6 +278,17 @@ public class CoreDocument {
         void click(int id, String metadata);
     }
 
+    /**
+     * Notified while a document is loaded with initFromStream()
+     */
+    public interface LoadCallbacks {
+        /**
+         * The header and root content behavior have been decoded: the document size
+         * and sizing behavior are known, the rest of the document may still be loading.
+         */
+        void onDocumentProperties(CoreDocument document);
+    }
+
     HashSet<ClickCallbacks> mClickListeners = new HashSet<>();
     HashSet<ClickAreaRepresentation> mClickAreas = new HashSet<>();
 
@@ -346,15 +369,122 @@ public class CoreDocument {
         }
     }
 
+    /**
+     * Sample the easing curves of the animations of the documents loaded afterwards
+     * into tables (see BakedEasing), trading the loading time for a cheaper animation
+     *
+     * @param maxError the largest error allowed on the eased value in [0, 1],
+     *                 0 keeps the analytical curves (the default)
+     */
+    public void setBakedEasingError(float maxError) {
+        mBakedEasingError = maxError;
+    }
+
+    public float getBakedEasingError() {
+        return mBakedEasingError;
+    }
+
     /**
      * Load operations from the given buffer
      */
     public void initFromBuffer(RemoteComposeBuffer buffer) {
-        mOperations = new ArrayList<Operation>();
-        buffer.inflateFromBuffer(mOperations);
+        initFromBuffer(buffer, false);
+    }
+
+    /**
+     * Load operations from the given buffer
+     *
+     * @param buffer the document
+     * @param lazy   if true only index the operations, constant paint operations
+     *               are read from the buffer when painted (see LazyOperationList).
+     *               The buffer must stay valid as long as the document is used.
+     * @throws RuntimeException if the document is invalid (see DocumentVerifier)
+     */
+    public void initFromBuffer(RemoteComposeBuffer buffer, boolean lazy) {
+        // verified while decoded, in one pass
+        DocumentVerifier verifier = new DocumentVerifier();
+        AnimationSpecCache specs = new AnimationSpecCache(mBakedEasingError);
+        if (lazy) {
+            mOperations = buffer.indexFromBuffer(verifier, specs);
+        } else {
+            ArrayList<Operation> operations = new ArrayList<Operation>();
+            buffer.inflateFromBuffer(operations, verifier, specs);
+            mOperations = operations;
+        }
+        mDisplayList = null;
+        mExpressionGraph = null;
         mBuffer = buffer;
     }
 
+    private static final int STREAM_CHUNK_SIZE = 16 * 1024;
+
+    /**
+     * Load operations from a stream, decoding them as the bytes arrive instead of
+     * waiting for the whole document. The stream is closed once read.
+     *
+     * @param inputStream the document, plain or compressed
+     * @param callbacks   notified as soon as the document properties are known, may be null
+     */
+    public void initFromStream(InputStream inputStream, LoadCallbacks callbacks)
+            throws IOException {
+        ArrayList<Operation> operations = new ArrayList<Operation>();
+        mOperations = operations;
+        mDisplayList = null;
+        mExpressionGraph = null;
+        RemoteComposeStreamParser parser = new RemoteComposeStreamParser(operations,
+                new AnimationSpecCache(mBakedEasingError));
+        byte[] chunk = new byte[STREAM_CHUNK_SIZE];
+        boolean notified = false;
+        try {
+            int ret;
+            while ((ret = inputStream.read(chunk)) != -1) {
+                parser.feed(chunk, 0, ret);
+                if (!notified && loadDocumentProperties()) {
+                    notified = true;
+                    if (callbacks != null) {
+                        callbacks.onDocumentProperties(this);
+                    }
+                }
+            }
+        } finally {
+            inputStream.close();
+        }
+        parser.finish();
+        if (!notified) {
+            loadDocumentProperties();
+            if (callbacks != null) {
+                callbacks.onDocumentProperties(this);
+            }
+        }
+        mBuffer = new RemoteComposeBuffer(mRemoteComposeState, parser.getBuffer());
+    }
+
+    /**
+     * Apply the document preamble (header, root content behavior) decoded so far,
+     * without needing a RemoteContext.
+     *
+     * @return true if an operation past the preamble has been decoded, ie. it is complete
+     */
+    private boolean loadDocumentProperties() {
+        for (Operation op : mOperations) {
+            if (op instanceof Header) {
+                Header header = (Header) op;
+                setVersion(header.getMajorVersion(), header.getMinorVersion(),
+                        header.getPatchVersion());
+                mWidth = header.getWidth();
+                mHeight = header.getHeight();
+                mRequiredCapabilities = header.getCapabilities();
+            } else if (op instanceof RootContentBehavior) {
+                RootContentBehavior behavior = (RootContentBehavior) op;
+                setRootContentBehavior(behavior.getScroll(), behavior.getAlignment(),
+                        behavior.getSizing(), behavior.getMode());
+            } else if (!(op instanceof TextData || op instanceof RootContentDescription)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * Called when an initialization is needed, allowing the document to eg load
      * resources / cache them.
@@ -362,22 +492,36 @@ public class CoreDocument {
     public void initializeContext(RemoteContext context) {
         mRemoteComposeState.reset();
         mClickAreas.clear();
+        mFrameValid = false;
         mRemoteComposeState.setNextId(RemoteComposeState.START_ID);
         context.mDocument = this;
         context.mRemoteComposeState = mRemoteComposeState;
         // mark context to be in DATA mode, which will skip the painting ops.
         context.mMode = RemoteContext.ContextMode.DATA;
+        // the frame clock is only advanced by frames, see updateFrame()
         mTimeVariables.updateTime(context);
 
-        for (Operation op : mOperations) {
+        LazyOperationList lazy = (mOperations instanceof LazyOperationList)
+                ? (LazyOperationList) mOperations : null;
+        int count = mOperations.size();
+        for (int i = 0; i < count; i++) {
+            Operation op = (lazy != null) ? lazy.peek(i) : mOperations.get(i);
+            if (op == null) {
+                continue; // constant paint operation, nothing to do in DATA mode
+            }
+            if (op instanceof ExpressionOperation) {
+                continue; // evaluated by the graph below, once the variables they read are set
+            }
             if (op instanceof VariableSupport) {
                 ((VariableSupport) op).updateVariables(context);
                 ((VariableSupport) op).registerListening(context);
             }
             op.apply(context);
         }
+        mExpressionGraph = ExpressionGraph.build(mOperations);
+        mExpressionGraph.evaluate(context);
         context.mMode = RemoteContext.ContextMode.UNSET;
-
+        mDisplayList = DisplayList.build(mOperations);
     }
 
     ///////////////////////////////////////////////////////////////////////////////////////////////
@@ -490,15 +634,60 @@ public class CoreDocument {
     private final float[] mScaleOutput = new float[2];
     private final float[] mTranslateOutput = new float[2];
     private int mRepaintNext = -1; // delay to next repaint -1 = don't 1 = asap
+    private boolean mFrameValid = false; // a frame was updated since initializeContext()
+    private int mFrameTheme;
+    private float mFrameWidth;
+    private float mFrameHeight;
 
     /**
-     * Returns > 0 if it needs to repaint
+     * Returns > 0 if it needs to repaint, the delay in milliseconds until it changes
      * @return
      */
     public int needsRepaint() {
         return mRepaintNext;
     }
 
+    /**
+     * Delay until the document changes by itself: as soon as possible while an
+     * animation runs (unless the frame clock is paused) or the continuous time is read,
+     * otherwise the next change of the quantized time variables the document reads,
+     * -1 if it only changes on input.
+     */
+    private int computeRepaintDelay(RemoteContext context) {
+        boolean animating = context.isAnimationTimeAdvancing() && mExpressionGraph != null
+                && mExpressionGraph.isAnimating(context.getAnimationTime());
+        if (animating || reads(RemoteContext.ID_CONTINUOUS_SEC)) {
+            return 1;
+        }
+        if (reads(RemoteContext.ID_TIME_IN_SEC)) {
+            return mTimeVariables.getMillisToNextSecond();
+        }
+        if (reads(RemoteContext.ID_TIME_IN_MIN)) {
+            return mTimeVariables.getMillisToNextMinute();
+        }
+        if (reads(RemoteContext.ID_TIME_IN_HR)) {
+            return mTimeVariables.getMillisToNextHour();
+        }
+        if (reads(RemoteContext.ID_CALENDAR_MONTH)) {
+            return mTimeVariables.getMillisToNextDay();
+        }
+        return -1;
+    }
+
+    // listeners and expressions reading the variable id
+    private boolean reads(int id) {
+        return mRemoteComposeState.hasListeners(id)
+                || (mExpressionGraph != null && mExpressionGraph.reads(id));
+    }
+
+    /**
+     * Set the clock time variables are read from, by default the system clock
+     * in the default time zone
+     */
+    public void setClock(Clock clock) {
+        mTimeVariables = new TimeVariables(clock);
+    }
+
     /**
      * Paint the document
      *
@@ -506,6 +695,52 @@ public class CoreDocument {
      * @param theme   the theme we want to use for this document.
      */
     public void paint(RemoteContext context, int theme) {
+        updateFrame(context, theme);
+        draw(context, theme);
+    }
+
+    /**
+     * Update the variables of the document for a new frame, to be drawn with draw().
+     * The frame is the same as the previous one if no operation had to be updated
+     * and neither the theme nor the size of the context changed, a player can then
+     * draw again what it recorded instead of calling draw().
+     *
+     * @param context the provided PaintContext, sized
+     * @param theme   the theme we want to use for this document.
+     * @return true if the frame differs from the previous one
+     */
+    public boolean updateFrame(RemoteContext context, int theme) {
+        context.mMode = RemoteContext.ContextMode.PAINT;
+        context.mRemoteComposeState = mRemoteComposeState;
+        context.updateAnimationTime();
+        mTimeVariables.updateTime(context);
+        context.loadFloat(RemoteContext.ID_WINDOW_WIDTH, getWidth());
+        context.loadFloat(RemoteContext.ID_WINDOW_HEIGHT, getHeight());
+        if (mExpressionGraph != null) {
+            mExpressionGraph.evaluate(context);
+        }
+        context.updateOps();
+        mRepaintNext = computeRepaintDelay(context);
+        boolean changed = mRemoteComposeState.takeChanged()
+                || !mFrameValid
+                || mExpressionGraph == null // expressions are then evaluated by draw()
+                || theme != mFrameTheme
+                || context.mWidth != mFrameWidth
+                || context.mHeight != mFrameHeight;
+        mFrameValid = true;
+        mFrameTheme = theme;
+        mFrameWidth = context.mWidth;
+        mFrameHeight = context.mHeight;
+        return changed;
+    }
+
+    /**
+     * Draw the frame prepared by updateFrame()
+     *
+     * @param context the provided PaintContext
+     * @param theme   the theme we want to use for this document.
+     */
+    public void draw(RemoteContext context, int theme) {
         context.mMode = RemoteContext.ContextMode.PAINT;
 
         // current theme starts as UNSPECIFIED, until a Theme setter
@@ -521,12 +756,16 @@ public class CoreDocument {
             context.mPaintContext.translate(mTranslateOutput[0], mTranslateOutput[1]);
             context.mPaintContext.scale(mScaleOutput[0], mScaleOutput[1]);
         }
-        mTimeVariables.updateTime(context);
-        context.loadFloat(RemoteContext.ID_WINDOW_WIDTH, getWidth());
-        context.loadFloat(RemoteContext.ID_WINDOW_HEIGHT, getHeight());
-        mRepaintNext = context.updateOps();
 
+        if (mDisplayList != null) {
+            mDisplayList.paint(context, theme);
+            context.mMode = RemoteContext.ContextMode.UNSET;
+            return;
+        }
         for (Operation op : mOperations) {
+            if (mExpressionGraph != null && op instanceof ExpressionOperation) {
+                continue; // already evaluated
+            }
             // operations will only be executed if no theme is set (ie UNSPECIFIED)
             // or the theme is equal as the one passed in argument to paint.
             boolean apply = true;
@@ -0,0 +1,264 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.nift4.remotecomposedemo.lib.core;
+
+import com.example.nift4.remotecomposedemo.lib.core.operations.Theme;
+import com.example.nift4.remotecomposedemo.lib.core.operations.Utils;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Compiled form of the operations of a document, used to paint it.
+ * <p>
+ * Simple primitives (rect, circle, line, oval, arc, round rect, clip rect and
+ * matrix transforms) are stored as an opcode (their operation id) plus their float
+ * arguments in flat arrays, and painted by a single loop calling PaintContext directly.
+ * Every other operation is kept as an object and applied in sequence, except expressions
+ * which are evaluated before painting (see ExpressionGraph).
+ * Arguments referencing variables (NaN) are resolved once at the start of paint().
+ */
+public class DisplayList {
+    private static final int OPERATION = -1; // opcode of an operation applied as an object
+
+    private int[] mOpcodes = new int[64];
+    private float[] mArgs = new float[256]; // as encoded, NaN for variables
+    private float[] mValues = new float[256]; // resolved arguments
+    private int[] mVariables = new int[16]; // index in mArgs of the variable arguments
+    private Operation[] mOperations = new Operation[16];
+    private int mCount = 0;
+    private int mArgCount = 0;
+    private int mVariableCount = 0;
+    private int mOperationCount = 0;
+
+    /**
+     * Compile the operations of a document. Constant operations not yet created by a
+     * LazyOperationList are recorded directly from its buffer, without creating them.
+     */
+    public static DisplayList build(List<Operation> operations) {
+        DisplayList list = new DisplayList();
+        LazyOperationList lazy = (operations instanceof LazyOperationList)
+                ? (LazyOperationList) operations : null;
+        int count = operations.size();
+        for (int i = 0; i < count; i++) {
+            Operation op = (lazy != null) ? lazy.peek(i) : operations.get(i);
+            if (op == null) {
+                if (lazy.record(i, list)) {
+                    continue;
+                }
+                op = lazy.get(i);
+            }
+            if (op instanceof ExpressionOperation) {
+                continue; // evaluated by the ExpressionGraph of the document
+            }
+            if (op instanceof DisplayListOperation) {
+                ((DisplayListOperation) op).record(list);
+            } else {
+                list.add(op);
+            }
+        }
+        return list;
+    }
+
+    /**
+     * Number of float arguments of a primitive, -1 if the opcode can't be compiled
+     */
+    public static int arity(int opcode) {
+        switch (opcode) {
+            case Operations.MATRIX_TRANSLATE:
+                return 2;
+            case Operations.DRAW_CIRCLE:
+            case Operations.MATRIX_ROTATE:
+                return 3;
+            case Operations.DRAW_RECT:
+            case Operations.DRAW_LINE:
+            case Operations.DRAW_OVAL:
+            case Operations.CLIP_RECT:
+            case Operations.MATRIX_SCALE:
+                return 4;
+            case Operations.DRAW_ARC:
+            case Operations.DRAW_ROUND_RECT:
+                return 6;
+            default:
+                return -1;
+        }
+    }
+
+    /**
+     * Add an operation applied as an object
+     */
+    public void add(Operation operation) {
+        if (mOperationCount == mOperations.length) {
+            mOperations = Arrays.copyOf(mOperations, mOperationCount * 2);
+        }
+        mOperations[mOperationCount++] = operation;
+        opcode(OPERATION);
+    }
+
+    public void add(int opcode, float v1, float v2) {
+        begin(opcode, 2);
+        arg(v1);
+        arg(v2);
+    }
+
+    public void add(int opcode, float v1, float v2, float v3) {
+        begin(opcode, 3);
+        arg(v1);
+        arg(v2);
+        arg(v3);
+    }
+
+    public void add(int opcode, float v1, float v2, float v3, float v4) {
+        begin(opcode, 4);
+        arg(v1);
+        arg(v2);
+        arg(v3);
+        arg(v4);
+    }
+
+    public void add(int opcode, float v1, float v2, float v3, float v4, float v5, float v6) {
+        begin(opcode, 6);
+        arg(v1);
+        arg(v2);
+        arg(v3);
+        arg(v4);
+        arg(v5);
+        arg(v6);
+    }
+
+    /**
+     * Start a primitive, to be followed by its arguments with arg()
+     */
+    void begin(int opcode, int argCount) {
+        if (arity(opcode) != argCount) {
+            throw new RuntimeException("invalid display list opcode " + opcode
+                    + " with " + argCount + " arguments");
+        }
+        opcode(opcode);
+    }
+
+    void arg(float value) {
+        if (mArgCount == mArgs.length) {
+            mArgs = Arrays.copyOf(mArgs, mArgCount * 2);
+            mValues = Arrays.copyOf(mValues, mArgCount * 2);
+        }
+        if (Float.isNaN(value)) {
+            if (mVariableCount == mVariables.length) {
+                mVariables = Arrays.copyOf(mVariables, mVariableCount * 2);
+            }
+            mVariables[mVariableCount++] = mArgCount;
+        }
+        mArgs[mArgCount] = value;
+        mValues[mArgCount] = value;
+        mArgCount++;
+    }
+
+    private void opcode(int opcode) {
+        if (mCount == mOpcodes.length) {
+            mOpcodes = Arrays.copyOf(mOpcodes, mCount * 2);
+        }
+        mOpcodes[mCount++] = opcode;
+    }
+
+    public int size() {
+        return mCount;
+    }
+
+    /**
+     * Paint the list, following the same theme rules as CoreDocument.paint()
+     *
+     * @param context the context to paint with
+     * @param theme   the theme we want to use for this document.
+     */
+    public void paint(RemoteContext context, int theme) {
+        float[] values = mValues;
+        for (int i = 0; i < mVariableCount; i++) {
+            int index = mVariables[i];
+            values[index] = context.getFloat(Utils.idFromNan(mArgs[index]));
+        }
+        PaintContext paint = (context.getMode() == RemoteContext.ContextMode.PAINT)
+                ? context.getPaintContext() : null;
+        int[] opcodes = mOpcodes;
+        int arg = 0;
+        int operation = 0;
+        for (int i = 0; i < mCount; i++) {
+            int opcode = opcodes[i];
+            // operations will only be executed if no theme is set (ie UNSPECIFIED)
+            // or the theme is equal as the one passed in argument to paint.
+            boolean apply = theme == Theme.UNSPECIFIED
+                    || context.getTheme() == theme
+                    || context.getTheme() == Theme.UNSPECIFIED;
+            if (opcode == OPERATION) {
+                Operation op = mOperations[operation++];
+                if (apply || op instanceof Theme) {
+                    op.apply(context);
+                }
+                continue;
+            }
+            if (!apply || paint == null) {
+                arg += arity(opcode);
+                continue;
+            }
+            int a = arg;
+            switch (opcode) {
+                case Operations.DRAW_RECT:
+                    paint.drawRect(values[a], values[a + 1], values[a + 2], values[a + 3]);
+                    arg += 4;
+                    break;
+                case Operations.DRAW_CIRCLE:
+                    paint.drawCircle(values[a], values[a + 1], values[a + 2]);
+                    arg += 3;
+                    break;
+                case Operations.DRAW_LINE:
+                    paint.drawLine(values[a], values[a + 1], values[a + 2], values[a + 3]);
+                    arg += 4;
+                    break;
+                case Operations.DRAW_OVAL:
+                    paint.drawOval(values[a], values[a + 1], values[a + 2], values[a + 3]);
+                    arg += 4;
+                    break;
+                case Operations.DRAW_ARC:
+                    paint.drawArc(values[a], values[a + 1], values[a + 2],
+                            values[a + 3], values[a + 4], values[a + 5]);
+                    arg += 6;
+                    break;
+                case Operations.DRAW_ROUND_RECT:
+                    paint.drawRoundRect(values[a], values[a + 1], values[a + 2],
+                            values[a + 3], values[a + 4], values[a + 5]);
+                    arg += 6;
+                    break;
+                case Operations.CLIP_RECT:
+                    paint.clipRect(values[a], values[a + 1], values[a + 2], values[a + 3]);
+                    arg += 4;
+                    break;
+                case Operations.MATRIX_SCALE:
+                    paint.matrixScale(values[a], values[a + 1], values[a + 2], values[a + 3]);
+                    arg += 4;
+                    break;
+                case Operations.MATRIX_TRANSLATE:
+                    paint.matrixTranslate(values[a], values[a + 1]);
+                    arg += 2;
+                    break;
+                case Operations.MATRIX_ROTATE:
+                    paint.matrixRotate(values[a], values[a + 1], values[a + 2]);
+                    arg += 3;
+                    break;
+                default:
+                    throw new RuntimeException("invalid display list opcode " + opcode);
+            }
+        }
+    }
+}
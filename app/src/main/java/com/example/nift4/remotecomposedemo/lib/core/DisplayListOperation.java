@@ -0,0 +1,28 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.nift4.remotecomposedemo.lib.core;
+
+/**
+ * Operation that can be recorded in a DisplayList as an opcode and its float arguments,
+ * instead of being applied as an object
+ */
+public interface DisplayListOperation {
+    /**
+     * Append the operation to the list, with its values as encoded
+     * (NaN variable references are resolved by the list when painting)
+     */
+    void record(DisplayList list);
+}
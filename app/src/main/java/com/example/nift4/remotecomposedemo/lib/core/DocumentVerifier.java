@@ -0,0 +1,355 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.nift4.remotecomposedemo.lib.core;
+
+import com.example.nift4.remotecomposedemo.lib.core.operations.Utils;
+import com.example.nift4.remotecomposedemo.lib.core.operations.utilities.AnimatedFloatExpression;
+import com.example.nift4.remotecomposedemo.lib.core.operations.utilities.easing.Easing;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Checks a document in a single pass before it is decoded.
+ * <p>
+ * Operations with variable sized payloads or variable ids check them with
+ * CompanionOperation.verify() without allocating anything: ids of floats and colors
+ * must fit in RemoteComposeState, lengths must fit in what is left of the buffer,
+ * float expressions must fit in the evaluation stack, and the memory the document
+ * will allocate must stay within budget. Other operations are small and are decoded
+ * to be checked. A verified document can be painted without further bounds checks.
+ */
+public class DocumentVerifier {
+    public static final long DEFAULT_MEMORY_BUDGET = 64 * 1024 * 1024;
+    private static final int OPERATION_SIZE = 32; // estimated size of an operation object
+
+    private final long mMemoryBudget;
+    private final ArrayList<Operation> mScratch = new ArrayList<>();
+    private long mMemory = 0;
+    private int mOperationCount = 0;
+    private int mMaxStackDepth = 0;
+
+    public DocumentVerifier() {
+        this(DEFAULT_MEMORY_BUDGET);
+    }
+
+    /**
+     * @param memoryBudget maximum number of bytes the document may allocate once decoded
+     */
+    public DocumentVerifier(long memoryBudget) {
+        mMemoryBudget = memoryBudget;
+    }
+
+    /**
+     * Verify all the operations of a document, the buffer is left positioned at 0
+     *
+     * @return the report, invalid if the document should not be decoded
+     */
+    public Report verify(WireBuffer buffer) {
+        return verify(buffer, null);
+    }
+
+    /**
+     * Verify all the operations of a document while decoding them, each operation is
+     * decoded once. The buffer is left positioned at 0.
+     *
+     * @param operations where the decoded operations are added, null to only verify,
+     *                   incomplete if the report is invalid
+     * @return the report, invalid if the operations should not be used
+     */
+    public Report verify(WireBuffer buffer, List<Operation> operations) {
+        buffer.setIndex(0);
+        buffer.setCompact(false);
+        buffer.setDocumentVersion(0);
+        Report report = new Report();
+        int start = 0;
+        int opId = -1;
+        try {
+            while (buffer.available()) {
+                start = buffer.getIndex();
+                opId = buffer.readByte();
+                CompanionOperation operation = Operations.get(opId, buffer.getDocumentVersion());
+                if (operation == null) {
+                    throw new RuntimeException("Unknown operation encountered " + opId);
+                }
+                verifyOperation(operation, buffer, operations);
+            }
+            opId = -1;
+        } catch (IndexOutOfBoundsException e) {
+            report.mError = "truncated operation, " + e.getMessage();
+        } catch (RuntimeException e) {
+            report.mError = e.getMessage();
+        }
+        report.mOffset = (report.mError == null) ? buffer.getIndex() : start;
+        report.mOperationId = opId;
+        report.mOperationCount = mOperationCount;
+        report.mMemory = mMemory;
+        report.mMaxStackDepth = mMaxStackDepth;
+        buffer.setIndex(0);
+        buffer.setCompact(false);
+        buffer.setDocumentVersion(0);
+        return report;
+    }
+
+    /**
+     * Verify one operation, used when operations are decoded as they are received
+     *
+     * @param operation the companion of the operation
+     * @param buffer    positioned after the operation type, left after the operation
+     * @throws RuntimeException          if the operation is invalid
+     * @throws IndexOutOfBoundsException if the operation is not complete, nothing is
+     *                                   accounted for it then
+     */
+    public void verifyOperation(CompanionOperation operation, WireBuffer buffer) {
+        verifyOperation(operation, buffer, null);
+    }
+
+    /**
+     * Verify one operation and decode it. Operations without a verify() are checked by
+     * decoding them, they are then not decoded a second time.
+     *
+     * @param operation  the companion of the operation
+     * @param buffer     positioned after the operation type, left after the operation
+     * @param operations where the operation is added, null to only verify it
+     * @throws RuntimeException          if the operation is invalid
+     * @throws IndexOutOfBoundsException if the operation is not complete, nothing is
+     *                                   accounted for nor added then
+     */
+    public void verifyOperation(CompanionOperation operation, WireBuffer buffer,
+                                List<Operation> operations) {
+        long memory = mMemory;
+        int start = buffer.getIndex();
+        int count = (operations == null) ? 0 : operations.size();
+        try {
+            allocate(OPERATION_SIZE);
+            if (operation.verify(buffer, this)) {
+                if (operations != null) {
+                    buffer.setIndex(start);
+                    operation.read(buffer, operations);
+                }
+            } else {
+                buffer.setIndex(start);
+                operation.read(buffer, (operations == null) ? mScratch : operations);
+                mScratch.clear();
+            }
+            if (buffer.getIndex() > buffer.getSize()) {
+                throw new IndexOutOfBoundsException("operation past the end of the buffer");
+            }
+        } catch (IndexOutOfBoundsException e) {
+            mMemory = memory;
+            mScratch.clear();
+            while (operations != null && operations.size() > count) {
+                operations.remove(operations.size() - 1);
+            }
+            throw e;
+        }
+        mOperationCount++;
+    }
+
+    /**
+     * Check the id of a float or color variable, ids float expressions read as
+     * operators are rejected (RemoteComposeState.nextId() never returns them)
+     */
+    public void checkId(int id) {
+        if (id < 0 || id > RemoteComposeState.MAX_ID) {
+            throw new RuntimeException("variable id out of range " + id);
+        }
+        if (id > AnimatedFloatExpression.OFFSET
+                && id <= AnimatedFloatExpression.OFFSET + AnimatedFloatExpression.LAST_OP) {
+            throw new RuntimeException("variable id " + id + " is an expression operator");
+        }
+    }
+
+    /**
+     * Check a float argument, NaN values reference a float variable
+     */
+    public void checkFloat(float value) {
+        if (Float.isNaN(value)) {
+            checkId(Utils.idFromNan(value));
+        }
+    }
+
+    /**
+     * Check the length of an array about to be read, before it is allocated
+     *
+     * @param length   number of elements announced
+     * @param max      maximum number of elements allowed
+     * @param wireSize minimum size of an element in the buffer
+     */
+    public void checkLength(int length, int max, int wireSize, WireBuffer buffer) {
+        if (length < 0 || length > max) {
+            throw new RuntimeException("invalid length 0 <= " + length + " > " + max);
+        }
+        if ((long) length * wireSize > buffer.remaining()) {
+            throw new IndexOutOfBoundsException("length " + length
+                    + " past the end of the buffer");
+        }
+    }
+
+    /**
+     * Account for memory the document will allocate
+     */
+    public void allocate(long bytes) {
+        mMemory += bytes;
+        if (bytes < 0 || mMemory > mMemoryBudget) {
+            throw new RuntimeException("memory budget exceeded " + mMemory
+                    + " > " + mMemoryBudget);
+        }
+    }
+
+    /**
+     * Read past a float expression checking the ids it references, that every operator
+     * has its arguments on the stack, that the stack fits in AnimatedFloatExpression
+     * and that a value is left, as CompiledFloatExpression.compile() requires.
+     *
+     * @param length number of floats of the expression
+     */
+    public void checkExpression(WireBuffer buffer, int length) {
+        int sp = 0;
+        for (int i = 0; i < length; i++) {
+            float v = buffer.readFloat();
+            if (AnimatedFloatExpression.isMathOperator(v)) {
+                int op = AnimatedFloatExpression.fromNaN(v) - AnimatedFloatExpression.OFFSET;
+                int arguments = AnimatedFloatExpression.arguments(op);
+                if (sp < arguments) {
+                    throw new RuntimeException("stack underflow at " + i + " in expression");
+                }
+                sp += 1 - arguments;
+            } else {
+                checkFloat(v);
+                sp++;
+            }
+            if (sp > AnimatedFloatExpression.MAX_STACK_SIZE) {
+                throw new RuntimeException("stack overflow at " + i + " in expression");
+            }
+            mMaxStackDepth = Math.max(mMaxStackDepth, sp);
+        }
+        if (sp < 1) { // an empty expression included, it has no value
+            throw new RuntimeException("expression leaves no value on the stack");
+        }
+    }
+
+    /**
+     * Read past the animation of a float expression, checking that its parameters,
+     * initial and wrap values fit in it and that its easing curve is known
+     * (see FloatAnimation.Spec).
+     *
+     * @param length number of floats of the animation, 0 if there is none
+     */
+    public void checkAnimation(WireBuffer buffer, int length) {
+        if (length < 2) {
+            buffer.skip(length * 4); // at most a duration, the default curve is used
+            return;
+        }
+        buffer.readFloat(); // duration
+        int numType = buffer.readInt();
+        int type = numType & 0xFF;
+        int params = (numType >> 16) & 0xFFFF;
+        int extra = ((numType >> 8) & 0x1) + ((numType >> 9) & 0x1); // wrap, initial value
+        if (2 + params + extra > length) {
+            throw new RuntimeException("animation needs " + (2 + params + extra)
+                    + " floats, has " + length);
+        }
+        int minParams;
+        switch (type) {
+            case Easing.CUBIC_STANDARD:
+            case Easing.CUBIC_ACCELERATE:
+            case Easing.CUBIC_DECELERATE:
+            case Easing.CUBIC_LINEAR:
+            case Easing.CUBIC_ANTICIPATE:
+            case Easing.CUBIC_OVERSHOOT:
+            case Easing.EASE_OUT_BOUNCE:
+            case Easing.EASE_OUT_ELASTIC:
+                minParams = 0;
+                break;
+            case Easing.CUBIC_CUSTOM:
+                minParams = 4; // the two control points
+                break;
+            case Easing.SPLINE_CUSTOM:
+                minParams = 2; // the spline needs two points
+                break;
+            default:
+                throw new RuntimeException("unknown animation type " + type);
+        }
+        if (params < minParams) {
+            throw new RuntimeException("animation type " + type + " needs " + minParams
+                    + " parameters, has " + params);
+        }
+        buffer.skip((length - 2) * 4);
+    }
+
+    /**
+     * Result of the verification of a document
+     */
+    public static class Report {
+        String mError;
+        int mOffset;
+        int mOperationId;
+        int mOperationCount;
+        long mMemory;
+        int mMaxStackDepth;
+
+        public boolean isValid() {
+            return mError == null;
+        }
+
+        /**
+         * Reason the document is invalid, null if it is valid
+         */
+        public String getError() {
+            return mError;
+        }
+
+        /**
+         * Offset of the invalid operation, or size of the document if it is valid
+         */
+        public int getOffset() {
+            return mOffset;
+        }
+
+        /**
+         * Type of the invalid operation, -1 if the document is valid
+         */
+        public int getOperationId() {
+            return mOperationId;
+        }
+
+        public int getOperationCount() {
+            return mOperationCount;
+        }
+
+        /**
+         * Estimated number of bytes allocated by the document once decoded
+         */
+        public long getMemory() {
+            return mMemory;
+        }
+
+        public int getMaxStackDepth() {
+            return mMaxStackDepth;
+        }
+
+        @Override
+        public String toString() {
+            if (isValid()) {
+                return "valid, " + mOperationCount + " operations, " + mMemory + " bytes, "
+                        + "stack " + mMaxStackDepth;
+            }
+            return mError + " (operation " + mOperationId + " at " + mOffset
+                    + ", after " + mOperationCount + " operations)";
+        }
+    }
+}
@@ -0,0 +1,389 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.nift4.remotecomposedemo.lib.core;
+
+import com.example.nift4.remotecomposedemo.lib.core.operations.FloatExpression;
+import com.example.nift4.remotecomposedemo.lib.core.operations.Utils;
+import com.example.nift4.remotecomposedemo.lib.core.operations.utilities.CompiledFloatExpression;
+import com.example.nift4.remotecomposedemo.lib.core.operations.utilities.FloatExpressionBatch;
+import com.example.nift4.remotecomposedemo.lib.core.operations.utilities.IntObjectMap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Dependency graph of the expressions of a document (see ExpressionOperation).
+ * <p>
+ * Expressions are evaluated in topological order, each one after the expressions
+ * computing the variables it reads, whatever their order in the document. Expressions
+ * writing the same variable keep their document order. An expression reading its own
+ * variable gets its previous value. Expressions in a cycle can't be ordered, they and
+ * the expressions depending on them are evaluated last in document order and see the
+ * values of the previous frame.
+ * <p>
+ * An expression is only evaluated when a variable it reads changed since the last
+ * update of the listeners (see RemoteComposeState.isDirty()), including variables
+ * changed by the expressions evaluated before it, or while its animation runs.
+ * Expressions are not registered as listeners, the graph updates them.
+ * <p>
+ * Expressions of the same level (longest chain of expressions they depend on) are
+ * independent, at least MIN_BATCH_SIZE float expressions of a level with the same shape
+ * and no animation are evaluated together by a FloatExpressionBatch.
+ */
+public class ExpressionGraph {
+    private static final boolean DEBUG = false;
+    static final int MIN_BATCH_SIZE = 8;
+
+    private final Step[] mSteps;
+    private final FloatExpression[] mAnimated;
+    private final BitSet mInputs; // ids read by the expressions
+    private final int mSize;
+    private final int[] mCycleIds; // outputs of the expressions in or after a cycle
+    private final int mBatchCount;
+
+    private ExpressionGraph(Step[] steps, FloatExpression[] animated, BitSet inputs, int size,
+            int[] cycleIds, int batchCount) {
+        mSteps = steps;
+        mAnimated = animated;
+        mInputs = inputs;
+        mSize = size;
+        mCycleIds = cycleIds;
+        mBatchCount = batchCount;
+    }
+
+    /**
+     * Build the graph of the expressions in a list of operations
+     */
+    public static ExpressionGraph build(List<Operation> operations) {
+        LazyOperationList lazy = (operations instanceof LazyOperationList)
+                ? (LazyOperationList) operations : null;
+        ArrayList<ExpressionOperation> nodes = new ArrayList<>();
+        ArrayList<FloatExpression> animated = new ArrayList<>();
+        IntObjectMap<ArrayList<Integer>> producers = new IntObjectMap<>();
+        int count = operations.size();
+        for (int i = 0; i < count; i++) {
+            // operations not created by a LazyOperationList are constant paint operations
+            Operation op = (lazy != null) ? lazy.peek(i) : operations.get(i);
+            if (op instanceof ExpressionOperation) {
+                ExpressionOperation expression = (ExpressionOperation) op;
+                ArrayList<Integer> list = producers.get(expression.getOutputId());
+                if (list == null) {
+                    list = new ArrayList<>();
+                    producers.put(expression.getOutputId(), list);
+                }
+                list.add(nodes.size());
+                nodes.add(expression);
+                if (expression instanceof FloatExpression
+                        && ((FloatExpression) expression).hasAnimation()) {
+                    animated.add((FloatExpression) expression);
+                }
+            }
+        }
+
+        int size = nodes.size();
+        BitSet inputs = new BitSet();
+        BitSet[] successors = new BitSet[size];
+        int[] inDegree = new int[size];
+        for (int i = 0; i < size; i++) {
+            successors[i] = new BitSet();
+        }
+        for (int i = 0; i < size; i++) {
+            ExpressionOperation node = nodes.get(i);
+            for (int id : node.getInputIds()) {
+                inputs.set(id);
+                if (id == node.getOutputId()) {
+                    continue;
+                }
+                ArrayList<Integer> list = producers.get(id);
+                if (list != null) {
+                    for (int producer : list) {
+                        link(successors, inDegree, producer, i);
+                    }
+                }
+            }
+            ArrayList<Integer> writers = producers.get(node.getOutputId());
+            int position = writers.indexOf(i);
+            if (position > 0) {
+                link(successors, inDegree, writers.get(position - 1), i);
+            }
+        }
+
+        // Kahn's algorithm, taking the first ready node in document order
+        int[] order = new int[size];
+        int[] level = new int[size]; // length of the longest path to the node
+        BitSet ready = new BitSet(size);
+        BitSet done = new BitSet(size);
+        for (int i = 0; i < size; i++) {
+            if (inDegree[i] == 0) {
+                ready.set(i);
+            }
+        }
+        int sorted = 0;
+        int levelCount = 0;
+        for (int i = ready.nextSetBit(0); i >= 0; i = ready.nextSetBit(0)) {
+            ready.clear(i);
+            done.set(i);
+            order[sorted++] = i;
+            levelCount = Math.max(levelCount, level[i] + 1);
+            BitSet next = successors[i];
+            for (int j = next.nextSetBit(0); j >= 0; j = next.nextSetBit(j + 1)) {
+                level[j] = Math.max(level[j], level[i] + 1);
+                if (--inDegree[j] == 0) {
+                    ready.set(j);
+                }
+            }
+        }
+        int acyclic = sorted;
+        int[] cycleIds = new int[size - sorted];
+        for (int i = done.nextClearBit(0), k = 0; i < size; i = done.nextClearBit(i + 1)) {
+            order[sorted++] = i;
+            cycleIds[k++] = nodes.get(i).getOutputId();
+        }
+        if (DEBUG && cycleIds.length > 0) {
+            Utils.log("expressions in or after a cycle, ids " + Arrays.toString(cycleIds));
+        }
+
+        // expressions of a level don't depend on each other, those of the same shape
+        // are evaluated together
+        ArrayList<Step> steps = new ArrayList<>();
+        ArrayList<ArrayList<FloatExpression>> groups = new ArrayList<>();
+        IntObjectMap<ArrayList<Integer>> shapes = new IntObjectMap<>();
+        int batchCount = 0;
+        for (int l = 0; l < levelCount; l++) {
+            groups.clear();
+            shapes.clear();
+            for (int k = 0; k < acyclic; k++) {
+                int i = order[k];
+                if (level[i] != l) {
+                    continue;
+                }
+                ExpressionOperation node = nodes.get(i);
+                if (!(node instanceof FloatExpression)
+                        || ((FloatExpression) node).hasAnimation()) {
+                    steps.add(new Single(node, false));
+                    continue;
+                }
+                CompiledFloatExpression program = ((FloatExpression) node).getProgram();
+                ArrayList<Integer> candidates = shapes.get(program.shapeHash());
+                if (candidates == null) {
+                    candidates = new ArrayList<>();
+                    shapes.put(program.shapeHash(), candidates);
+                }
+                ArrayList<FloatExpression> group = null;
+                for (int g : candidates) {
+                    if (groups.get(g).get(0).getProgram().sameShape(program)) {
+                        group = groups.get(g);
+                        break;
+                    }
+                }
+                if (group == null) {
+                    group = new ArrayList<>();
+                    candidates.add(groups.size());
+                    groups.add(group);
+                }
+                group.add((FloatExpression) node);
+            }
+            for (ArrayList<FloatExpression> group : groups) {
+                if (group.size() >= MIN_BATCH_SIZE) {
+                    steps.add(new Batch(group));
+                    batchCount++;
+                } else {
+                    for (FloatExpression expression : group) {
+                        steps.add(new Single(expression, false));
+                    }
+                }
+            }
+        }
+        for (int k = acyclic; k < size; k++) {
+            // they read values computed after them, changed or not in this frame
+            steps.add(new Single(nodes.get(order[k]), true));
+        }
+        return new ExpressionGraph(steps.toArray(new Step[0]),
+                animated.toArray(new FloatExpression[0]), inputs, size, cycleIds, batchCount);
+    }
+
+    private static void link(BitSet[] successors, int[] inDegree, int from, int to) {
+        if (from != to && !successors[from].get(to)) {
+            successors[from].set(to);
+            inDegree[to]++;
+        }
+    }
+
+    /**
+     * Evaluate the expressions reading variables that changed or animated, in order.
+     * The first call evaluates all of them.
+     */
+    public void evaluate(RemoteContext context) {
+        RemoteComposeState state = context.mRemoteComposeState;
+        float time = context.getAnimationTime();
+        for (Step step : mSteps) {
+            if (step.needsEvaluation(state)) {
+                step.evaluate(context);
+                step.mStale = step.isAnimating(time);
+            }
+        }
+    }
+
+    /**
+     * True if an expression reads the variable id
+     */
+    public boolean reads(int id) {
+        return mInputs.get(id);
+    }
+
+    /**
+     * True if the animation of a float expression runs
+     *
+     * @param time the animation time (see RemoteContext.getAnimationTime())
+     */
+    public boolean isAnimating(float time) {
+        for (FloatExpression expression : mAnimated) {
+            if (expression.isAnimating(time)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * Number of expressions part of a dependency cycle
+     */
+    public int getCycleCount() {
+        return mCycleIds.length;
+    }
+
+    /**
+     * Variables written by the expressions part of, or depending on, a dependency cycle,
+     * in document order
+     */
+    public int[] getCycleIds() {
+        return mCycleIds.clone();
+    }
+
+    /**
+     * Number of groups of expressions evaluated together
+     */
+    public int getBatchCount() {
+        return mBatchCount;
+    }
+
+    private abstract static class Step {
+        private final int[] mInputIds;
+        boolean mStale = true; // evaluated whatever its inputs
+
+        Step(int[] inputIds) {
+            mInputIds = inputIds;
+        }
+
+        boolean needsEvaluation(RemoteComposeState state) {
+            if (mStale) {
+                return true;
+            }
+            for (int id : mInputIds) {
+                if (state.isDirty(id)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * True if the step must be evaluated at the next frame, its inputs changed or not
+         */
+        abstract boolean isAnimating(float time);
+
+        abstract void evaluate(RemoteContext context);
+    }
+
+    private static class Single extends Step {
+        private final ExpressionOperation mExpression;
+        private final boolean mAlways;
+
+        Single(ExpressionOperation expression, boolean always) {
+            super(expression.getInputIds());
+            mExpression = expression;
+            mAlways = always;
+        }
+
+        @Override
+        boolean isAnimating(float time) {
+            // true until the frame after the end of the animation, which reaches the target
+            return mAlways || (mExpression instanceof FloatExpression
+                    && ((FloatExpression) mExpression).isAnimating(time));
+        }
+
+        @Override
+        void evaluate(RemoteContext context) {
+            // FloatExpression.apply() reads its variables itself
+            if (mExpression instanceof VariableSupport
+                    && !(mExpression instanceof FloatExpression)) {
+                ((VariableSupport) mExpression).updateVariables(context);
+            }
+            mExpression.apply(context);
+        }
+    }
+
+    private static class Batch extends Step {
+        private final FloatExpressionBatch mBatch;
+        private final int[] mOutputIds;
+
+        Batch(ArrayList<FloatExpression> expressions) {
+            super(inputIds(expressions));
+            CompiledFloatExpression[] programs = new CompiledFloatExpression[expressions.size()];
+            mOutputIds = new int[programs.length];
+            for (int i = 0; i < programs.length; i++) {
+                programs[i] = expressions.get(i).getProgram();
+                mOutputIds[i] = expressions.get(i).getOutputId();
+            }
+            mBatch = new FloatExpressionBatch(programs);
+        }
+
+        private static int[] inputIds(ArrayList<FloatExpression> expressions) {
+            BitSet ids = new BitSet();
+            for (FloatExpression expression : expressions) {
+                for (int id : expression.getInputIds()) {
+                    ids.set(id);
+                }
+            }
+            return ids.stream().toArray();
+        }
+
+        @Override
+        boolean isAnimating(float time) {
+            return false; // only expressions without animation are batched
+        }
+
+        @Override
+        void evaluate(RemoteContext context) {
+            for (int slot = 0; slot < mBatch.getVariableCount(); slot++) {
+                for (int row = 0; row < mOutputIds.length; row++) {
+                    mBatch.setVariable(slot, row,
+                            context.getFloat(mBatch.getVariableId(slot, row)));
+                }
+            }
+            float[] results = mBatch.eval();
+            for (int row = 0; row < mOutputIds.length; row++) {
+                context.loadFloat(mOutputIds[row], results[row]);
+            }
+        }
+    }
+}
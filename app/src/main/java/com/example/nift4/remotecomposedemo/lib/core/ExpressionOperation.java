@@ -0,0 +1,32 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.nift4.remotecomposedemo.lib.core;
+
+/**
+ * Operation computing a variable from other variables, evaluated by an ExpressionGraph
+ * once per frame after the variables it reads
+ */
+public interface ExpressionOperation extends Operation {
+    /**
+     * Id of the variable (float, color or text) written by apply()
+     */
+    int getOutputId();
+
+    /**
+     * Ids of the variables read to compute it
+     */
+    int[] getInputIds();
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.nift4.remotecomposedemo.lib.core;
+
+/**
+ * Source of the animation time of a RemoteContext.
+ * <p>
+ * It is sampled once at the start of each frame (see RemoteContext.updateAnimationTime()),
+ * every operation of the frame then sees the same time.
+ */
+public abstract class FrameClock {
+
+    /**
+     * Time of a new frame
+     *
+     * @return nanoseconds since the start of the clock, never decreasing
+     */
+    public abstract long nextFrameNanos();
+
+    /**
+     * Clock following System.nanoTime(), that can be paused
+     */
+    public static class RealTime extends FrameClock {
+        private long mStart = System.nanoTime();
+        private long mPausedAt = -1;
+
+        @Override
+        public long nextFrameNanos() {
+            return (mPausedAt >= 0) ? mPausedAt : System.nanoTime() - mStart;
+        }
+
+        /**
+         * Stop the time, until resume()
+         */
+        public void pause() {
+            if (mPausedAt < 0) {
+                mPausedAt = System.nanoTime() - mStart;
+            }
+        }
+
+        /**
+         * Restart the time from where it was paused, without jumping over the pause.
+         * Documents stop requesting frames while the clock is paused, the player must
+         * be invalidated to restart their animations.
+         */
+        public void resume() {
+            if (mPausedAt >= 0) {
+                mStart = System.nanoTime() - mPausedAt;
+                mPausedAt = -1;
+            }
+        }
+
+        public boolean isPaused() {
+            return mPausedAt >= 0;
+        }
+    }
+
+    /**
+     * Clock advancing by the same step every frame, the first frame painted is at 0
+     * (initializing a document does not advance the clock)
+     */
+    public static class FixedStep extends FrameClock {
+        private final long mStep;
+        private long mTime;
+
+        /**
+         * @param stepNanos duration of a frame, e.g. 16666667 for 60 frames per second
+         */
+        public FixedStep(long stepNanos) {
+            if (stepNanos < 0) {
+                throw new IllegalArgumentException("negative step " + stepNanos);
+            }
+            mStep = stepNanos;
+            mTime = -stepNanos;
+        }
+
+        @Override
+        public long nextFrameNanos() {
+            mTime += mStep;
+            return mTime;
+        }
+    }
+
+    /**
+     * Clock replaying recorded frame times, the last one is repeated once all are played
+     */
+    public static class Replay extends FrameClock {
+        private final long[] mFrames;
+        private int mFrame = 0;
+
+        /**
+         * @param frameNanos times of the frames, in order
+         */
+        public Replay(long[] frameNanos) {
+            if (frameNanos.length == 0) {
+                throw new IllegalArgumentException("no frame to replay");
+            }
+            for (int i = 1; i < frameNanos.length; i++) {
+                if (frameNanos[i] < frameNanos[i - 1]) {
+                    throw new IllegalArgumentException("frame " + i + " goes back in time");
+                }
+            }
+            mFrames = frameNanos.clone();
+        }
+
+        @Override
+        public long nextFrameNanos() {
+            long time = mFrames[mFrame];
+            if (mFrame < mFrames.length - 1) {
+                mFrame++;
+            }
+            return time;
+        }
+    }
+}
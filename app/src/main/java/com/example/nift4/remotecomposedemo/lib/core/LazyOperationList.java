@@ -0,0 +1,200 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.nift4.remotecomposedemo.lib.core;
+
+import com.example.nift4.remotecomposedemo.lib.core.operations.FloatExpression;
+import com.example.nift4.remotecomposedemo.lib.core.operations.utilities.easing.AnimationSpecCache;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.RandomAccess;
+
+/**
+ * Read only list of the operations of a document, created on demand.
+ * <p>
+ * Inflating only records where each operation starts and its type. Operations that
+ * can be skipped (see CompanionOperation#skip) are created each time they are
+ * accessed with get() and are not retained: the DisplayList records most of them
+ * directly from the buffer and keeps the few it needs as objects. All the other
+ * operations (data, variables, expressions...) are created while indexing, as they
+ * are needed to initialize the document.
+ * <p>
+ * get() and record() move the position of the shared buffer, the list must only be
+ * used from the thread painting the document.
+ */
+public class LazyOperationList extends AbstractList<Operation> implements RandomAccess {
+    private final WireBuffer mBuffer;
+    private final ArrayList<Operation> mScratch = new ArrayList<>(1);
+    private final BitSet mCompact = new BitSet(); // encoding profile of each operation
+    private int[] mOffsets;
+    private byte[] mTypes;
+    private Operation[] mOperations;
+    private int mCount = 0;
+
+    /**
+     * Index the operations of the buffer
+     *
+     * @param buffer   the document, it must stay valid as long as this list is used
+     * @param verifier checks the operations while they are indexed, null if the
+     *                 document is trusted
+     * @param specs    shares the animation specs of the expressions
+     * @throws RuntimeException if the verifier rejects the document
+     */
+    public LazyOperationList(WireBuffer buffer, DocumentVerifier verifier,
+                             AnimationSpecCache specs) {
+        mBuffer = buffer;
+        int capacity = Math.max(16, buffer.getSize() / 16);
+        mOffsets = new int[capacity];
+        mTypes = new byte[capacity];
+        mOperations = new Operation[capacity];
+        index(verifier, specs);
+    }
+
+    private void index(DocumentVerifier verifier, AnimationSpecCache specs) {
+        WireBuffer buffer = mBuffer;
+        buffer.setIndex(0);
+        buffer.setCompact(false);
+        buffer.setDocumentVersion(0);
+        while (buffer.available()) {
+            int start = buffer.getIndex();
+            int opId = buffer.readByte();
+            CompanionOperation companion = Operations.get(opId, buffer.getDocumentVersion());
+            if (companion == null) {
+                throw new RuntimeException("Unknown operation encountered " + opId);
+            }
+            boolean compact = buffer.isCompact();
+            Operation op = null;
+            try {
+                boolean skipped = companion.skip(buffer);
+                if (verifier == null) {
+                    if (!skipped) {
+                        buffer.setIndex(start + 1);
+                        op = read(companion);
+                    }
+                } else {
+                    buffer.setIndex(start + 1);
+                    // skipped operations have an allocation free verify()
+                    mScratch.clear();
+                    verifier.verifyOperation(companion, buffer, skipped ? null : mScratch);
+                    op = mScratch.isEmpty() ? null : mScratch.get(0);
+                }
+            } catch (RuntimeException e) {
+                if (verifier == null) {
+                    throw e;
+                }
+                throw new RuntimeException("invalid document: " + e.getMessage()
+                        + " (operation " + opId + " at " + start + ")", e);
+            }
+            if (op instanceof FloatExpression) {
+                ((FloatExpression) op).shareAnimation(specs);
+            }
+            add(start, opId, compact, op);
+        }
+    }
+
+    private void add(int offset, int type, boolean compact, Operation op) {
+        if (mCount == mOffsets.length) {
+            int capacity = mCount * 2;
+            mOffsets = Arrays.copyOf(mOffsets, capacity);
+            mTypes = Arrays.copyOf(mTypes, capacity);
+            mOperations = Arrays.copyOf(mOperations, capacity);
+        }
+        mOffsets[mCount] = offset;
+        mTypes[mCount] = (byte) type;
+        if (op != null) {
+            mOperations[mCount] = op;
+        }
+        if (compact) {
+            mCompact.set(mCount);
+        }
+        mCount++;
+    }
+
+    private Operation read(CompanionOperation companion) {
+        mScratch.clear();
+        companion.read(mBuffer, mScratch);
+        return mScratch.isEmpty() ? null : mScratch.get(0);
+    }
+
+    /**
+     * Returns the operation, a skipped operation is created for the caller and not
+     * retained (not thread safe, see the class documentation)
+     */
+    @Override
+    public Operation get(int index) {
+        if (index < 0 || index >= mCount) {
+            throw new IndexOutOfBoundsException("index " + index + " size " + mCount);
+        }
+        Operation op = mOperations[index];
+        if (op == null) {
+            int type = mTypes[index] & 0xFF;
+            mBuffer.setIndex(mOffsets[index] + 1);
+            mBuffer.setCompact(mCompact.get(index));
+            op = read(Operations.get(type));
+        }
+        return op;
+    }
+
+    /**
+     * Returns the operation if it was created while indexing, null otherwise
+     * (ie. it is a constant paint operation)
+     */
+    public Operation peek(int index) {
+        return mOperations[index];
+    }
+
+    /**
+     * Record an operation not created yet in a display list, reading its values
+     * directly from the buffer (not thread safe, see the class documentation).
+     *
+     * @return false if the operation type can't be recorded this way
+     */
+    boolean record(int index, DisplayList list) {
+        int type = mTypes[index] & 0xFF;
+        int count = DisplayList.arity(type);
+        if (count < 0) {
+            return false;
+        }
+        mBuffer.setIndex(mOffsets[index] + 1);
+        mBuffer.setCompact(mCompact.get(index));
+        list.begin(type, count);
+        for (int i = 0; i < count; i++) {
+            list.arg(mBuffer.readCompactFloat());
+        }
+        return true;
+    }
+
+    /**
+     * The type (operation id) of the operation at index
+     */
+    public int getType(int index) {
+        return mTypes[index] & 0xFF;
+    }
+
+    /**
+     * The offset in the buffer at which the operation at index starts
+     */
+    public int getOffset(int index) {
+        return mOffsets[index];
+    }
+
+    @Override
+    public int size() {
+        return mCount;
+    }
+}
@@ -51,7 +51,6 @@ import com.example.nift4.remotecomposedemo.lib.core.operations.TextData;
 import com.example.nift4.remotecomposedemo.lib.core.operations.TextFromFloat;
 import com.example.nift4.remotecomposedemo.lib.core.operations.TextMerge;
 import com.example.nift4.remotecomposedemo.lib.core.operations.Theme;
-import com.example.nift4.remotecomposedemo.lib.core.operations.utilities.IntMap;
 
 /**
  * List of operations supported in a RemoteCompose document
@@ -107,46 +106,147 @@ public class Operations {
     public static final int TEXT_MERGE = 136;
 
     /////////////////////////////////////////======================
-    public static IntMap<CompanionOperation> map = new IntMap<>();
+
+    /**
+     * Companions and minimum versions, replaced as a whole by register() so get()
+     * can read them without a lock
+     */
+    private static final class Registry {
+        final CompanionOperation[] mCompanions;
+        // minimum document version (see version()) required by each operation
+        final int[] mMinVersions;
+
+        Registry(CompanionOperation[] companions, int[] minVersions) {
+            mCompanions = companions;
+            mMinVersions = minVersions;
+        }
+    }
+
+    private static volatile Registry sRegistry =
+            new Registry(new CompanionOperation[256], new int[256]);
+
+    /**
+     * Encode a document version for comparison, as set by the Header in the WireBuffer
+     */
+    public static int version(int majorVersion, int minorVersion) {
+        return (majorVersion << 16) | (minorVersion & 0xFFFF);
+    }
+
+    /**
+     * Register an operation under its id (see CompanionOperation.id()),
+     * available in documents of any version
+     *
+     * @param companion the companion reading the operation
+     */
+    public static void register(CompanionOperation companion) {
+        register(companion, 0, 0);
+    }
+
+    /**
+     * Register an operation under its id (see CompanionOperation.id()), only available
+     * in documents whose header declares at least the given version. Ids already
+     * registered to another companion can't be reused.
+     *
+     * @param companion    the companion reading the operation
+     * @param majorVersion minimum major version of the document
+     * @param minorVersion minimum minor version of the document
+     */
+    public static synchronized void register(CompanionOperation companion,
+                                             int majorVersion, int minorVersion) {
+        Registry registry = sRegistry;
+        int id = companion.id();
+        if (id < 0 || id >= registry.mCompanions.length) {
+            throw new RuntimeException("invalid operation id " + id + " for "
+                    + companion.name());
+        }
+        CompanionOperation registered = registry.mCompanions[id];
+        if (registered != null && registered != companion) {
+            throw new RuntimeException("operation id " + id + " already registered to "
+                    + registered.name());
+        }
+        CompanionOperation[] companions = registry.mCompanions.clone();
+        int[] minVersions = registry.mMinVersions.clone();
+        companions[id] = companion;
+        minVersions[id] = version(majorVersion, minorVersion);
+        sRegistry = new Registry(companions, minVersions);
+    }
+
+    /**
+     * Remove the operation registered under the companion's id, for tests registering
+     * operations of their own
+     */
+    static synchronized void unregister(CompanionOperation companion) {
+        Registry registry = sRegistry;
+        int id = companion.id();
+        if (registry.mCompanions[id] != companion) {
+            throw new RuntimeException("operation id " + id + " is not registered to "
+                    + companion.name());
+        }
+        CompanionOperation[] companions = registry.mCompanions.clone();
+        int[] minVersions = registry.mMinVersions.clone();
+        companions[id] = null;
+        minVersions[id] = 0;
+        sRegistry = new Registry(companions, minVersions);
+    }
+
+    /**
+     * Returns the companion registered for the operation id, or null
+     */
+    public static CompanionOperation get(int id) {
+        return sRegistry.mCompanions[id & 0xFF];
+    }
+
+    /**
+     * Returns the companion registered for the operation id, or null if there is none
+     * or the document version is too old for it
+     *
+     * @param id              the operation id
+     * @param documentVersion version of the document, see version()
+     */
+    public static CompanionOperation get(int id, int documentVersion) {
+        Registry registry = sRegistry;
+        id &= 0xFF;
+        return (documentVersion >= registry.mMinVersions[id]) ? registry.mCompanions[id] : null;
+    }
 
     static {
-        map.put(HEADER, Header.COMPANION);
-        map.put(DRAW_BITMAP_INT, DrawBitmapInt.COMPANION);
-        map.put(DATA_BITMAP, BitmapData.COMPANION);
-        map.put(DATA_TEXT, TextData.COMPANION);
-        map.put(THEME, Theme.COMPANION);
-        map.put(CLICK_AREA, ClickArea.COMPANION);
-        map.put(ROOT_CONTENT_BEHAVIOR, RootContentBehavior.COMPANION);
-        map.put(ROOT_CONTENT_DESCRIPTION, RootContentDescription.COMPANION);
-
-        map.put(DRAW_ARC, DrawArc.COMPANION);
-        map.put(DRAW_BITMAP, DrawBitmap.COMPANION);
-        map.put(DRAW_CIRCLE, DrawCircle.COMPANION);
-        map.put(DRAW_LINE, DrawLine.COMPANION);
-        map.put(DRAW_OVAL, DrawOval.COMPANION);
-        map.put(DRAW_PATH, DrawPath.COMPANION);
-        map.put(DRAW_RECT, DrawRect.COMPANION);
-        map.put(DRAW_ROUND_RECT, DrawRoundRect.COMPANION);
-        map.put(DRAW_TEXT_ON_PATH, DrawTextOnPath.COMPANION);
-        map.put(DRAW_TEXT_RUN, DrawText.COMPANION);
-        map.put(DRAW_TWEEN_PATH, DrawTweenPath.COMPANION);
-        map.put(DATA_PATH, PathData.COMPANION);
-        map.put(PAINT_VALUES, PaintData.COMPANION);
-        map.put(MATRIX_RESTORE, MatrixRestore.COMPANION);
-        map.put(MATRIX_ROTATE, MatrixRotate.COMPANION);
-        map.put(MATRIX_SAVE, MatrixSave.COMPANION);
-        map.put(MATRIX_SCALE, MatrixScale.COMPANION);
-        map.put(MATRIX_SKEW, MatrixSkew.COMPANION);
-        map.put(MATRIX_TRANSLATE, MatrixTranslate.COMPANION);
-        map.put(CLIP_PATH, ClipPath.COMPANION);
-        map.put(CLIP_RECT, ClipRect.COMPANION);
-        map.put(DATA_SHADER, ShaderData.COMPANION);
-        map.put(DATA_FLOAT, FloatConstant.COMPANION);
-        map.put(ANIMATED_FLOAT, FloatExpression.COMPANION);
-        map.put(DRAW_TEXT_ANCHOR, DrawTextAnchored.COMPANION);
-        map.put(COLOR_EXPRESSIONS, ColorExpression.COMPANION);
-        map.put(TEXT_FROM_FLOAT, TextFromFloat.COMPANION);
-        map.put(TEXT_MERGE, TextMerge.COMPANION);
+        register(Header.COMPANION);
+        register(DrawBitmapInt.COMPANION);
+        register(BitmapData.COMPANION);
+        register(TextData.COMPANION);
+        register(Theme.COMPANION);
+        register(ClickArea.COMPANION);
+        register(RootContentBehavior.COMPANION);
+        register(RootContentDescription.COMPANION);
+
+        register(DrawArc.COMPANION);
+        register(DrawBitmap.COMPANION);
+        register(DrawCircle.COMPANION);
+        register(DrawLine.COMPANION);
+        register(DrawOval.COMPANION);
+        register(DrawPath.COMPANION);
+        register(DrawRect.COMPANION);
+        register(DrawRoundRect.COMPANION);
+        register(DrawTextOnPath.COMPANION);
+        register(DrawText.COMPANION);
+        register(DrawTweenPath.COMPANION);
+        register(PathData.COMPANION);
+        register(PaintData.COMPANION);
+        register(MatrixRestore.COMPANION);
+        register(MatrixRotate.COMPANION);
+        register(MatrixSave.COMPANION);
+        register(MatrixScale.COMPANION);
+        register(MatrixSkew.COMPANION);
+        register(MatrixTranslate.COMPANION);
+        register(ClipPath.COMPANION);
+        register(ClipRect.COMPANION);
+        register(ShaderData.COMPANION);
+        register(FloatConstant.COMPANION);
+        register(FloatExpression.COMPANION);
+        register(DrawTextAnchored.COMPANION);
+        register(ColorExpression.COMPANION);
+        register(TextFromFloat.COMPANION);
+        register(TextMerge.COMPANION);
 
     }
 
@@ -52,6 +52,8 @@ import com.example.nift4.remotecomposedemo.lib.core.operations.TextMerge;
 import com.example.nift4.remotecomposedemo.lib.core.operations.Theme;
 import com.example.nift4.remotecomposedemo.lib.core.operations.Utils;
 import com.example.nift4.remotecomposedemo.lib.core.operations.paint.PaintBundle;
+import com.example.nift4.remotecomposedemo.lib.core.operations.utilities.ExpressionOptimizer;
+import com.example.nift4.remotecomposedemo.lib.core.operations.utilities.easing.AnimationSpecCache;
 import com.example.nift4.remotecomposedemo.lib.core.operations.utilities.easing.FloatAnimation;
 
 import java.io.File;
@@ -59,6 +61,10 @@ import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.Arrays;
 
@@ -76,9 +82,17 @@ public class RemoteComposeBuffer {
     public static final int EASING_SPLINE_CUSTOM = FloatAnimation.SPLINE_CUSTOM;
     public static final int EASING_EASE_OUT_BOUNCE = FloatAnimation.EASE_OUT_BOUNCE;
     public static final int EASING_EASE_OUT_ELASTIC = FloatAnimation.EASE_OUT_ELASTIC;
-    WireBuffer mBuffer = new WireBuffer();
+
+    /**
+     * Header capability selecting the compact wire encoding. Documents written with it
+     * are smaller but can only be read by players that understand the compact profile.
+     */
+    public static final long CAPABILITY_COMPACT_ENCODING = Header.CAPABILITY_COMPACT_ENCODING;
+    WireBuffer mBuffer;
     Platform mPlatform = null;
     RemoteComposeState mRemoteComposeState;
+    private final ExpressionOptimizer mExpressionOptimizer = new ExpressionOptimizer();
+    private boolean mOptimizeExpressions = false;
     private static final boolean DEBUG = false;
 
     /**
@@ -87,7 +101,66 @@ public class RemoteComposeBuffer {
      * @param remoteComposeState the state used while encoding on the buffer
      */
     public RemoteComposeBuffer(RemoteComposeState remoteComposeState) {
+        this(remoteComposeState, new WireBuffer());
+    }
+
+    /**
+     * Provides an abstract buffer to encode/decode RemoteCompose operations
+     *
+     * @param remoteComposeState the state used while encoding on the buffer
+     * @param sizeHint           expected size of the document in bytes
+     */
+    public RemoteComposeBuffer(RemoteComposeState remoteComposeState, int sizeHint) {
+        this(remoteComposeState, new WireBuffer(sizeHint));
+    }
+
+    RemoteComposeBuffer(RemoteComposeState remoteComposeState, WireBuffer buffer) {
         this.mRemoteComposeState = remoteComposeState;
+        this.mBuffer = buffer;
+    }
+
+    /**
+     * Get a buffer backed by a pooled WireBuffer. Call recycle() once the
+     * document has been serialized (e.g. with toByteArray()).
+     *
+     * @param remoteComposeState the state used while encoding on the buffer
+     * @param sizeHint           expected size of the document in bytes
+     */
+    public static RemoteComposeBuffer obtain(RemoteComposeState remoteComposeState,
+                                             int sizeHint) {
+        return new RemoteComposeBuffer(remoteComposeState, WireBuffer.obtain(sizeHint));
+    }
+
+    /**
+     * Return the underlying WireBuffer to the pool, this buffer must not be used afterward.
+     */
+    public void recycle() {
+        mBuffer.recycle();
+        mBuffer = null;
+    }
+
+    /**
+     * The document trimmed to its actual size
+     */
+    public byte[] toByteArray() {
+        return mBuffer.toByteArray();
+    }
+
+    /**
+     * The document wrapped in a deflate container (see CompressedContainer).
+     * fromInputStream / fromByteBuffer detect and inflate it transparently.
+     */
+    public byte[] toCompressedByteArray() {
+        return CompressedContainer.compress(mBuffer);
+    }
+
+    /**
+     * Write the document wrapped in a deflate container (see CompressedContainer)
+     *
+     * @param out the stream to write to, not closed
+     */
+    public void writeCompressed(OutputStream out) throws IOException {
+        CompressedContainer.write(mBuffer, out);
     }
 
     /**
@@ -98,6 +171,16 @@ public class RemoteComposeBuffer {
     public void reset(int expectedSize) {
         mBuffer.reset(expectedSize);
         mRemoteComposeState.reset();
+        mExpressionOptimizer.clear();
+    }
+
+    /**
+     * Fold the constants of the float expressions added and reuse the expressions already
+     * added (see ExpressionOptimizer), identical expressions then share one id.
+     * Off by default.
+     */
+    public void setOptimizeExpressions(boolean optimize) {
+        mOptimizeExpressions = optimize;
     }
 
     public Platform getPlatform() {
@@ -126,7 +209,8 @@ public class RemoteComposeBuffer {
      * @param width              the width of the document in pixels
      * @param height             the height of the document in pixels
      * @param contentDescription content description of the document
-     * @param capabilities       bitmask indicating needed capabilities (unused for now)
+     * @param capabilities       bitmask indicating needed capabilities,
+     *                           e.g. {@link #CAPABILITY_COMPACT_ENCODING}
      */
     public void header(int width, int height, String contentDescription, long capabilities) {
         Header.COMPANION.apply(mBuffer, width, height, capabilities);
@@ -651,8 +735,12 @@ public class RemoteComposeBuffer {
      */
     public int addPathData(Object path) {
         float[] pathData = mPlatform.pathToFloatArray(path);
-        int id = mRemoteComposeState.cache(path);
-        PathData.COMPANION.apply(mBuffer, id, pathData);
+        int id = mRemoteComposeState.dataGetId(pathData);
+        if (id == -1) { // no path with the same data written yet
+            id = mRemoteComposeState.cache(pathData);
+            PathData.COMPANION.apply(mBuffer, id, pathData);
+        }
+        mRemoteComposeState.cacheId(path, id);
         return id;
     }
 
@@ -665,19 +753,65 @@ public class RemoteComposeBuffer {
     }
     ///////////////////////////////////////////////////////////////////////////////////////////////
 
+    /**
+     * Index the operations of the buffer without creating the constant paint
+     * operations, see LazyOperationList.
+     */
+    public LazyOperationList indexFromBuffer() {
+        return new LazyOperationList(mBuffer, null, new AnimationSpecCache());
+    }
+
+    /**
+     * Index the operations of the buffer while verifying them, see LazyOperationList
+     *
+     * @param specs shares the animation specs of the expressions
+     * @throws RuntimeException if the document is invalid (see DocumentVerifier)
+     */
+    public LazyOperationList indexFromBuffer(DocumentVerifier verifier,
+                                             AnimationSpecCache specs) {
+        return new LazyOperationList(mBuffer, verifier, specs);
+    }
+
+    /**
+     * Check the document without decoding it (see DocumentVerifier)
+     */
+    public DocumentVerifier.Report verify() {
+        return new DocumentVerifier().verify(mBuffer);
+    }
+
+    /**
+     * Decode the operations while verifying them, each operation is decoded once
+     *
+     * @param specs shares the animation specs of the expressions
+     * @throws RuntimeException if the document is invalid (see DocumentVerifier)
+     */
+    public void inflateFromBuffer(ArrayList<Operation> operations, DocumentVerifier verifier,
+                                  AnimationSpecCache specs) {
+        int start = operations.size();
+        DocumentVerifier.Report report = verifier.verify(mBuffer, operations);
+        if (!report.isValid()) {
+            throw new RuntimeException("invalid document: " + report);
+        }
+        FloatExpression.shareAnimations(operations, start, specs);
+    }
+
     public void inflateFromBuffer(ArrayList<Operation> operations) {
+        int start = operations.size();
         mBuffer.setIndex(0);
+        mBuffer.setCompact(false);
+        mBuffer.setDocumentVersion(0);
         while (mBuffer.available()) {
             int opId = mBuffer.readByte();
             if (DEBUG) {
                 Utils.log(">> " + opId);
             }
-            CompanionOperation operation = Operations.map.get(opId);
+            CompanionOperation operation = Operations.get(opId, mBuffer.getDocumentVersion());
             if (operation == null) {
                 throw new RuntimeException("Unknown operation encountered " + opId);
             }
             operation.read(mBuffer, operations);
         }
+        FloatExpression.shareAnimations(operations, start, new AnimationSpecCache());
     }
 
     RemoteComposeBuffer copy() {
@@ -717,6 +851,29 @@ public class RemoteComposeBuffer {
         return buffer;
     }
 
+    /**
+     * Create a buffer reading the document in place from a ByteBuffer
+     * (heap, direct or memory mapped). The content is not copied.
+     *
+     * @param byteBuffer         the document, between position and limit
+     * @param remoteComposeState the state used while decoding
+     * @return the buffer wrapping the document
+     */
+    public static RemoteComposeBuffer fromByteBuffer(ByteBuffer byteBuffer,
+                                                     RemoteComposeState remoteComposeState) {
+        return new RemoteComposeBuffer(remoteComposeState, wrapOrInflate(byteBuffer));
+    }
+
+    /**
+     * Wrap a plain document in place, or inflate it if it is a compressed container
+     */
+    private static WireBuffer wrapOrInflate(ByteBuffer byteBuffer) {
+        if (CompressedContainer.isCompressed(byteBuffer)) {
+            return CompressedContainer.inflate(byteBuffer);
+        }
+        return WireBuffer.wrap(byteBuffer);
+    }
+
     RemoteComposeBuffer copyFromOperations(ArrayList<Operation> operations,
                                            RemoteComposeBuffer buffer) {
 
@@ -729,8 +886,10 @@ public class RemoteComposeBuffer {
     public void write(RemoteComposeBuffer buffer, File file) {
         try {
             FileOutputStream fd = new FileOutputStream(file);
-            fd.write(buffer.mBuffer.getBuffer(), 0, buffer.mBuffer.getSize());
-            fd.flush();
+            ByteBuffer content = buffer.mBuffer.asByteBuffer();
+            while (content.hasRemaining()) {
+                fd.getChannel().write(content);
+            }
             fd.close();
         } catch (Exception ex) {
             ex.printStackTrace();
@@ -738,30 +897,65 @@ public class RemoteComposeBuffer {
     }
 
     static void read(File file, RemoteComposeBuffer buffer) throws IOException {
-        FileInputStream fd = new FileInputStream(file);
-        read(fd, buffer);
+        buffer.mRemoteComposeState.reset();
+        try (FileInputStream fd = new FileInputStream(file)) {
+            buffer.mBuffer = wrapOrInflate(map(fd));
+        }
+    }
+
+    /**
+     * Memory map the remaining content of a file, the mapping stays valid
+     * once the stream is closed.
+     */
+    private static ByteBuffer map(FileInputStream fd) throws IOException {
+        FileChannel channel = fd.getChannel();
+        long position = channel.position();
+        return channel.map(FileChannel.MapMode.READ_ONLY, position, channel.size() - position);
     }
 
     public static void read(InputStream fd, RemoteComposeBuffer buffer) {
+        buffer.mRemoteComposeState.reset();
         try {
-            byte[] bytes = readAllBytes(fd);
-            buffer.reset(bytes.length);
-            System.arraycopy(bytes, 0, buffer.mBuffer.mBuffer, 0, bytes.length);
-            buffer.mBuffer.mSize = bytes.length;
+            if (fd instanceof FileInputStream) {
+                buffer.mBuffer = wrapOrInflate(map((FileInputStream) fd));
+                fd.close();
+                return;
+            }
+            PushbackInputStream in = new PushbackInputStream(fd, 4);
+            byte[] magic = new byte[4];
+            int red = 0;
+            while (red < magic.length) {
+                int ret = in.read(magic, red, magic.length - red);
+                if (ret == -1) {
+                    break;
+                }
+                red += ret;
+            }
+            if (CompressedContainer.isCompressed(magic, red)) {
+                buffer.mBuffer = CompressedContainer.inflate(in);
+                in.close();
+                return;
+            }
+            in.unread(magic, 0, red);
+            buffer.mBuffer = readAllBytes(in);
         } catch (Exception e) {
             e.printStackTrace();
             // todo decide how to handel this stuff
         }
     }
 
-    private static byte[] readAllBytes(InputStream is) throws IOException {
-        byte[] buff = new byte[32 * 1024]; // moderate size buff to start
+    /**
+     * Read the stream into a WireBuffer that takes ownership of the array
+     * we read into, so the content is only copied while growing.
+     */
+    private static WireBuffer readAllBytes(InputStream is) throws IOException {
+        byte[] buff = new byte[Math.max(32 * 1024, is.available() + 1)]; // moderate size to start
         int red = 0;
         while (true) {
             int ret = is.read(buff, red, buff.length - red);
             if (ret == -1) {
                 is.close();
-                return Arrays.copyOf(buff, red);
+                return new WireBuffer(buff, red);
             }
             red += ret;
             if (red == buff.length) {
@@ -880,21 +1074,31 @@ public class RemoteComposeBuffer {
      * @return NaN id of the result of the calculation
      */
     public float addAnimatedFloat(float... value) {
-        int id = mRemoteComposeState.cache(value);
-        FloatExpression.COMPANION.apply(mBuffer, id, value, null);
-        return Utils.asNan(id);
+        return addAnimatedFloat(value, null);
     }
 
     /**
      * Add a float that is a computation based on variables.
      * see packAnimation
+     * Constants are folded and expressions already added are reused if enabled with
+     * setOptimizeExpressions()
      * @param value A RPN style float operation i.e. "4, 3, ADD" outputs 7
      * @param animation Array of floats that represents animation
      * @return NaN id of the result of the calculation
      */
     public float addAnimatedFloat(float[] value, float[] animation) {
-        int id = mRemoteComposeState.cache(value);
-        FloatExpression.COMPANION.apply(mBuffer, id, value, animation);
+        if (!mOptimizeExpressions) {
+            int id = mRemoteComposeState.nextId();
+            FloatExpression.COMPANION.apply(mBuffer, id, value, animation);
+            return Utils.asNan(id);
+        }
+        float[] exp = mExpressionOptimizer.optimize(value);
+        int id = mExpressionOptimizer.getId(exp, animation);
+        if (id == -1) {
+            id = mRemoteComposeState.nextId();
+            FloatExpression.COMPANION.apply(mBuffer, id, exp, animation);
+            mExpressionOptimizer.put(exp, animation, id);
+        }
         return Utils.asNan(id);
     }
 
@@ -907,7 +1111,7 @@ public class RemoteComposeBuffer {
      */
     public short addColorExpression(int color1, int color2, float tween) {
         ColorExpression c = new ColorExpression(0, 0, color1, color2, tween);
-        short id = (short) mRemoteComposeState.cache(c);
+        short id = (short) mRemoteComposeState.nextId();
         c.mId = id;
         c.write(mBuffer);
         return id;
@@ -923,7 +1127,7 @@ public class RemoteComposeBuffer {
      */
     public short addColorExpression(short color1, int color2, float tween) {
         ColorExpression c = new ColorExpression(0, 1, color1, color2, tween);
-        short id = (short) mRemoteComposeState.cache(c);
+        short id = (short) mRemoteComposeState.nextId();
         c.mId = id;
         c.write(mBuffer);
         return id;
@@ -939,7 +1143,7 @@ public class RemoteComposeBuffer {
      */
     public short addColorExpression(int color1, short color2, float tween) {
         ColorExpression c = new ColorExpression(0, 2, color1, color2, tween);
-        short id = (short) mRemoteComposeState.cache(c);
+        short id = (short) mRemoteComposeState.nextId();
         c.mId = id;
         c.write(mBuffer);
         return id;
@@ -955,7 +1159,7 @@ public class RemoteComposeBuffer {
      */
     public short addColorExpression(short color1, short color2, float tween) {
         ColorExpression c = new ColorExpression(0, 3, color1, color2, tween);
-        short id = (short) mRemoteComposeState.cache(c);
+        short id = (short) mRemoteComposeState.nextId();
         c.mId = id;
         c.write(mBuffer);
         return id;
@@ -971,7 +1175,7 @@ public class RemoteComposeBuffer {
      */
     public short addColorExpression(float hue, float sat, float value) {
         ColorExpression c = new ColorExpression(0, hue, sat, value);
-        short id = (short) mRemoteComposeState.cache(c);
+        short id = (short) mRemoteComposeState.nextId();
         c.mId = id;
         c.write(mBuffer);
         return id;
@@ -988,7 +1192,7 @@ public class RemoteComposeBuffer {
      */
     public short addColorExpression(int alpha, float hue, float sat, float value) {
         ColorExpression c = new ColorExpression(0, alpha, hue, sat, value);
-        short id = (short) mRemoteComposeState.cache(c);
+        short id = (short) mRemoteComposeState.nextId();
         c.mId = id;
         c.write(mBuffer);
         return id;
@@ -15,16 +15,19 @@
  */
 package com.example.nift4.remotecomposedemo.lib.core;
 
-import static com.example.nift4.remotecomposedemo.lib.core.RemoteContext.ID_CONTINUOUS_SEC;
-import static com.example.nift4.remotecomposedemo.lib.core.RemoteContext.ID_TIME_IN_MIN;
-import static com.example.nift4.remotecomposedemo.lib.core.RemoteContext.ID_TIME_IN_SEC;
 import static com.example.nift4.remotecomposedemo.lib.core.RemoteContext.ID_WINDOW_HEIGHT;
 import static com.example.nift4.remotecomposedemo.lib.core.RemoteContext.ID_WINDOW_WIDTH;
 
-import com.example.nift4.remotecomposedemo.lib.core.operations.utilities.IntMap;
+import com.example.nift4.remotecomposedemo.lib.core.operations.utilities.AnimatedFloatExpression;
+import com.example.nift4.remotecomposedemo.lib.core.operations.utilities.IntBooleanMap;
+import com.example.nift4.remotecomposedemo.lib.core.operations.utilities.IntObjectMap;
+import com.example.nift4.remotecomposedemo.lib.core.operations.utilities.ObjectIdMap;
+import com.example.nift4.remotecomposedemo.lib.core.operations.utilities.PagedFloatArray;
+import com.example.nift4.remotecomposedemo.lib.core.operations.utilities.PagedIntArray;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.BitSet;
+import java.util.IdentityHashMap;
 
 /**
  * Represents runtime state for a RemoteCompose document
@@ -32,20 +35,16 @@ import java.util.HashMap;
  */
 public class RemoteComposeState {
     public static final int START_ID = 42;
-    private static final int MAX_FLOATS = 500;
-    private final IntMap<Object> mIntDataMap = new IntMap<>();
-    private final IntMap<Boolean> mIntWrittenMap = new IntMap<>();
-    private final HashMap<Object, Integer> mDataIntMap = new HashMap();
-    private final float[] mFloatMap = new float[MAX_FLOATS]; // efficient cache
-    private final int[] mColorMap = new int[MAX_FLOATS]; // efficient cache
+    public static final int MAX_ID = 0xFFFFF; // largest id a variable reference (NaN) can hold
+    private final IntObjectMap<Object> mIntDataMap = new IntObjectMap<>();
+    private final IntBooleanMap mIntWrittenMap = new IntBooleanMap();
+    // ids of the data written to a document, only maintained while writing one
+    private final ObjectIdMap mContentIds = new ObjectIdMap(true); // text and path data
+    private final ObjectIdMap mIdentityIds = new ObjectIdMap(false); // bitmaps, paths...
+    private final PagedFloatArray mFloatMap = new PagedFloatArray(Float.NaN); // efficient cache
+    private final PagedIntArray mColorMap = new PagedIntArray(0); // efficient cache
     private int mNextId = START_ID;
 
-    {
-        for (int i = 0; i < mFloatMap.length; i++) {
-            mFloatMap[i] = Float.NaN;
-        }
-    }
-
     /**
      * Get Object based on id. The system will cache things like bitmaps
      * Paths etc. They can be accessed with this command
@@ -66,14 +65,11 @@ public class RemoteComposeState {
     }
 
     /**
-     * Return the id of an item from the cache.
+     * Return the id of an item from the cache, -1 if it was never cached.
+     * Strings and float arrays (path data) are found by content, other items by identity.
      */
     public int dataGetId(Object image) {
-        Integer res = mDataIntMap.get(image);
-        if (res == null) {
-            return -1;
-        }
-        return res;
+        return idsFor(image).get(image);
     }
 
     /**
@@ -82,26 +78,42 @@ public class RemoteComposeState {
      */
     public int cache(Object image) {
         int id = nextId();
-        mDataIntMap.put(image, id);
+        cacheId(image, id);
         mIntDataMap.put(id, image);
         return id;
     }
 
     /**
-     * Insert an item in the cache
+     * Record the id of an item for dataGetId(), without caching the item itself
+     * (e.g. the platform path an already cached path data was built from)
+     */
+    public void cacheId(Object item, int id) {
+        idsFor(item).put(item, id);
+    }
+
+    private ObjectIdMap idsFor(Object item) {
+        return (item instanceof String || item instanceof float[]) ? mContentIds : mIdentityIds;
+    }
+
+    /**
+     * Insert an item in the cache, when playing a document
+     * (the item can't be found with dataGetId())
      */
     public void cache(int id, Object item) {
-        mDataIntMap.put(item, id);
         mIntDataMap.put(id, item);
+        mDirty.set(id);
     }
 
     /**
-     * Insert an item in the cache
+     * Replace an item in the cache, when playing a document
+     * (expressions reading it, such as TextMerge, are evaluated again)
      */
     public void update(int id, Object item) {
-        mDataIntMap.remove(mIntDataMap.get(id));
-        mDataIntMap.put(item, id);
-        mIntDataMap.put(id, item);
+        Object previous = mIntDataMap.put(id, item);
+        if (previous != item && (previous == null || !previous.equals(item))) {
+            mChanged = true;
+            mDirty.set(id);
+        }
     }
 
     /**
@@ -109,7 +121,7 @@ public class RemoteComposeState {
      */
     public int cacheFloat(float item) {
         int id = nextId();
-        mFloatMap[id] = item;
+        updateFloat(id, item);
         return id;
     }
 
@@ -117,21 +129,24 @@ public class RemoteComposeState {
      * Insert an item in the cache
      */
     public void cacheFloat(int id, float item) {
-        mFloatMap[id] = item;
+        updateFloat(id, item);
     }
 
     /**
      * Insert an item in the cache
      */
     public void updateFloat(int id, float item) {
-        mFloatMap[id] = item;
+        if (Float.floatToRawIntBits(mFloatMap.get(id)) != Float.floatToRawIntBits(item)) {
+            mFloatMap.set(id, item);
+            mDirty.set(id);
+        }
     }
 
     /**
      * get float
      */
     public float getFloat(int id) {
-        return mFloatMap[id];
+        return mFloatMap.get(id);
     }
 
     /**
@@ -141,7 +156,7 @@ public class RemoteComposeState {
      * @return
      */
     public int getColor(int id) {
-        return mColorMap[id];
+        return mColorMap.get(id);
     }
 
     /**
@@ -150,16 +165,48 @@ public class RemoteComposeState {
      * @param color
      */
     public void updateColor(int id, int color) {
-        mColorMap[id] = color;
+        if (mColorMap.get(id) != color) {
+            mColorMap.set(id, color);
+            mDirty.set(id);
+        }
+    }
+
+
+    /**
+     * Copy of the values of the float and color variables
+     */
+    public static class Snapshot {
+        final PagedFloatArray mFloats;
+        final PagedIntArray mColors;
+
+        Snapshot(PagedFloatArray floats, PagedIntArray colors) {
+            mFloats = floats;
+            mColors = colors;
+        }
+    }
+
+    /**
+     * Copy the values of all the float and color variables
+     */
+    public Snapshot snapshot() {
+        return new Snapshot(mFloatMap.snapshot(), mColorMap.snapshot());
     }
 
+    /**
+     * Set the float and color variables back to a snapshot,
+     * the listeners of the ones that changed are updated by the next getOpsToUpdate()
+     */
+    public void restore(Snapshot snapshot) {
+        mFloatMap.restore(snapshot.mFloats, mDirty);
+        mColorMap.restore(snapshot.mColors, mDirty);
+    }
 
     /**
      * Method to determine if a cached value has been written to the documents WireBuffer based on
      * its id.
      */
     public boolean wasNotWritten(int id) {
-        return !mIntWrittenMap.get(id);
+        return !mIntWrittenMap.get(id, false);
     }
 
     /**
@@ -177,10 +224,15 @@ public class RemoteComposeState {
     }
 
     /**
-     * Get the next available id
+     * Get the next available id, ids that float expressions would read as operators
+     * are skipped
      * @return
      */
     public int nextId() {
+        if (mNextId > AnimatedFloatExpression.OFFSET
+                && mNextId <= AnimatedFloatExpression.OFFSET + AnimatedFloatExpression.LAST_OP) {
+            mNextId = AnimatedFloatExpression.OFFSET + (int) AnimatedFloatExpression.LAST_OP + 1;
+        }
         return mNextId++;
     }
 
@@ -192,21 +244,34 @@ public class RemoteComposeState {
         mNextId = id;
     }
 
-    IntMap<ArrayList<VariableSupport>> mVarListeners = new IntMap<>();
+    // listeners are numbered in the order they register, which is the document order
+    IntObjectMap<BitSet> mVarListeners = new IntObjectMap<>(); // id -> numbers of its listeners
     ArrayList<VariableSupport> mAllVarListeners = new ArrayList<>();
+    private final IdentityHashMap<VariableSupport, Integer> mListenerNumbers =
+            new IdentityHashMap<>();
+    private final BitSet mDirty = new BitSet(); // ids changed since the last update
+    private final BitSet mPending = new BitSet(); // listeners to update
+    private boolean mChanged = true; // listeners updated or data replaced since takeChanged()
 
     private void add(int id, VariableSupport variableSupport) {
-        ArrayList<VariableSupport> v = mVarListeners.get(id);
+        Integer number = mListenerNumbers.get(variableSupport);
+        if (number == null) {
+            number = mAllVarListeners.size();
+            mListenerNumbers.put(variableSupport, number);
+            mAllVarListeners.add(variableSupport);
+        }
+        BitSet v = mVarListeners.get(id);
         if (v == null) {
-            v = new ArrayList<VariableSupport>();
+            v = new BitSet();
             mVarListeners.put(id, v);
         }
-        v.add(variableSupport);
-        mAllVarListeners.add(variableSupport);
+        v.set(number);
     }
 
     /**
      * Commands that listen to variables add themselves.
+     * A command listening to several variables is only registered once.
+     * Expressions don't register, they are updated by the ExpressionGraph.
      * @param id
      * @param variableSupport
      */
@@ -215,24 +280,61 @@ public class RemoteComposeState {
     }
 
     /**
-     * List of Commands that need to be updated
+     * Update the commands listening to variables changed since the last call.
+     * <p>
+     * Commands are updated in document order, not in dependency order: a variable
+     * changed while updating a command is seen by the commands after it in the same
+     * pass, the commands before it are only updated by the next call. Expressions,
+     * which compute variables from other variables, are evaluated in dependency order
+     * by the ExpressionGraph before this is called, the listeners only read variables.
      * @param context
-     * @return
      */
-    public int getOpsToUpdate(RemoteContext context) {
-        for (VariableSupport vs : mAllVarListeners) {
-            vs.updateVariables(context);
+    public void getOpsToUpdate(RemoteContext context) {
+        collectDirty();
+        mChanged |= !mPending.isEmpty();
+        for (int i = mPending.nextSetBit(0); i >= 0; i = mPending.nextSetBit(i + 1)) {
+            mPending.clear(i);
+            mAllVarListeners.get(i).updateVariables(context);
+            collectDirty(); // listeners before i are left pending for the next update
         }
-        if (mVarListeners.get(ID_CONTINUOUS_SEC) != null) {
-            return 1;
-        }
-        if (mVarListeners.get(ID_TIME_IN_SEC) != null) {
-            return 1000;
+    }
+
+    /**
+     * True if operations were updated by getOpsToUpdate(), or data was replaced,
+     * since the last call
+     */
+    public boolean takeChanged() {
+        boolean changed = mChanged;
+        mChanged = false;
+        return changed;
+    }
+
+    /**
+     * True if the variable or data id changed since the listeners were last updated
+     * (see getOpsToUpdate())
+     */
+    public boolean isDirty(int id) {
+        return mDirty.get(id);
+    }
+
+    /**
+     * True if operations listen to the variable id
+     */
+    public boolean hasListeners(int id) {
+        return mVarListeners.get(id) != null;
+    }
+
+    private void collectDirty() {
+        if (mDirty.isEmpty()) {
+            return;
         }
-        if (mVarListeners.get(ID_TIME_IN_MIN) != null) {
-            return 1000 * 60;
+        for (int id = mDirty.nextSetBit(0); id >= 0; id = mDirty.nextSetBit(id + 1)) {
+            BitSet listeners = mVarListeners.get(id);
+            if (listeners != null) {
+                mPending.or(listeners);
+            }
         }
-        return -1;
+        mDirty.clear();
     }
 
     /**
@@ -0,0 +1,179 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.nift4.remotecomposedemo.lib.core;
+
+import com.example.nift4.remotecomposedemo.lib.core.operations.FloatExpression;
+import com.example.nift4.remotecomposedemo.lib.core.operations.Utils;
+import com.example.nift4.remotecomposedemo.lib.core.operations.utilities.easing.AnimationSpecCache;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+
+/**
+ * Decodes operations while the document is being received.
+ * <p>
+ * Bytes are appended with feed(), every operation fully contained in what has been
+ * received so far is decoded right away. The wire format has no per operation size,
+ * so an operation is decoded speculatively over a bounds checked view of the bytes
+ * received; if it runs past the end it is rolled back and decoded again once more
+ * bytes are available. Reads past the end are the plain IndexOutOfBoundsException the
+ * view throws, subclasses come from decoding errors and are not caught. An operation
+ * announcing more bytes than the document holds is thus only reported by finish().
+ * <p>
+ * Every operation is checked by a DocumentVerifier before it is decoded.
+ * Compressed containers (see CompressedContainer) are accumulated and decoded in finish().
+ */
+public class RemoteComposeStreamParser {
+    private static final boolean DEBUG = false;
+
+    private enum State {
+        START, // waiting for the first bytes, to detect a compressed container
+        OPERATIONS, // decoding operations
+        COMPRESSED, // accumulating a compressed container
+        DONE
+    }
+
+    private final ArrayList<Operation> mOperations;
+    private final DocumentVerifier mVerifier = new DocumentVerifier();
+    private final AnimationSpecCache mAnimationSpecs;
+    private WireBuffer mBuffer = new WireBuffer();
+    private State mState = State.START;
+    private int mParsed = 0; // offset of the first operation not decoded yet
+    private boolean mCompact = false;
+    private int mDocumentVersion = 0;
+
+    /**
+     * @param operations the list operations are added to as they are decoded
+     */
+    public RemoteComposeStreamParser(ArrayList<Operation> operations) {
+        this(operations, new AnimationSpecCache());
+    }
+
+    /**
+     * @param operations the list operations are added to as they are decoded
+     * @param specs      shares the animation specs of the expressions
+     */
+    public RemoteComposeStreamParser(ArrayList<Operation> operations,
+                                     AnimationSpecCache specs) {
+        mOperations = operations;
+        mAnimationSpecs = specs;
+    }
+
+    /**
+     * Append received bytes and decode the operations they complete
+     *
+     * @return the number of operations decoded
+     */
+    public int feed(byte[] data, int offset, int length) {
+        if (mState == State.DONE) {
+            throw new IllegalStateException("feed() after finish()");
+        }
+        mBuffer.setIndex(mBuffer.mSize);
+        mBuffer.resize(length);
+        System.arraycopy(data, offset, mBuffer.mBuffer, mBuffer.mSize, length);
+        mBuffer.mSize += length;
+
+        if (mState == State.START) {
+            if (mBuffer.mSize < 4) {
+                return 0;
+            }
+            mState = CompressedContainer.isCompressed(mBuffer.mBuffer, mBuffer.mSize)
+                    ? State.COMPRESSED : State.OPERATIONS;
+        }
+        if (mState == State.COMPRESSED) {
+            return 0;
+        }
+        return parseAvailable();
+    }
+
+    /**
+     * Signal the end of the stream.
+     *
+     * @return the number of operations decoded
+     * @throws RuntimeException if the document is truncated
+     */
+    public int finish() {
+        int count = 0;
+        if (mState == State.COMPRESSED) {
+            mBuffer = CompressedContainer.inflate(
+                    ByteBuffer.wrap(mBuffer.mBuffer, 0, mBuffer.mSize));
+            mParsed = 0;
+            count = parseAvailable();
+        } else if (mState == State.START) {
+            count = parseAvailable();
+        }
+        mState = State.DONE;
+        if (mParsed != mBuffer.mSize) {
+            throw new RuntimeException("truncated document, "
+                    + (mBuffer.mSize - mParsed) + " bytes left at " + mParsed);
+        }
+        mBuffer.setIndex(0);
+        mBuffer.setCompact(false);
+        mBuffer.setDocumentVersion(0);
+        return count;
+    }
+
+    /**
+     * The document received so far, complete once finish() returned
+     */
+    public WireBuffer getBuffer() {
+        return mBuffer;
+    }
+
+    public ArrayList<Operation> getOperations() {
+        return mOperations;
+    }
+
+    private int parseAvailable() {
+        int count = mOperations.size();
+        WireBuffer view = new ByteBufferWireBuffer(
+                ByteBuffer.wrap(mBuffer.mBuffer, 0, mBuffer.mSize));
+        view.setIndex(mParsed);
+        view.setCompact(mCompact);
+        view.setDocumentVersion(mDocumentVersion);
+        while (view.available()) {
+            int added = mOperations.size();
+            try {
+                int opId = view.readByte();
+                if (DEBUG) {
+                    Utils.log(">> " + opId);
+                }
+                CompanionOperation operation =
+                        Operations.get(opId, view.getDocumentVersion());
+                if (operation == null) {
+                    throw new RuntimeException("Unknown operation encountered " + opId);
+                }
+                mVerifier.verifyOperation(operation, view, mOperations);
+            } catch (IndexOutOfBoundsException e) {
+                if (e.getClass() != IndexOutOfBoundsException.class) {
+                    // e.g. an ArrayIndexOutOfBoundsException, a decoding error and not
+                    // a read past the bytes received
+                    throw e;
+                }
+                // the operation is not complete yet, decode it again on the next feed()
+                while (mOperations.size() > added) {
+                    mOperations.remove(mOperations.size() - 1);
+                }
+                break;
+            }
+            FloatExpression.shareAnimations(mOperations, added, mAnimationSpecs);
+            mParsed = view.getIndex();
+            mCompact = view.isCompact();
+            mDocumentVersion = view.getDocumentVersion();
+        }
+        return mOperations.size() - count;
+    }
+}
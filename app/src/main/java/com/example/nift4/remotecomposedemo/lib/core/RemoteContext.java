@@ -30,7 +30,11 @@ import com.example.nift4.remotecomposedemo.lib.core.operations.Utils;
 public abstract class RemoteContext {
     protected CoreDocument mDocument;
     public RemoteComposeState mRemoteComposeState;
-    long mStart = System.nanoTime(); // todo This should be set at a hi level
+    private FrameClock mFrameClock = new FrameClock.RealTime();
+    private float mAnimationTime = 0; // sampled once per frame
+    private long mFrameNanos = 0; // exact time of the frame, the float loses precision
+    private boolean mAnimationTimeSampled = false;
+    private boolean mAnimationTimeAdvanced = false;
     protected PaintContext mPaintContext = null;
     ContextMode mMode = ContextMode.UNSET;
 
@@ -66,10 +70,43 @@ public abstract class RemoteContext {
 
     /**
      * gets the time animation clock as float in seconds
-     * @return a monotonic time in seconds (arbitrary zero point)
+     * @return a monotonic time in seconds (arbitrary zero point), the same for the
+     * whole frame
      */
     public float getAnimationTime() {
-        return (System.nanoTime() - mStart) * 1E-9f;
+        return mAnimationTime;
+    }
+
+    /**
+     * Sample the frame clock for a new frame, called by the document before it updates
+     * its operations
+     */
+    public void updateAnimationTime() {
+        long nanos = mFrameClock.nextFrameNanos();
+        mAnimationTimeAdvanced = !mAnimationTimeSampled || nanos > mFrameNanos;
+        mAnimationTimeSampled = true;
+        mFrameNanos = nanos;
+        mAnimationTime = nanos * 1E-9f;
+    }
+
+    /**
+     * False when the frame clock did not move since the previous frame, e.g. it is
+     * paused or a replay ended: animations then don't need more frames.
+     */
+    public boolean isAnimationTimeAdvancing() {
+        return mAnimationTimeAdvanced;
+    }
+
+    /**
+     * Set the source of the animation time, by default a FrameClock.RealTime
+     */
+    public void setFrameClock(FrameClock frameClock) {
+        mFrameClock = frameClock;
+        mAnimationTimeSampled = false;
+    }
+
+    public FrameClock getFrameClock() {
+        return mFrameClock;
     }
 
 
@@ -242,9 +279,9 @@ public abstract class RemoteContext {
 
     /**
      * Notify commands with variables have changed
-     * @return
+     * (see CoreDocument.needsRepaint() for when to update them next)
      */
-    public abstract int updateOps();
+    public abstract void updateOps();
 
     /**
      * Get a shader given the id
@@ -15,37 +15,104 @@
  */
 package com.example.nift4.remotecomposedemo.lib.core;
 
+import java.time.Clock;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 
 /**
  * This generates the standard system variables for time.
+ * <p>
+ * The calendar fields are resolved once per minute, in between the seconds are derived
+ * from the milliseconds of the clock so a frame does not allocate. Variables are only
+ * loaded when they change.
  */
 public class TimeVariables {
+    private static final int MINUTE = 60 * 1000;
+
+    private final Clock mClock; // null for the system clock in the default time zone
+    private RemoteContext mContext; // context the variables were loaded in
+    private long mMinuteStart = Long.MAX_VALUE; // epoch millis of the current minute
+    private long mNextMinute = Long.MIN_VALUE;
+    private int mHour;
+    private int mMinute;
+    private int mSeconds = -1; // seconds of the hour loaded
+    private int mMillisToNextSecond;
+    private int mMillisToNextMinute;
+
+    public TimeVariables() {
+        this(null);
+    }
+
+    /**
+     * @param clock the source of the time and of its time zone, e.g. a fixed clock in tests
+     */
+    public TimeVariables(Clock clock) {
+        mClock = clock;
+    }
+
     /**
      * This class populates all time variables in the system
      * @param context
      */
     public void updateTime(RemoteContext context) {
-        LocalDateTime dateTime = LocalDateTime.now();
+        long now = (mClock == null) ? System.currentTimeMillis() : mClock.millis();
         // This define the time in the format
         // seconds run from Midnight=0 quantized to seconds hour 0..3599
         // minutes run from Midnight=0 quantized to minutes 0..1439
         // hours run from Midnight=0 quantized to Hours 0-23
         // CONTINUOUS_SEC is seconds from midnight looping every hour 0-3600
         // CONTINUOUS_SEC is accurate to milliseconds due to float precession
-        int month = dateTime.getDayOfMonth();
-        int hour = dateTime.getHour();
-        int minute = dateTime.getMinute();
-        int seconds = dateTime.getSecond();
-        int currentMinute = hour * 60 + minute;
-        int currentSeconds = minute * 60 + seconds;
-        float sec = currentSeconds + dateTime.getNano() * 1E-9f;
-
-        context.loadFloat(RemoteContext.ID_CONTINUOUS_SEC, sec);
-        context.loadFloat(RemoteContext.ID_TIME_IN_SEC, currentSeconds);
-        context.loadFloat(RemoteContext.ID_TIME_IN_MIN, currentMinute);
-        context.loadFloat(RemoteContext.ID_TIME_IN_HR, hour);
-        context.loadFloat(RemoteContext.ID_CALENDAR_MONTH, month);
+        if (now >= mNextMinute || now < mMinuteStart || context != mContext) {
+            ZoneId zone = (mClock == null) ? ZoneId.systemDefault() : mClock.getZone();
+            LocalDateTime dateTime = LocalDateTime.ofInstant(Instant.ofEpochMilli(now), zone);
+            mHour = dateTime.getHour();
+            mMinute = dateTime.getMinute();
+            mMinuteStart = now - dateTime.getSecond() * 1000L - dateTime.getNano() / 1000000;
+            mNextMinute = mMinuteStart + MINUTE;
+            mSeconds = -1;
+            mContext = context;
+            context.loadFloat(RemoteContext.ID_TIME_IN_MIN, mHour * 60 + mMinute);
+            context.loadFloat(RemoteContext.ID_TIME_IN_HR, mHour);
+            context.loadFloat(RemoteContext.ID_CALENDAR_MONTH, dateTime.getDayOfMonth());
+        }
+        int millis = (int) (now - mMinuteStart);
+        int currentSeconds = mMinute * 60 + millis / 1000;
+        mMillisToNextSecond = 1000 - millis % 1000;
+        mMillisToNextMinute = (int) (mNextMinute - now);
+
+        context.loadFloat(RemoteContext.ID_CONTINUOUS_SEC, mMinute * 60 + millis * 1E-3f);
+        if (currentSeconds != mSeconds) {
+            mSeconds = currentSeconds;
+            context.loadFloat(RemoteContext.ID_TIME_IN_SEC, currentSeconds);
+        }
+    }
+
+    /**
+     * Milliseconds from the last updateTime() to the next change of ID_TIME_IN_SEC
+     */
+    public int getMillisToNextSecond() {
+        return mMillisToNextSecond;
+    }
+
+    /**
+     * Milliseconds from the last updateTime() to the next change of ID_TIME_IN_MIN
+     */
+    public int getMillisToNextMinute() {
+        return mMillisToNextMinute;
+    }
 
+    /**
+     * Milliseconds from the last updateTime() to the next change of ID_TIME_IN_HR
+     */
+    public int getMillisToNextHour() {
+        return (59 - mMinute) * MINUTE + mMillisToNextMinute;
+    }
+
+    /**
+     * Milliseconds from the last updateTime() to the next change of ID_CALENDAR_MONTH
+     */
+    public int getMillisToNextDay() {
+        return (23 - mHour) * 60 * MINUTE + getMillisToNextHour();
     }
 }
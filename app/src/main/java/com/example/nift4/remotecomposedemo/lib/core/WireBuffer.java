@@ -15,39 +15,137 @@
  */
 package com.example.nift4.remotecomposedemo.lib.core;
 
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 
 /**
  * The base communication buffer capable of encoding and decoding various types
  */
 public class WireBuffer {
-    private static final int BUFFER_SIZE = 1024 * 1024 * 1;
+    private static final int BUFFER_SIZE = 1024 * 8; // initial size, grows as needed
+    private static final int POOL_SIZE = 4;
+    private static final int MAX_POOLED_SIZE = 1024 * 1024 * 1;
+    // below this many values the bulk reads and writes copy them one by one instead of
+    // allocating a ByteBuffer and a FloatBuffer/IntBuffer (112 bytes). Measured on a
+    // JVM writing then reading: 50ns vs 97ns for 8 floats, 76ns vs 108ns for 16,
+    // 140ns vs 97ns for 32
+    static final int BULK_THRESHOLD = 32;
+    private static final WireBuffer[] sPool = new WireBuffer[POOL_SIZE];
+    private static int sPoolCount = 0;
     int mMaxSize;
     byte[] mBuffer;
     int mIndex = 0;
     int mStartingIndex = 0;
     int mSize = 0;
+    boolean mCompact = false;
+    int mDocumentVersion = 0;
+    private boolean mOwned; // mBuffer was allocated here and can be pooled
 
     public WireBuffer(int size) {
         mMaxSize = size;
         mBuffer = new byte[mMaxSize];
+        mOwned = true;
     }
 
     public WireBuffer() {
         this(BUFFER_SIZE);
     }
 
-    private void resize(int need) {
-        if (mSize + need >= mMaxSize) {
-            mMaxSize = Math.max(mMaxSize * 2, mSize + need);
+    /**
+     * Wrap an existing array without copying it. The first size bytes are
+     * considered to be already written and are available for reading.
+     *
+     * @param buffer the backing array
+     * @param size   number of valid bytes in the array
+     */
+    public WireBuffer(byte[] buffer, int size) {
+        mBuffer = buffer;
+        mMaxSize = buffer.length;
+        mSize = size;
+    }
+
+    /**
+     * Create a WireBuffer reading from [position, limit) of the given ByteBuffer.
+     * Heap buffers share their backing array, direct and memory mapped buffers
+     * are read in place. In both cases no copy of the content is made.
+     *
+     * @param byteBuffer the buffer to read from
+     * @return a WireBuffer positioned at the start of the content
+     */
+    public static WireBuffer wrap(ByteBuffer byteBuffer) {
+        if (byteBuffer.hasArray() && byteBuffer.arrayOffset() == 0
+                && byteBuffer.position() == 0) {
+            return new WireBuffer(byteBuffer.array(), byteBuffer.limit());
+        }
+        return new ByteBufferWireBuffer(byteBuffer);
+    }
+
+    /**
+     * Get a buffer from the pool, or allocate one if the pool is empty.
+     * Call recycle() once the content has been serialized.
+     *
+     * @param sizeHint expected size of the content
+     */
+    public static WireBuffer obtain(int sizeHint) {
+        synchronized (sPool) {
+            if (sPoolCount > 0) {
+                WireBuffer buffer = sPool[--sPoolCount];
+                sPool[sPoolCount] = null;
+                buffer.reset(sizeHint);
+                return buffer;
+            }
+        }
+        return new WireBuffer(Math.max(sizeHint, BUFFER_SIZE));
+    }
+
+    /**
+     * Return the buffer to the pool, it must not be used afterward.
+     * Only buffers allocating their own array are pooled, buffers wrapping an array
+     * of the caller or that grew past MAX_POOLED_SIZE are left to the GC.
+     */
+    public void recycle() {
+        if (!mOwned || mMaxSize > MAX_POOLED_SIZE) {
+            return;
+        }
+        reset(0);
+        synchronized (sPool) {
+            if (sPoolCount < POOL_SIZE) {
+                sPool[sPoolCount++] = this;
+            }
+        }
+    }
+
+    void resize(int need) {
+        if (mIndex + need >= mMaxSize) {
+            mMaxSize = Math.max(mMaxSize * 2, mIndex + need);
             mBuffer = Arrays.copyOf(mBuffer, mMaxSize);
+            mOwned = true;
         }
     }
 
+    /**
+     * The backing array, only the first getSize() bytes are meaningful.
+     * Buffers reading a ByteBuffer in place (see wrap()) have none, code that may
+     * receive one should use asByteBuffer().
+     */
     public byte[] getBuffer() {
         return mBuffer;
     }
 
+    /**
+     * Copy of the content trimmed to [0, size)
+     */
+    public byte[] toByteArray() {
+        return Arrays.copyOf(mBuffer, mSize);
+    }
+
+    /**
+     * A read only view over [0, size) sharing the backing array
+     */
+    public ByteBuffer asByteBuffer() {
+        return ByteBuffer.wrap(mBuffer, 0, mSize).slice().asReadOnlyBuffer();
+    }
+
     public int getMax_size() {
         return mMaxSize;
     }
@@ -92,6 +190,8 @@ public class WireBuffer {
         mIndex = 0;
         mStartingIndex = 0;
         mSize = 0;
+        mCompact = false;
+        mDocumentVersion = 0;
         if (expectedSize >= mMaxSize) {
             resize(expectedSize);
         }
@@ -101,10 +201,54 @@ public class WireBuffer {
         return mSize;
     }
 
+    /**
+     * Select the compact encoding profile (see Header.CAPABILITY_COMPACT_ENCODING)
+     * In this profile ids and lengths are LEB128 varints and coordinates are
+     * written as tagged, optionally delta coded, values.
+     *
+     * @param compact true to use the compact profile
+     */
+    public void setCompact(boolean compact) {
+        mCompact = compact;
+    }
+
+    public boolean isCompact() {
+        return mCompact;
+    }
+
+    /**
+     * Version of the document being read, set by the Header (see Operations.version()).
+     * Operations registered for a newer version are rejected.
+     */
+    public void setDocumentVersion(int version) {
+        mDocumentVersion = version;
+    }
+
+    public int getDocumentVersion() {
+        return mDocumentVersion;
+    }
+
     public boolean available() {
         return mSize - mIndex > 0;
     }
 
+    public int remaining() {
+        return mSize - mIndex;
+    }
+
+    /**
+     * Move past count bytes
+     *
+     * @throws IndexOutOfBoundsException if less than count bytes are left
+     */
+    public void skip(int count) {
+        if (count < 0 || count > mSize - mIndex) {
+            throw new IndexOutOfBoundsException("cannot skip " + count
+                    + " bytes at " + mIndex + ", size " + mSize);
+        }
+        mIndex += count;
+    }
+
     ///////////////////////////////////////////////////////////////////////////
     // Read values
     ///////////////////////////////////////////////////////////////////////////
@@ -168,14 +312,14 @@ public class WireBuffer {
     }
 
     public byte[] readBuffer() {
-        int count = readInt();
+        int count = readCompactInt();
         byte[] b = Arrays.copyOfRange(mBuffer, mIndex, mIndex + count);
         mIndex += count;
         return b;
     }
 
     public byte[] readBuffer(int maxSize) {
-        int count = readInt();
+        int count = readCompactInt();
         if (count < 0 || count > maxSize) {
             throw new RuntimeException("attempt read a buff of invalid size 0 <= "
                     + count + " > " + maxSize);
@@ -195,6 +339,118 @@ public class WireBuffer {
         return new String(stringBuffer);
     }
 
+    /**
+     * Read an id or a length, as a varint in the compact profile
+     */
+    public int readCompactInt() {
+        if (!mCompact) {
+            return readInt();
+        }
+        return readVarInt();
+    }
+
+    /**
+     * Read an unsigned LEB128 varint
+     */
+    public int readVarInt() {
+        int value = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = readByte();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0 && shift < 35);
+        return value;
+    }
+
+    /**
+     * Read a coordinate, as a tagged value in the compact profile
+     */
+    public float readCompactFloat() {
+        if (!mCompact) {
+            return readFloat();
+        }
+        int v = readVarInt();
+        switch (v & TAG_MASK) {
+            case TAG_INTEGER:
+                return zigzagDecode(v >>> 2);
+            case TAG_NAN_ID:
+                return Float.intBitsToFloat((v >>> 2) | NAN_ID_BITS);
+            default:
+                return readFloat();
+        }
+    }
+
+    /**
+     * Read a stream of coordinates, delta coded in the compact profile
+     *
+     * @param dst destination array
+     * @param off offset in the destination array
+     * @param len number of floats to read
+     */
+    public void readCompactFloats(float[] dst, int off, int len) {
+        if (!mCompact) {
+            readFloats(dst, off, len);
+            return;
+        }
+        int[] previous = new int[2];
+        int numbers = 0;
+        for (int i = off; i < off + len; i++) {
+            int v = readVarInt();
+            switch (v & TAG_MASK) {
+                case TAG_INTEGER: {
+                    int slot = numbers++ & 1;
+                    previous[slot] += zigzagDecode(v >>> 2);
+                    dst[i] = previous[slot];
+                }
+                break;
+                case TAG_NAN_ID:
+                    dst[i] = Float.intBitsToFloat((v >>> 2) | NAN_ID_BITS);
+                    break;
+                default:
+                    numbers++;
+                    dst[i] = readFloat();
+            }
+        }
+    }
+
+    /**
+     * Read len floats, in a single bulk operation from BULK_THRESHOLD values
+     *
+     * @param dst destination array
+     * @param off offset in the destination array
+     * @param len number of floats to read
+     */
+    public void readFloats(float[] dst, int off, int len) {
+        if (len < BULK_THRESHOLD) {
+            for (int i = off; i < off + len; i++) {
+                dst[i] = Float.intBitsToFloat(readInt());
+            }
+            return;
+        }
+        ByteBuffer.wrap(mBuffer, mIndex, len * 4).asFloatBuffer().get(dst, off, len);
+        mIndex += len * 4;
+    }
+
+    /**
+     * Read len ints, in a single bulk operation from BULK_THRESHOLD values
+     *
+     * @param dst destination array
+     * @param off offset in the destination array
+     * @param len number of ints to read
+     */
+    public void readInts(int[] dst, int off, int len) {
+        if (len < BULK_THRESHOLD) {
+            for (int i = off; i < off + len; i++) {
+                dst[i] = readInt();
+            }
+            return;
+        }
+        ByteBuffer.wrap(mBuffer, mIndex, len * 4).asIntBuffer().get(dst, off, len);
+        mIndex += len * 4;
+    }
+
     ///////////////////////////////////////////////////////////////////////////
     // Write values
     ///////////////////////////////////////////////////////////////////////////
@@ -252,13 +508,150 @@ public class WireBuffer {
     }
 
     public void writeBuffer(byte[] b) {
-        resize(b.length + 4);
-        writeInt(b.length);
-        for (int i = 0; i < b.length; i++) {
-            mBuffer[mIndex++] = b[i];
+        resize(b.length + 5);
+        writeCompactInt(b.length);
+        System.arraycopy(b, 0, mBuffer, mIndex, b.length);
+        mIndex += b.length;
+        mSize += b.length;
+    }
 
+    /**
+     * Write an id or a length, as a varint in the compact profile
+     */
+    public void writeCompactInt(int value) {
+        if (!mCompact) {
+            writeInt(value);
+            return;
         }
-        mSize += b.length;
+        writeVarInt(value);
+    }
+
+    /**
+     * Write an unsigned LEB128 varint (negative values take 5 bytes)
+     */
+    public void writeVarInt(int value) {
+        while ((value & ~0x7F) != 0) {
+            writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        writeByte(value);
+    }
+
+    /**
+     * Write a coordinate, as a tagged value in the compact profile:
+     * small integers and NaN ids take 1 to 4 bytes, other floats 5 bytes
+     */
+    public void writeCompactFloat(float value) {
+        if (!mCompact) {
+            writeFloat(value);
+            return;
+        }
+        int bits = Float.floatToRawIntBits(value);
+        if ((bits & NAN_ID_MASK) == NAN_ID_BITS) {
+            writeVarInt(((bits & ~NAN_ID_MASK) << 2) | TAG_NAN_ID);
+        } else if (isSmallInteger(value)) {
+            writeVarInt((zigzagEncode((int) value) << 2) | TAG_INTEGER);
+        } else {
+            writeVarInt(TAG_FLOAT);
+            writeFloat(value);
+        }
+    }
+
+    /**
+     * Write a stream of coordinates. In the compact profile integers are written as
+     * the delta to the previous integer at the same x/y position in the stream.
+     *
+     * @param values source array
+     * @param off    offset in the source array
+     * @param len    number of floats to write
+     */
+    public void writeCompactFloats(float[] values, int off, int len) {
+        if (!mCompact) {
+            writeFloats(values, off, len);
+            return;
+        }
+        int[] previous = new int[2];
+        int numbers = 0;
+        for (int i = off; i < off + len; i++) {
+            float value = values[i];
+            int bits = Float.floatToRawIntBits(value);
+            if ((bits & NAN_ID_MASK) == NAN_ID_BITS) {
+                writeVarInt(((bits & ~NAN_ID_MASK) << 2) | TAG_NAN_ID);
+                continue;
+            }
+            int slot = numbers++ & 1;
+            if (isSmallInteger(value) && isSmallInteger((int) value - previous[slot])) {
+                writeVarInt((zigzagEncode((int) value - previous[slot]) << 2) | TAG_INTEGER);
+                previous[slot] = (int) value;
+            } else {
+                writeVarInt(TAG_FLOAT);
+                writeFloat(value);
+            }
+        }
+    }
+
+    private static final int TAG_MASK = 3;
+    private static final int TAG_INTEGER = 0;
+    private static final int TAG_NAN_ID = 1;
+    private static final int TAG_FLOAT = 2;
+    private static final int NAN_ID_MASK = 0xFFF00000;
+    private static final int NAN_ID_BITS = 0xFF800000;
+    private static final int MAX_SMALL_INTEGER = 1 << 27;
+
+    private static boolean isSmallInteger(float value) {
+        return value == (int) value
+                && Math.abs(value) < MAX_SMALL_INTEGER
+                && Float.floatToRawIntBits(value) != 0x80000000; // keep -0f as a float
+    }
+
+    private static int zigzagEncode(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private static int zigzagDecode(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Write len floats, in a single bulk operation from BULK_THRESHOLD values
+     *
+     * @param values source array
+     * @param off    offset in the source array
+     * @param len    number of floats to write
+     */
+    public void writeFloats(float[] values, int off, int len) {
+        if (len < BULK_THRESHOLD) {
+            for (int i = off; i < off + len; i++) {
+                writeInt(Float.floatToRawIntBits(values[i]));
+            }
+            return;
+        }
+        int need = len * 4;
+        resize(need);
+        ByteBuffer.wrap(mBuffer, mIndex, need).asFloatBuffer().put(values, off, len);
+        mIndex += need;
+        mSize += need;
+    }
+
+    /**
+     * Write len ints, in a single bulk operation from BULK_THRESHOLD values
+     *
+     * @param values source array
+     * @param off    offset in the source array
+     * @param len    number of ints to write
+     */
+    public void writeInts(int[] values, int off, int len) {
+        if (len < BULK_THRESHOLD) {
+            for (int i = off; i < off + len; i++) {
+                writeInt(values[i]);
+            }
+            return;
+        }
+        int need = len * 4;
+        resize(need);
+        ByteBuffer.wrap(mBuffer, mIndex, need).asIntBuffer().put(values, off, len);
+        mIndex += need;
+        mSize += need;
     }
 
     public void writeUTF8(String content) {
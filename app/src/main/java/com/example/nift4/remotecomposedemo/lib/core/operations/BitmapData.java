@@ -16,6 +16,7 @@
 package com.example.nift4.remotecomposedemo.lib.core.operations;
 
 import com.example.nift4.remotecomposedemo.lib.core.CompanionOperation;
+import com.example.nift4.remotecomposedemo.lib.core.DocumentVerifier;
 import com.example.nift4.remotecomposedemo.lib.core.Operation;
 import com.example.nift4.remotecomposedemo.lib.core.Operations;
 import com.example.nift4.remotecomposedemo.lib.core.RemoteContext;
@@ -70,15 +71,33 @@ public class BitmapData implements Operation {
 
         public void apply(WireBuffer buffer, int imageId, int width, int height, byte[] bitmap) {
             buffer.start(Operations.DATA_BITMAP);
-            buffer.writeInt(imageId);
+            buffer.writeCompactInt(imageId);
             buffer.writeInt(width);
             buffer.writeInt(height);
             buffer.writeBuffer(bitmap);
         }
 
+        @Override
+        public boolean verify(WireBuffer buffer, DocumentVerifier verifier) {
+            buffer.readCompactInt();
+            int width = buffer.readInt();
+            int height = buffer.readInt();
+            if (width < 1
+                    || height < 1
+                    || height > MAX_IMAGE_DIMENSION
+                    || width > MAX_IMAGE_DIMENSION) {
+                throw new RuntimeException("Dimension of image is invalid " + width + "x" + height);
+            }
+            int length = buffer.readCompactInt();
+            verifier.checkLength(length, Integer.MAX_VALUE, 1, buffer);
+            buffer.skip(length);
+            verifier.allocate(length + (long) width * height * 4); // and once decoded
+            return true;
+        }
+
         @Override
         public void read(WireBuffer buffer, List<Operation> operations) {
-            int imageId = buffer.readInt();
+            int imageId = buffer.readCompactInt();
             int width = buffer.readInt();
             int height = buffer.readInt();
             if (width < 1
@@ -106,24 +106,24 @@ public class ClickArea implements RemoteComposeOperation {
                    float left, float top, float right, float bottom,
                    int metadata) {
             buffer.start(Operations.CLICK_AREA);
-            buffer.writeInt(id);
-            buffer.writeInt(contentDescription);
+            buffer.writeCompactInt(id);
+            buffer.writeCompactInt(contentDescription);
             buffer.writeFloat(left);
             buffer.writeFloat(top);
             buffer.writeFloat(right);
             buffer.writeFloat(bottom);
-            buffer.writeInt(metadata);
+            buffer.writeCompactInt(metadata);
         }
 
         @Override
         public void read(WireBuffer buffer, List<Operation> operations) {
-            int id = buffer.readInt();
-            int contentDescription = buffer.readInt();
+            int id = buffer.readCompactInt();
+            int contentDescription = buffer.readCompactInt();
             float left = buffer.readFloat();
             float top = buffer.readFloat();
             float right = buffer.readFloat();
             float bottom = buffer.readFloat();
-            int metadata = buffer.readInt();
+            int metadata = buffer.readCompactInt();
             ClickArea clickArea = new ClickArea(id, contentDescription,
                     left, top, right, bottom, metadata);
             operations.add(clickArea);
@@ -71,7 +71,7 @@ public class ClipPath extends PaintOperation {
 
         @Override
         public void read(WireBuffer buffer, List<Operation> operations) {
-            int pack = buffer.readInt();
+            int pack = buffer.readCompactInt();
             int id = pack & 0xFFFFF;
             int regionOp = pack >> 24;
             ClipPath op = new ClipPath(id, regionOp);
@@ -90,7 +90,7 @@ public class ClipPath extends PaintOperation {
 
         public void apply(WireBuffer buffer, int id) {
             buffer.start(Operations.CLIP_PATH);
-            buffer.writeInt(id);
+            buffer.writeCompactInt(id);
         }
     }
 
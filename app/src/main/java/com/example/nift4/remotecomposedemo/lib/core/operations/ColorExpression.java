@@ -16,12 +16,15 @@
 package com.example.nift4.remotecomposedemo.lib.core.operations;
 
 import com.example.nift4.remotecomposedemo.lib.core.CompanionOperation;
+import com.example.nift4.remotecomposedemo.lib.core.DocumentVerifier;
+import com.example.nift4.remotecomposedemo.lib.core.ExpressionOperation;
 import com.example.nift4.remotecomposedemo.lib.core.Operation;
 import com.example.nift4.remotecomposedemo.lib.core.Operations;
 import com.example.nift4.remotecomposedemo.lib.core.RemoteContext;
 import com.example.nift4.remotecomposedemo.lib.core.VariableSupport;
 import com.example.nift4.remotecomposedemo.lib.core.WireBuffer;
 
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -33,7 +36,7 @@ import java.util.List;
  * mMode = 3 color1 & color2 are ids
  * mMode = 4  H S V mode
  */
-public class ColorExpression implements Operation, VariableSupport {
+public class ColorExpression implements ExpressionOperation, VariableSupport {
     public int mId;
     int mMode;
     public int mColor1;
@@ -166,6 +169,36 @@ public class ColorExpression implements Operation, VariableSupport {
 
     }
 
+    @Override
+    public int getOutputId() {
+        return mId;
+    }
+
+    @Override
+    public int[] getInputIds() {
+        int[] ids = new int[3];
+        int count = 0;
+        if (mMode == HSV_MODE) {
+            float[] hsv = {mHue, mSat, mValue};
+            for (float v : hsv) {
+                if (Float.isNaN(v)) {
+                    ids[count++] = Utils.idFromNan(v);
+                }
+            }
+            return Arrays.copyOf(ids, count);
+        }
+        if (Float.isNaN(mTween)) {
+            ids[count++] = Utils.idFromNan(mTween);
+        }
+        if ((mMode & 1) == 1) {
+            ids[count++] = mColor1;
+        }
+        if ((mMode & 2) == 2) {
+            ids[count++] = mColor2;
+        }
+        return Arrays.copyOf(ids, count);
+    }
+
     @Override
     public void write(WireBuffer buffer) {
         int mode = mMode | (mAlpha << 16);
@@ -214,7 +247,7 @@ public class ColorExpression implements Operation, VariableSupport {
                           int id, int mode,
                           int color1, int color2, float tween) {
             buffer.start(Operations.COLOR_EXPRESSIONS);
-            buffer.writeInt(id);
+            buffer.writeCompactInt(id);
             buffer.writeInt(mode);
             buffer.writeInt(color1);
             buffer.writeInt(color2);
@@ -222,9 +255,31 @@ public class ColorExpression implements Operation, VariableSupport {
 
         }
 
+        @Override
+        public boolean verify(WireBuffer buffer, DocumentVerifier verifier) {
+            verifier.checkId(buffer.readCompactInt());
+            int mode = buffer.readInt() & 0xFF;
+            int color1 = buffer.readInt();
+            int color2 = buffer.readInt();
+            float tween = buffer.readFloat();
+            if (mode == HSV_MODE) {
+                verifier.checkFloat(Float.intBitsToFloat(color1));
+                verifier.checkFloat(Float.intBitsToFloat(color2));
+            } else {
+                if ((mode & 1) == 1) {
+                    verifier.checkId(color1);
+                }
+                if ((mode & 2) == 2) {
+                    verifier.checkId(color2);
+                }
+            }
+            verifier.checkFloat(tween);
+            return true;
+        }
+
         @Override
         public void read(WireBuffer buffer, List<Operation> operations) {
-            int id = buffer.readInt();
+            int id = buffer.readCompactInt();
             int mode = buffer.readInt();
             int color1 = buffer.readInt();
             int color2 = buffer.readInt();
@@ -15,6 +15,7 @@
  */
 package com.example.nift4.remotecomposedemo.lib.core.operations;
 
+import com.example.nift4.remotecomposedemo.lib.core.DisplayList;
 import com.example.nift4.remotecomposedemo.lib.core.Operation;
 import com.example.nift4.remotecomposedemo.lib.core.Operations;
 import com.example.nift4.remotecomposedemo.lib.core.PaintContext;
@@ -43,8 +44,18 @@ public class DrawArc extends DrawBase6 {
         mName = "DrawArc";
     }
 
+    @Override
+    protected Companion companion() {
+        return COMPANION;
+    }
+
     @Override
     public void paint(PaintContext context) {
         context.drawArc(mV1, mV2, mV3, mV4, mV5, mV6);
     }
+
+    @Override
+    public void record(DisplayList list) {
+        list.add(Operations.DRAW_ARC, mValue1, mValue2, mValue3, mValue4, mValue5, mValue6);
+    }
 }
@@ -18,6 +18,8 @@ package com.example.nift4.remotecomposedemo.lib.core.operations;
 import static com.example.nift4.remotecomposedemo.lib.core.operations.Utils.floatToString;
 
 import com.example.nift4.remotecomposedemo.lib.core.CompanionOperation;
+import com.example.nift4.remotecomposedemo.lib.core.DisplayListOperation;
+import com.example.nift4.remotecomposedemo.lib.core.DocumentVerifier;
 import com.example.nift4.remotecomposedemo.lib.core.Operation;
 import com.example.nift4.remotecomposedemo.lib.core.Operations;
 import com.example.nift4.remotecomposedemo.lib.core.PaintOperation;
@@ -31,7 +33,7 @@ import java.util.List;
  * Base class for commands that take 3 float
  */
 public abstract class DrawBase3 extends PaintOperation
-        implements VariableSupport {
+        implements VariableSupport, DisplayListOperation {
     public static final Companion COMPANION =
             new Companion(Operations.DRAW_CIRCLE) {
                 @Override
@@ -86,9 +88,14 @@ public abstract class DrawBase3 extends PaintOperation
 
     @Override
     public void write(WireBuffer buffer) {
-        COMPANION.apply(buffer, mV1, mV2, mV3);
+        companion().apply(buffer, mValue1, mValue2, mValue3);
     }
 
+    /**
+     * The companion of the subclass, COMPANION is only a template
+     */
+    protected abstract Companion companion();
+
     @Override
     public String toString() {
         return mName + " " + floatToString(mV1) + " " + floatToString(mV2)
@@ -102,11 +109,28 @@ public abstract class DrawBase3 extends PaintOperation
             OP_CODE = code;
         }
 
+        @Override
+        public boolean skip(WireBuffer buffer) {
+            boolean variable = false;
+            for (int i = 0; i < 3; i++) {
+                variable |= Float.isNaN(buffer.readCompactFloat());
+            }
+            return !variable;
+        }
+
+        @Override
+        public boolean verify(WireBuffer buffer, DocumentVerifier verifier) {
+            for (int i = 0; i < 3; i++) {
+                verifier.checkFloat(buffer.readCompactFloat());
+            }
+            return true;
+        }
+
         @Override
         public void read(WireBuffer buffer, List<Operation> operations) {
-            float v1 = buffer.readFloat();
-            float v2 = buffer.readFloat();
-            float v3 = buffer.readFloat();
+            float v1 = buffer.readCompactFloat();
+            float v2 = buffer.readCompactFloat();
+            float v3 = buffer.readCompactFloat();
 
             Operation op = construct(v1, v2, v3);
             operations.add(op);
@@ -148,9 +172,9 @@ public abstract class DrawBase3 extends PaintOperation
                           float y1,
                           float x2) {
             buffer.start(OP_CODE);
-            buffer.writeFloat(x1);
-            buffer.writeFloat(y1);
-            buffer.writeFloat(x2);
+            buffer.writeCompactFloat(x1);
+            buffer.writeCompactFloat(y1);
+            buffer.writeCompactFloat(x2);
 
         }
     }
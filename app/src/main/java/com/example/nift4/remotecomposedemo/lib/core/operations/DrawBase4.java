@@ -18,6 +18,8 @@ package com.example.nift4.remotecomposedemo.lib.core.operations;
 import static com.example.nift4.remotecomposedemo.lib.core.operations.Utils.floatToString;
 
 import com.example.nift4.remotecomposedemo.lib.core.CompanionOperation;
+import com.example.nift4.remotecomposedemo.lib.core.DisplayListOperation;
+import com.example.nift4.remotecomposedemo.lib.core.DocumentVerifier;
 import com.example.nift4.remotecomposedemo.lib.core.Operation;
 import com.example.nift4.remotecomposedemo.lib.core.Operations;
 import com.example.nift4.remotecomposedemo.lib.core.PaintOperation;
@@ -31,7 +33,7 @@ import java.util.List;
  * Base class for draw commands that take 4 floats
  */
 public abstract class DrawBase4 extends PaintOperation
-        implements VariableSupport {
+        implements VariableSupport, DisplayListOperation {
     public static final Companion COMPANION =
             new Companion(Operations.DRAW_RECT) {
                 @Override
@@ -96,9 +98,14 @@ public abstract class DrawBase4 extends PaintOperation
 
     @Override
     public void write(WireBuffer buffer) {
-        COMPANION.apply(buffer, mX1, mY1, mX2, mY2);
+        companion().apply(buffer, mX1Value, mY1Value, mX2Value, mY2Value);
     }
 
+    /**
+     * The companion of the subclass, COMPANION is only a template
+     */
+    protected abstract Companion companion();
+
     @Override
     public String toString() {
         return mName + " " + floatToString(mX1Value, mX1) + " " + floatToString(mY1Value, mY1)
@@ -112,12 +119,29 @@ public abstract class DrawBase4 extends PaintOperation
             OP_CODE = code;
         }
 
+        @Override
+        public boolean skip(WireBuffer buffer) {
+            boolean variable = false;
+            for (int i = 0; i < 4; i++) {
+                variable |= Float.isNaN(buffer.readCompactFloat());
+            }
+            return !variable;
+        }
+
+        @Override
+        public boolean verify(WireBuffer buffer, DocumentVerifier verifier) {
+            for (int i = 0; i < 4; i++) {
+                verifier.checkFloat(buffer.readCompactFloat());
+            }
+            return true;
+        }
+
         @Override
         public void read(WireBuffer buffer, List<Operation> operations) {
-            float sLeft = buffer.readFloat();
-            float srcTop = buffer.readFloat();
-            float srcRight = buffer.readFloat();
-            float srcBottom = buffer.readFloat();
+            float sLeft = buffer.readCompactFloat();
+            float srcTop = buffer.readCompactFloat();
+            float srcRight = buffer.readCompactFloat();
+            float srcBottom = buffer.readCompactFloat();
 
             Operation op = construct(sLeft, srcTop, srcRight, srcBottom);
             operations.add(op);
@@ -162,10 +186,10 @@ public abstract class DrawBase4 extends PaintOperation
                           float x2,
                           float y2) {
             buffer.start(OP_CODE);
-            buffer.writeFloat(x1);
-            buffer.writeFloat(y1);
-            buffer.writeFloat(x2);
-            buffer.writeFloat(y2);
+            buffer.writeCompactFloat(x1);
+            buffer.writeCompactFloat(y1);
+            buffer.writeCompactFloat(x2);
+            buffer.writeCompactFloat(y2);
         }
     }
 }
@@ -18,6 +18,8 @@ package com.example.nift4.remotecomposedemo.lib.core.operations;
 import static com.example.nift4.remotecomposedemo.lib.core.operations.Utils.floatToString;
 
 import com.example.nift4.remotecomposedemo.lib.core.CompanionOperation;
+import com.example.nift4.remotecomposedemo.lib.core.DisplayListOperation;
+import com.example.nift4.remotecomposedemo.lib.core.DocumentVerifier;
 import com.example.nift4.remotecomposedemo.lib.core.Operation;
 import com.example.nift4.remotecomposedemo.lib.core.Operations;
 import com.example.nift4.remotecomposedemo.lib.core.PaintOperation;
@@ -31,7 +33,7 @@ import java.util.List;
  * Base class for draw commands the take 6 floats
  */
 public abstract class DrawBase6 extends PaintOperation
-        implements VariableSupport {
+        implements VariableSupport, DisplayListOperation {
     public static final Companion COMPANION =
             new Companion(Operations.DRAW_RECT) {
                 public Operation construct(float x1, float y1, float x2, float y2) {
@@ -115,9 +117,14 @@ public abstract class DrawBase6 extends PaintOperation
 
     @Override
     public void write(WireBuffer buffer) {
-        COMPANION.apply(buffer, mV1, mV2, mV3, mV4, mV5, mV6);
+        companion().apply(buffer, mValue1, mValue2, mValue3, mValue4, mValue5, mValue6);
     }
 
+    /**
+     * The companion of the subclass, COMPANION is only a template
+     */
+    protected abstract Companion companion();
+
     @Override
     public String toString() {
         return mName + " " + floatToString(mV1) + " " + floatToString(mV2)
@@ -131,14 +138,31 @@ public abstract class DrawBase6 extends PaintOperation
             OP_CODE = code;
         }
 
+        @Override
+        public boolean skip(WireBuffer buffer) {
+            boolean variable = false;
+            for (int i = 0; i < 6; i++) {
+                variable |= Float.isNaN(buffer.readCompactFloat());
+            }
+            return !variable;
+        }
+
+        @Override
+        public boolean verify(WireBuffer buffer, DocumentVerifier verifier) {
+            for (int i = 0; i < 6; i++) {
+                verifier.checkFloat(buffer.readCompactFloat());
+            }
+            return true;
+        }
+
         @Override
         public void read(WireBuffer buffer, List<Operation> operations) {
-            float sv1 = buffer.readFloat();
-            float sv2 = buffer.readFloat();
-            float sv3 = buffer.readFloat();
-            float sv4 = buffer.readFloat();
-            float sv5 = buffer.readFloat();
-            float sv6 = buffer.readFloat();
+            float sv1 = buffer.readCompactFloat();
+            float sv2 = buffer.readCompactFloat();
+            float sv3 = buffer.readCompactFloat();
+            float sv4 = buffer.readCompactFloat();
+            float sv5 = buffer.readCompactFloat();
+            float sv6 = buffer.readCompactFloat();
 
             Operation op = construct(sv1, sv2, sv3, sv4, sv5, sv6);
             operations.add(op);
@@ -191,12 +215,12 @@ public abstract class DrawBase6 extends PaintOperation
                           float v5,
                           float v6) {
             buffer.start(OP_CODE);
-            buffer.writeFloat(v1);
-            buffer.writeFloat(v2);
-            buffer.writeFloat(v3);
-            buffer.writeFloat(v4);
-            buffer.writeFloat(v5);
-            buffer.writeFloat(v6);
+            buffer.writeCompactFloat(v1);
+            buffer.writeCompactFloat(v2);
+            buffer.writeCompactFloat(v3);
+            buffer.writeCompactFloat(v4);
+            buffer.writeCompactFloat(v5);
+            buffer.writeCompactFloat(v6);
         }
     }
 }
@@ -16,6 +16,7 @@
 package com.example.nift4.remotecomposedemo.lib.core.operations;
 
 import com.example.nift4.remotecomposedemo.lib.core.CompanionOperation;
+import com.example.nift4.remotecomposedemo.lib.core.DocumentVerifier;
 import com.example.nift4.remotecomposedemo.lib.core.Operation;
 import com.example.nift4.remotecomposedemo.lib.core.Operations;
 import com.example.nift4.remotecomposedemo.lib.core.PaintContext;
@@ -97,14 +98,24 @@ public class DrawBitmap extends PaintOperation implements VariableSupport {
         private Companion() {
         }
 
+        @Override
+        public boolean verify(WireBuffer buffer, DocumentVerifier verifier) {
+            buffer.readCompactInt();
+            for (int i = 0; i < 4; i++) {
+                verifier.checkFloat(buffer.readFloat());
+            }
+            buffer.readCompactInt();
+            return true;
+        }
+
         @Override
         public void read(WireBuffer buffer, List<Operation> operations) {
-            int id = buffer.readInt();
+            int id = buffer.readCompactInt();
             float sLeft = buffer.readFloat();
             float srcTop = buffer.readFloat();
             float srcRight = buffer.readFloat();
             float srcBottom = buffer.readFloat();
-            int discriptionId = buffer.readInt();
+            int discriptionId = buffer.readCompactInt();
 
             DrawBitmap op = new DrawBitmap(id, sLeft, srcTop, srcRight, srcBottom, discriptionId);
             operations.add(op);
@@ -128,12 +139,12 @@ public class DrawBitmap extends PaintOperation implements VariableSupport {
                           float bottom,
                           int descriptionId) {
             buffer.start(Operations.DRAW_BITMAP);
-            buffer.writeInt(id);
+            buffer.writeCompactInt(id);
             buffer.writeFloat(left);
             buffer.writeFloat(top);
             buffer.writeFloat(right);
             buffer.writeFloat(bottom);
-            buffer.writeInt(descriptionId);
+            buffer.writeCompactInt(descriptionId);
         }
     }
 
@@ -86,7 +86,7 @@ public class DrawBitmapInt extends PaintOperation {
 
         @Override
         public int id() {
-            return Operations.DRAW_BITMAP;
+            return Operations.DRAW_BITMAP_INT;
         }
 
         public void apply(WireBuffer buffer, int imageId,
@@ -94,7 +94,7 @@ public class DrawBitmapInt extends PaintOperation {
                           int dstLeft, int dstTop, int dstRight, int dstBottom,
                           int cdId) {
             buffer.start(Operations.DRAW_BITMAP_INT);
-            buffer.writeInt(imageId);
+            buffer.writeCompactInt(imageId);
             buffer.writeInt(srcLeft);
             buffer.writeInt(srcTop);
             buffer.writeInt(srcRight);
@@ -103,12 +103,12 @@ public class DrawBitmapInt extends PaintOperation {
             buffer.writeInt(dstTop);
             buffer.writeInt(dstRight);
             buffer.writeInt(dstBottom);
-            buffer.writeInt(cdId);
+            buffer.writeCompactInt(cdId);
         }
 
         @Override
         public void read(WireBuffer buffer, List<Operation> operations) {
-            int imageId = buffer.readInt();
+            int imageId = buffer.readCompactInt();
             int sLeft = buffer.readInt();
             int srcTop = buffer.readInt();
             int srcRight = buffer.readInt();
@@ -117,7 +117,7 @@ public class DrawBitmapInt extends PaintOperation {
             int dstTop = buffer.readInt();
             int dstRight = buffer.readInt();
             int dstBottom = buffer.readInt();
-            int cdId = buffer.readInt();
+            int cdId = buffer.readCompactInt();
             DrawBitmapInt op = new DrawBitmapInt(imageId, sLeft, srcTop, srcRight, srcBottom,
                     dstLeft, dstTop, dstRight, dstBottom, cdId);
 
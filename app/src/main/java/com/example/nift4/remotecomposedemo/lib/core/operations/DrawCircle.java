@@ -1,5 +1,6 @@
 package com.example.nift4.remotecomposedemo.lib.core.operations;
 
+import com.example.nift4.remotecomposedemo.lib.core.DisplayList;
 import com.example.nift4.remotecomposedemo.lib.core.Operation;
 import com.example.nift4.remotecomposedemo.lib.core.Operations;
 import com.example.nift4.remotecomposedemo.lib.core.PaintContext;
@@ -24,8 +25,18 @@ public class DrawCircle extends DrawBase3 {
         mName = "DrawCircle";
     }
 
+    @Override
+    protected Companion companion() {
+        return COMPANION;
+    }
+
     @Override
     public void paint(PaintContext context) {
         context.drawCircle(mV1, mV2, mV3);
     }
+
+    @Override
+    public void record(DisplayList list) {
+        list.add(Operations.DRAW_CIRCLE, mValue1, mValue2, mValue3);
+    }
 }
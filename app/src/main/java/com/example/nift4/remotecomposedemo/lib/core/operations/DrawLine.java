@@ -15,6 +15,7 @@
  */
 package com.example.nift4.remotecomposedemo.lib.core.operations;
 
+import com.example.nift4.remotecomposedemo.lib.core.DisplayList;
 import com.example.nift4.remotecomposedemo.lib.core.Operation;
 import com.example.nift4.remotecomposedemo.lib.core.Operations;
 import com.example.nift4.remotecomposedemo.lib.core.PaintContext;
@@ -39,6 +40,11 @@ public class DrawLine extends DrawBase4 {
         mName = "DrawLine";
     }
 
+    @Override
+    protected Companion companion() {
+        return COMPANION;
+    }
+
     @Override
     public void paint(PaintContext context) {
         context.drawLine(mX1,
@@ -47,4 +53,8 @@ public class DrawLine extends DrawBase4 {
                 mY2);
     }
 
+    @Override
+    public void record(DisplayList list) {
+        list.add(Operations.DRAW_LINE, mX1Value, mY1Value, mX2Value, mY2Value);
+    }
 }
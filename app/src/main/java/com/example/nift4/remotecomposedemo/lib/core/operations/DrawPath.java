@@ -50,7 +50,7 @@ public class DrawPath extends PaintOperation {
 
         @Override
         public void read(WireBuffer buffer, List<Operation> operations) {
-            int id = buffer.readInt();
+            int id = buffer.readCompactInt();
             DrawPath op = new DrawPath(id);
             operations.add(op);
         }
@@ -67,7 +67,7 @@ public class DrawPath extends PaintOperation {
 
         public void apply(WireBuffer buffer, int id) {
             buffer.start(Operations.DRAW_PATH);
-            buffer.writeInt(id);
+            buffer.writeCompactInt(id);
         }
     }
 
@@ -15,6 +15,7 @@
  */
 package com.example.nift4.remotecomposedemo.lib.core.operations;
 
+import com.example.nift4.remotecomposedemo.lib.core.DisplayList;
 import com.example.nift4.remotecomposedemo.lib.core.Operation;
 import com.example.nift4.remotecomposedemo.lib.core.Operations;
 import com.example.nift4.remotecomposedemo.lib.core.PaintContext;
@@ -43,9 +44,18 @@ public class DrawRect extends DrawBase4 {
         mName = "DrawRect";
     }
 
+    @Override
+    protected Companion companion() {
+        return COMPANION;
+    }
+
     @Override
     public void paint(PaintContext context) {
         context.drawRect(mX1, mY1, mX2, mY2);
     }
 
+    @Override
+    public void record(DisplayList list) {
+        list.add(Operations.DRAW_RECT, mX1Value, mY1Value, mX2Value, mY2Value);
+    }
 }
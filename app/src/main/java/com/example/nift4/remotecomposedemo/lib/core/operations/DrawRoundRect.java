@@ -15,6 +15,7 @@
  */
 package com.example.nift4.remotecomposedemo.lib.core.operations;
 
+import com.example.nift4.remotecomposedemo.lib.core.DisplayList;
 import com.example.nift4.remotecomposedemo.lib.core.Operation;
 import com.example.nift4.remotecomposedemo.lib.core.Operations;
 import com.example.nift4.remotecomposedemo.lib.core.PaintContext;
@@ -46,10 +47,19 @@ public class DrawRoundRect extends DrawBase6 {
         mName = "ClipRect";
     }
 
+    @Override
+    protected Companion companion() {
+        return COMPANION;
+    }
+
     @Override
     public void paint(PaintContext context) {
         context.drawRoundRect(mV1, mV2, mV3, mV4, mV5, mV6
         );
     }
 
+    @Override
+    public void record(DisplayList list) {
+        list.add(Operations.DRAW_ROUND_RECT, mValue1, mValue2, mValue3, mValue4, mValue5, mValue6);
+    }
 }
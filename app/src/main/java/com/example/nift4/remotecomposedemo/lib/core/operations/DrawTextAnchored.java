@@ -16,6 +16,7 @@
 package com.example.nift4.remotecomposedemo.lib.core.operations;
 
 import com.example.nift4.remotecomposedemo.lib.core.CompanionOperation;
+import com.example.nift4.remotecomposedemo.lib.core.DocumentVerifier;
 import com.example.nift4.remotecomposedemo.lib.core.Operation;
 import com.example.nift4.remotecomposedemo.lib.core.Operations;
 import com.example.nift4.remotecomposedemo.lib.core.PaintContext;
@@ -117,9 +118,19 @@ public class DrawTextAnchored extends PaintOperation implements VariableSupport
         private Companion() {
         }
 
+        @Override
+        public boolean verify(WireBuffer buffer, DocumentVerifier verifier) {
+            buffer.readCompactInt();
+            for (int i = 0; i < 4; i++) {
+                verifier.checkFloat(buffer.readFloat());
+            }
+            buffer.readInt();
+            return true;
+        }
+
         @Override
         public void read(WireBuffer buffer, List<Operation> operations) {
-            int textID = buffer.readInt();
+            int textID = buffer.readCompactInt();
             float x = buffer.readFloat();
             float y = buffer.readFloat();
             float panX = buffer.readFloat();
@@ -136,12 +147,12 @@ public class DrawTextAnchored extends PaintOperation implements VariableSupport
 
         @Override
         public String name() {
-            return "";
+            return "DrawTextAnchored";
         }
 
         @Override
         public int id() {
-            return 0;
+            return Operations.DRAW_TEXT_ANCHOR;
         }
 
         /**
@@ -162,7 +173,7 @@ public class DrawTextAnchored extends PaintOperation implements VariableSupport
                           float panY,
                           int flags) {
             buffer.start(Operations.DRAW_TEXT_ANCHOR);
-            buffer.writeInt(textID);
+            buffer.writeCompactInt(textID);
             buffer.writeFloat(x);
             buffer.writeFloat(y);
             buffer.writeFloat(panX);
@@ -37,8 +37,8 @@ public class DrawTextOnPath extends PaintOperation {
     public DrawTextOnPath(int textId, int pathId, float hOffset, float vOffset) {
         mPathId = pathId;
         mTextId = textId;
-        mHOffset = vOffset;
-        mVOffset = hOffset;
+        mHOffset = hOffset;
+        mVOffset = vOffset;
     }
 
     @Override
@@ -58,8 +58,8 @@ public class DrawTextOnPath extends PaintOperation {
 
         @Override
         public void read(WireBuffer buffer, List<Operation> operations) {
-            int textId = buffer.readInt();
-            int pathId = buffer.readInt();
+            int textId = buffer.readCompactInt();
+            int pathId = buffer.readCompactInt();
             float hOffset = buffer.readFloat();
             float vOffset = buffer.readFloat();
             DrawTextOnPath op = new DrawTextOnPath(textId, pathId, hOffset, vOffset);
@@ -78,8 +78,8 @@ public class DrawTextOnPath extends PaintOperation {
 
         public void apply(WireBuffer buffer, int textId, int pathId, float hOffset, float vOffset) {
             buffer.start(Operations.DRAW_TEXT_ON_PATH);
-            buffer.writeInt(textId);
-            buffer.writeInt(pathId);
+            buffer.writeCompactInt(textId);
+            buffer.writeCompactInt(pathId);
             buffer.writeFloat(hOffset);
             buffer.writeFloat(vOffset);
         }
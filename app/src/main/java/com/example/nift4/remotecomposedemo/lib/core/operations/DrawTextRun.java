@@ -70,11 +70,11 @@ public class DrawTextRun extends PaintOperation {
 
         @Override
         public void read(WireBuffer buffer, List<Operation> operations) {
-            int text = buffer.readInt();
-            int start = buffer.readInt();
-            int end = buffer.readInt();
-            int contextStart = buffer.readInt();
-            int contextEnd = buffer.readInt();
+            int text = buffer.readCompactInt();
+            int start = buffer.readCompactInt();
+            int end = buffer.readCompactInt();
+            int contextStart = buffer.readCompactInt();
+            int contextEnd = buffer.readCompactInt();
             float x = buffer.readFloat();
             float y = buffer.readFloat();
             boolean rtl = buffer.readBoolean();
@@ -85,12 +85,12 @@ public class DrawTextRun extends PaintOperation {
 
         @Override
         public String name() {
-            return "";
+            return "DrawTextRun";
         }
 
         @Override
         public int id() {
-            return 0;
+            return Operations.DRAW_TEXT_RUN;
         }
 
         public void apply(WireBuffer buffer,
@@ -103,11 +103,11 @@ public class DrawTextRun extends PaintOperation {
                           float y,
                           boolean rtl) {
             buffer.start(Operations.DRAW_TEXT_RUN);
-            buffer.writeInt(textID);
-            buffer.writeInt(start);
-            buffer.writeInt(end);
-            buffer.writeInt(contextStart);
-            buffer.writeInt(contextEnd);
+            buffer.writeCompactInt(textID);
+            buffer.writeCompactInt(start);
+            buffer.writeCompactInt(end);
+            buffer.writeCompactInt(contextStart);
+            buffer.writeCompactInt(contextEnd);
             buffer.writeFloat(x);
             buffer.writeFloat(y);
             buffer.writeBoolean(rtl);
@@ -67,8 +67,8 @@ public class DrawTweenPath extends PaintOperation {
 
         @Override
         public void read(WireBuffer buffer, List<Operation> operations) {
-            int path1Id = buffer.readInt();
-            int path2Id = buffer.readInt();
+            int path1Id = buffer.readCompactInt();
+            int path2Id = buffer.readCompactInt();
             float tween = buffer.readFloat();
             float start = buffer.readFloat();
             float stop = buffer.readFloat();
@@ -94,8 +94,8 @@ public class DrawTweenPath extends PaintOperation {
                           float start,
                           float stop) {
             buffer.start(Operations.DRAW_TWEEN_PATH);
-            buffer.writeInt(path1Id);
-            buffer.writeInt(path2Id);
+            buffer.writeCompactInt(path1Id);
+            buffer.writeCompactInt(path2Id);
             buffer.writeFloat(tween);
             buffer.writeFloat(start);
             buffer.writeFloat(stop);
@@ -16,6 +16,7 @@
 package com.example.nift4.remotecomposedemo.lib.core.operations;
 
 import com.example.nift4.remotecomposedemo.lib.core.CompanionOperation;
+import com.example.nift4.remotecomposedemo.lib.core.DocumentVerifier;
 import com.example.nift4.remotecomposedemo.lib.core.Operation;
 import com.example.nift4.remotecomposedemo.lib.core.Operations;
 import com.example.nift4.remotecomposedemo.lib.core.RemoteContext;
@@ -68,13 +69,20 @@ public class FloatConstant implements Operation {
          */
         public void apply(WireBuffer buffer, int textId, float value) {
             buffer.start(Operations.DATA_FLOAT);
-            buffer.writeInt(textId);
+            buffer.writeCompactInt(textId);
             buffer.writeFloat(value);
         }
 
+        @Override
+        public boolean verify(WireBuffer buffer, DocumentVerifier verifier) {
+            verifier.checkId(buffer.readCompactInt());
+            buffer.readFloat();
+            return true;
+        }
+
         @Override
         public void read(WireBuffer buffer, List<Operation> operations) {
-            int textId = buffer.readInt();
+            int textId = buffer.readCompactInt();
 
             float value = buffer.readFloat();
             operations.add(new FloatConstant(textId, value));
@@ -16,12 +16,16 @@
 package com.example.nift4.remotecomposedemo.lib.core.operations;
 
 import com.example.nift4.remotecomposedemo.lib.core.CompanionOperation;
+import com.example.nift4.remotecomposedemo.lib.core.DocumentVerifier;
+import com.example.nift4.remotecomposedemo.lib.core.ExpressionOperation;
 import com.example.nift4.remotecomposedemo.lib.core.Operation;
 import com.example.nift4.remotecomposedemo.lib.core.Operations;
 import com.example.nift4.remotecomposedemo.lib.core.RemoteContext;
 import com.example.nift4.remotecomposedemo.lib.core.VariableSupport;
 import com.example.nift4.remotecomposedemo.lib.core.WireBuffer;
 import com.example.nift4.remotecomposedemo.lib.core.operations.utilities.AnimatedFloatExpression;
+import com.example.nift4.remotecomposedemo.lib.core.operations.utilities.CompiledFloatExpression;
+import com.example.nift4.remotecomposedemo.lib.core.operations.utilities.easing.AnimationSpecCache;
 import com.example.nift4.remotecomposedemo.lib.core.operations.utilities.easing.FloatAnimation;
 
 import java.util.Arrays;
@@ -34,14 +38,13 @@ import java.util.List;
  * As well as supporting generalized animation floats.
  * The floats represent a RPN style calculator
  */
-public class FloatExpression implements Operation, VariableSupport {
+public class FloatExpression implements ExpressionOperation, VariableSupport {
     public int mId;
     public float[] mSrcValue;
-    public float[] mSrcAnimation;
-    public FloatAnimation mFloatAnimation;
-    public float[] mPreCalcValue;
+    private float[] mSrcAnimation; // may be shared with other expressions, never modified
+    private FloatAnimation mFloatAnimation; // created on first use, see shareAnimation()
     private float mLastChange = Float.NaN;
-    AnimatedFloatExpression mExp = new AnimatedFloatExpression();
+    CompiledFloatExpression mProgram;
     public static final Companion COMPANION = new Companion();
     public static final int MAX_STRING_SIZE = 4000;
 
@@ -49,43 +52,78 @@ public class FloatExpression implements Operation, VariableSupport {
         this.mId = id;
         this.mSrcValue = value;
         this.mSrcAnimation = animation;
-        if (mSrcAnimation != null) {
+        mProgram = CompiledFloatExpression.compile(value);
+    }
+
+    /**
+     * Use the spec of the identical animations already read with the same cache,
+     * to be called by readers before the expression is used
+     */
+    public void shareAnimation(AnimationSpecCache specs) {
+        if (mSrcAnimation != null && mFloatAnimation == null) {
+            FloatAnimation.Spec spec = specs.get(mSrcAnimation);
+            mSrcAnimation = spec.getDescription();
+            mFloatAnimation = new FloatAnimation(spec);
+        }
+    }
+
+    /**
+     * Share the animation specs of the expressions of operations, from the given index
+     * (see shareAnimation())
+     */
+    public static void shareAnimations(List<Operation> operations, int from,
+                                       AnimationSpecCache specs) {
+        for (int i = from; i < operations.size(); i++) {
+            Operation op = operations.get(i);
+            if (op instanceof FloatExpression) {
+                ((FloatExpression) op).shareAnimation(specs);
+            }
+        }
+    }
+
+    private FloatAnimation animation() {
+        if (mFloatAnimation == null && mSrcAnimation != null) {
             mFloatAnimation = new FloatAnimation(mSrcAnimation);
         }
+        return mFloatAnimation;
+    }
+
+    /**
+     * The animation towards the value computed, null if the expression is not animated
+     */
+    public FloatAnimation getAnimation() {
+        return animation();
+    }
+
+    public boolean hasAnimation() {
+        return mSrcAnimation != null;
     }
 
     @Override
     public void updateVariables(RemoteContext context) {
-        if (mPreCalcValue == null || mPreCalcValue.length != mSrcValue.length) {
-            mPreCalcValue = new float[mSrcValue.length];
-        }
         //Utils.log("updateVariables ");
         boolean value_changed = false;
-        for (int i = 0; i < mSrcValue.length; i++) {
-            float v = mSrcValue[i];
-            if (Float.isNaN(v) && !AnimatedFloatExpression.isMathOperator(v)) {
-                float newValue = context.getFloat(Utils.idFromNan(v));
-                if (mFloatAnimation != null) {
-                    if (mPreCalcValue[i] != newValue) {
-                        mLastChange = context.getAnimationTime();
-                        value_changed = true;
-                        mPreCalcValue[i] = newValue;
-                    }
-                } else {
-                    mPreCalcValue[i] = newValue;
+        for (int i = 0; i < mProgram.getVariableCount(); i++) {
+            float newValue = context.getFloat(mProgram.getVariableId(i));
+            if (mSrcAnimation != null) {
+                if (mProgram.getVariable(i) != newValue) {
+                    mLastChange = context.getAnimationTime();
+                    value_changed = true;
+                    mProgram.setVariable(i, newValue);
                 }
             } else {
-                mPreCalcValue[i] = mSrcValue[i];
+                mProgram.setVariable(i, newValue);
             }
         }
-        if (value_changed && mFloatAnimation != null) {
-            float v = mExp.eval(Arrays.copyOf(mPreCalcValue, mPreCalcValue.length));
-            if (Float.isNaN(mFloatAnimation.getTargetValue())) {
-                mFloatAnimation.setInitialValue(v);
+        if (value_changed && mSrcAnimation != null) {
+            FloatAnimation animation = animation();
+            float v = mProgram.eval();
+            if (Float.isNaN(animation.getTargetValue())) {
+                animation.setInitialValue(v);
             } else {
-                mFloatAnimation.setInitialValue(mFloatAnimation.getTargetValue());
+                animation.setInitialValue(animation.getTargetValue());
             }
-            mFloatAnimation.setTargetValue(v);
+            animation.setTargetValue(v);
         }
     }
 
@@ -106,12 +144,43 @@ public class FloatExpression implements Operation, VariableSupport {
         if (Float.isNaN(mLastChange)) {
             mLastChange = t;
         }
-        if (mFloatAnimation != null) {
-            float f = mFloatAnimation.get(t - mLastChange);
+        if (mSrcAnimation != null) {
+            float f = animation().get(t - mLastChange);
             context.loadFloat(mId, f);
         } else {
-            context.loadFloat(mId, mExp.eval(Arrays.copyOf(mPreCalcValue, mPreCalcValue.length)));
+            context.loadFloat(mId, mProgram.eval());
+        }
+    }
+
+    /**
+     * True while the animation towards the last value computed runs
+     *
+     * @param time the animation time (see RemoteContext.getAnimationTime())
+     */
+    public boolean isAnimating(float time) {
+        return mSrcAnimation != null && !Float.isNaN(mLastChange)
+                && time - mLastChange < animation().getDuration();
+    }
+
+    /**
+     * The expression compiled, its variables are updated by updateVariables()
+     */
+    public CompiledFloatExpression getProgram() {
+        return mProgram;
+    }
+
+    @Override
+    public int getOutputId() {
+        return mId;
+    }
+
+    @Override
+    public int[] getInputIds() {
+        int[] ids = new int[mProgram.getVariableCount()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = mProgram.getVariableId(i);
         }
+        return ids;
     }
 
     @Override
@@ -122,14 +191,28 @@ public class FloatExpression implements Operation, VariableSupport {
     @Override
     public String toString() {
         String[] labels = new String[mSrcValue.length];
+        float[] values = Arrays.copyOf(mSrcValue, mSrcValue.length);
         for (int i = 0; i < mSrcValue.length; i++) {
-            if (Float.isNaN(mSrcValue[i])) {
-                labels[i] = "[" + Utils.idFromNan(mSrcValue[i]) + "]";
+            float v = mSrcValue[i];
+            if (Float.isNaN(v)) {
+                labels[i] = "[" + Utils.idFromNan(v) + "]";
+                if (!AnimatedFloatExpression.isMathOperator(v)) {
+                    values[i] = variableValue(Utils.idFromNan(v));
+                }
             }
 
         }
         return "FloatExpression[" + mId + "] = ("
-                + AnimatedFloatExpression.toString(mPreCalcValue, labels) + ")";
+                + AnimatedFloatExpression.toString(values, labels) + ")";
+    }
+
+    private float variableValue(int id) {
+        for (int i = 0; i < mProgram.getVariableCount(); i++) {
+            if (mProgram.getVariableId(i) == id) {
+                return mProgram.getVariable(i);
+            }
+        }
+        return Float.NaN;
     }
 
     public static class Companion implements CompanionOperation {
@@ -155,44 +238,49 @@ public class FloatExpression implements Operation, VariableSupport {
          */
         public void apply(WireBuffer buffer, int id, float[] value, float[] animation) {
             buffer.start(Operations.ANIMATED_FLOAT);
-            buffer.writeInt(id);
+            buffer.writeCompactInt(id);
 
             int len = value.length;
             if (animation != null) {
                 len |= (animation.length << 16);
             }
-            buffer.writeInt(len);
+            buffer.writeCompactInt(len);
 
-            for (int i = 0; i < value.length; i++) {
-                buffer.writeFloat(value[i]);
-            }
+            buffer.writeFloats(value, 0, value.length);
             if (animation != null) {
-                for (int i = 0; i < animation.length; i++) {
-                    buffer.writeFloat(animation[i]);
-                }
+                buffer.writeFloats(animation, 0, animation.length);
             }
 
         }
 
+        @Override
+        public boolean verify(WireBuffer buffer, DocumentVerifier verifier) {
+            verifier.checkId(buffer.readCompactInt());
+            int len = buffer.readCompactInt();
+            int valueLen = len & 0xFFFF;
+            int animLen = (len >> 16) & 0xFFFF;
+            verifier.checkLength(valueLen, 0xFFFF, 4, buffer);
+            verifier.checkExpression(buffer, valueLen);
+            verifier.allocate(valueLen * 8L); // expression and resolved values
+            verifier.checkLength(animLen, 0xFFFF, 4, buffer);
+            verifier.checkAnimation(buffer, animLen);
+            verifier.allocate(animLen * 4L);
+            return true;
+        }
+
         @Override
         public void read(WireBuffer buffer, List<Operation> operations) {
-            int id = buffer.readInt();
-            int len = buffer.readInt();
+            int id = buffer.readCompactInt();
+            int len = buffer.readCompactInt();
             int valueLen = len & 0xFFFF;
             int animLen = (len >> 16) & 0xFFFF;
             float[] values = new float[valueLen];
-            for (int i = 0; i < values.length; i++) {
-                values[i] = buffer.readFloat();
-            }
+            buffer.readFloats(values, 0, valueLen);
 
-            float[] animation;
+            float[] animation = null;
             if (animLen != 0) {
                 animation = new float[animLen];
-                for (int i = 0; i < animation.length; i++) {
-                    animation[i] = buffer.readFloat();
-                }
-            } else {
-                animation = null;
+                buffer.readFloats(animation, 0, animLen);
             }
             operations.add(new FloatExpression(id, values, animation));
         }
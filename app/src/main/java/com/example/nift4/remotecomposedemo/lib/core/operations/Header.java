@@ -35,6 +35,12 @@ public class Header implements RemoteComposeOperation {
     public static final int MINOR_VERSION = 1;
     public static final int PATCH_VERSION = 0;
 
+    /**
+     * Capability bit: everything after the header uses the compact wire encoding
+     * (varint ids and lengths, tagged coordinates), see {@link WireBuffer#setCompact}.
+     */
+    public static final long CAPABILITY_COMPACT_ENCODING = 1L;
+
     int mMajorVersion;
     int mMinorVersion;
     int mPatchVersion;
@@ -54,7 +60,7 @@ public class Header implements RemoteComposeOperation {
      * @param patchVersion the patch version of the RemoteCompose document API
      * @param width        the width of the RemoteCompose document
      * @param height       the height of the RemoteCompose document
-     * @param capabilities bitmask field storing needed capabilities (unused for now)
+     * @param capabilities bitmask field storing needed capabilities
      */
     public Header(int majorVersion, int minorVersion, int patchVersion,
                   int width, int height, long capabilities) {
@@ -66,6 +72,30 @@ public class Header implements RemoteComposeOperation {
         this.mCapabilities = capabilities;
     }
 
+    public int getMajorVersion() {
+        return mMajorVersion;
+    }
+
+    public int getMinorVersion() {
+        return mMinorVersion;
+    }
+
+    public int getPatchVersion() {
+        return mPatchVersion;
+    }
+
+    public int getWidth() {
+        return mWidth;
+    }
+
+    public int getHeight() {
+        return mHeight;
+    }
+
+    public long getCapabilities() {
+        return mCapabilities;
+    }
+
     @Override
     public void write(WireBuffer buffer) {
         COMPANION.apply(buffer, mWidth, mHeight, mCapabilities);
@@ -110,6 +140,8 @@ public class Header implements RemoteComposeOperation {
             buffer.writeInt(width);
             buffer.writeInt(height);
             buffer.writeLong(capabilities);
+            buffer.setCompact((capabilities & CAPABILITY_COMPACT_ENCODING) != 0);
+            buffer.setDocumentVersion(Operations.version(MAJOR_VERSION, MINOR_VERSION));
         }
 
         @Override
@@ -120,6 +152,8 @@ public class Header implements RemoteComposeOperation {
             int width = buffer.readInt();
             int height = buffer.readInt();
             long capabilities = buffer.readLong();
+            buffer.setCompact((capabilities & CAPABILITY_COMPACT_ENCODING) != 0);
+            buffer.setDocumentVersion(Operations.version(majorVersion, minorVersion));
             Header header = new Header(majorVersion, minorVersion, patchVersion,
                     width, height, capabilities);
             operations.add(header);
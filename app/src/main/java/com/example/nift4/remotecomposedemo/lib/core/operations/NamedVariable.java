@@ -73,14 +73,14 @@ public class NamedVariable implements Operation {
          */
         public void apply(WireBuffer buffer, int varId, int varType, String text) {
             buffer.start(Operations.DATA_TEXT);
-            buffer.writeInt(varId);
+            buffer.writeCompactInt(varId);
             buffer.writeInt(varType);
             buffer.writeUTF8(text);
         }
 
         @Override
         public void read(WireBuffer buffer, List<Operation> operations) {
-            int varId = buffer.readInt();
+            int varId = buffer.readCompactInt();
             int varType = buffer.readInt();
             String text = buffer.readUTF8(MAX_STRING_SIZE);
             operations.add(new NamedVariable(varId, varType, text));
@@ -16,6 +16,7 @@
 package com.example.nift4.remotecomposedemo.lib.core.operations;
 
 import com.example.nift4.remotecomposedemo.lib.core.CompanionOperation;
+import com.example.nift4.remotecomposedemo.lib.core.DocumentVerifier;
 import com.example.nift4.remotecomposedemo.lib.core.Operation;
 import com.example.nift4.remotecomposedemo.lib.core.Operations;
 import com.example.nift4.remotecomposedemo.lib.core.RemoteContext;
@@ -130,21 +131,32 @@ public class PathData implements Operation, VariableSupport {
 
         public void apply(WireBuffer buffer, int id, float[] data) {
             buffer.start(Operations.DATA_PATH);
-            buffer.writeInt(id);
-            buffer.writeInt(data.length);
-            for (int i = 0; i < data.length; i++) {
-                buffer.writeFloat(data[i]);
+            buffer.writeCompactInt(id);
+            buffer.writeCompactInt(data.length);
+            buffer.writeCompactFloats(data, 0, data.length);
+        }
+
+        @Override
+        public boolean verify(WireBuffer buffer, DocumentVerifier verifier) {
+            buffer.readCompactInt();
+            int len = buffer.readCompactInt();
+            verifier.checkLength(len, Integer.MAX_VALUE, buffer.isCompact() ? 1 : 4, buffer);
+            for (int i = 0; i < len; i++) {
+                float v = buffer.readCompactFloat();
+                if (Utils.isVariable(v)) {
+                    verifier.checkFloat(v);
+                }
             }
+            verifier.allocate(len * 8L); // path and resolved path
+            return true;
         }
 
         @Override
         public void read(WireBuffer buffer, List<Operation> operations) {
-            int imageId = buffer.readInt();
-            int len = buffer.readInt();
+            int imageId = buffer.readCompactInt();
+            int len = buffer.readCompactInt();
             float[] data = new float[len];
-            for (int i = 0; i < data.length; i++) {
-                data[i] = buffer.readFloat();
-            }
+            buffer.readCompactFloats(data, 0, len);
             operations.add(new PathData(imageId, data));
         }
     }
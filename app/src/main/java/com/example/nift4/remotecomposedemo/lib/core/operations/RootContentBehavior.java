@@ -179,6 +179,22 @@ public class RootContentBehavior implements RemoteComposeOperation {
         }
     }
 
+    public int getScroll() {
+        return mScroll;
+    }
+
+    public int getAlignment() {
+        return mAlignment;
+    }
+
+    public int getSizing() {
+        return mSizing;
+    }
+
+    public int getMode() {
+        return mMode;
+    }
+
     @Override
     public void write(WireBuffer buffer) {
         COMPANION.apply(buffer, mScroll, mAlignment, mSizing, mMode);
@@ -76,12 +76,12 @@ public class RootContentDescription implements RemoteComposeOperation {
 
         public void apply(WireBuffer buffer, int contentDescription) {
             buffer.start(Operations.ROOT_CONTENT_DESCRIPTION);
-            buffer.writeInt(contentDescription);
+            buffer.writeCompactInt(contentDescription);
         }
 
         @Override
         public void read(WireBuffer buffer, List<Operation> operations) {
-            int contentDescription = buffer.readInt();
+            int contentDescription = buffer.readCompactInt();
             RootContentDescription header = new RootContentDescription(contentDescription);
             operations.add(header);
         }
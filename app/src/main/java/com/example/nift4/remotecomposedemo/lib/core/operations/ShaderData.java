@@ -16,6 +16,7 @@
 package com.example.nift4.remotecomposedemo.lib.core.operations;
 
 import com.example.nift4.remotecomposedemo.lib.core.CompanionOperation;
+import com.example.nift4.remotecomposedemo.lib.core.DocumentVerifier;
 import com.example.nift4.remotecomposedemo.lib.core.Operation;
 import com.example.nift4.remotecomposedemo.lib.core.Operations;
 import com.example.nift4.remotecomposedemo.lib.core.RemoteContext;
@@ -40,6 +41,7 @@ public class ShaderData implements Operation, VariableSupport {
     HashMap<String, Integer> mUniformBitmapMap = null;
 
     public static final int MAX_IMAGE_DIMENSION = 8000;
+    public static final int MAX_STRING_SIZE = 4000;
 
     public static final Companion COMPANION = new Companion();
 
@@ -201,9 +203,9 @@ public class ShaderData implements Operation, VariableSupport {
                           HashMap<String, int[]> intMap,
                           HashMap<String, Integer> bitmapMap) {
             buffer.start(Operations.DATA_SHADER);
-            buffer.writeInt(shaderID);
+            buffer.writeCompactInt(shaderID);
 
-            buffer.writeInt(shaderTextId);
+            buffer.writeCompactInt(shaderTextId);
             int floatSize = (floatMap == null) ? 0 : floatMap.size();
             int intSize = (intMap == null) ? 0 : intMap.size();
             int bitmapSize = (bitmapMap == null) ? 0 : bitmapMap.size();
@@ -215,11 +217,8 @@ public class ShaderData implements Operation, VariableSupport {
                 for (String name : floatMap.keySet()) {
                     buffer.writeUTF8(name);
                     float[] values = floatMap.get(name);
-                    buffer.writeInt(values.length);
-
-                    for (int i = 0; i < values.length; i++) {
-                        buffer.writeFloat(values[i]);
-                    }
+                    buffer.writeCompactInt(values.length);
+                    buffer.writeFloats(values, 0, values.length);
                 }
             }
 
@@ -227,25 +226,61 @@ public class ShaderData implements Operation, VariableSupport {
                 for (String name : intMap.keySet()) {
                     buffer.writeUTF8(name);
                     int[] values = intMap.get(name);
-                    buffer.writeInt(values.length);
-                    for (int i = 0; i < values.length; i++) {
-                        buffer.writeInt(values[i]);
-                    }
+                    buffer.writeCompactInt(values.length);
+                    buffer.writeInts(values, 0, values.length);
                 }
             }
             if (bitmapSize > 0) {
                 for (String name : bitmapMap.keySet()) {
                     buffer.writeUTF8(name);
                     int value = bitmapMap.get(name);
-                    buffer.writeInt(value);
+                    buffer.writeCompactInt(value);
                 }
             }
         }
 
+        @Override
+        public boolean verify(WireBuffer buffer, DocumentVerifier verifier) {
+            buffer.readCompactInt();
+            buffer.readCompactInt();
+            int sizes = buffer.readInt();
+            int floatMapSize = sizes & 0xFF;
+            for (int i = 0; i < floatMapSize; i++) {
+                verifyName(buffer, verifier);
+                int len = buffer.readCompactInt();
+                verifier.checkLength(len, Integer.MAX_VALUE, 4, buffer);
+                for (int j = 0; j < len; j++) {
+                    verifier.checkFloat(buffer.readFloat());
+                }
+                verifier.allocate(len * 8L); // values and resolved values
+            }
+            int intMapSize = (sizes >> 8) & 0xFF;
+            for (int i = 0; i < intMapSize; i++) {
+                verifyName(buffer, verifier);
+                int len = buffer.readCompactInt();
+                verifier.checkLength(len, Integer.MAX_VALUE, 4, buffer);
+                buffer.skip(len * 4);
+                verifier.allocate(len * 4L);
+            }
+            int bitmapMapSize = (sizes >> 16) & 0xFF;
+            for (int i = 0; i < bitmapMapSize; i++) {
+                verifyName(buffer, verifier);
+                buffer.readCompactInt();
+            }
+            return true;
+        }
+
+        private void verifyName(WireBuffer buffer, DocumentVerifier verifier) {
+            int length = buffer.readCompactInt();
+            verifier.checkLength(length, MAX_STRING_SIZE, 1, buffer);
+            buffer.skip(length);
+            verifier.allocate(length * 2);
+        }
+
         @Override
         public void read(WireBuffer buffer, List<Operation> operations) {
-            int shaderID = buffer.readInt();
-            int shaderTextId = buffer.readInt();
+            int shaderID = buffer.readCompactInt();
+            int shaderTextId = buffer.readCompactInt();
             HashMap<String, float[]> floatMap = null;
             HashMap<String, int[]> intMap = null;
             HashMap<String, Integer> bitmapMap = null;
@@ -257,12 +292,9 @@ public class ShaderData implements Operation, VariableSupport {
                 floatMap = new HashMap<>();
                 for (int i = 0; i < floatMapSize; i++) {
                     String name = buffer.readUTF8();
-                    int len = buffer.readInt();
+                    int len = buffer.readCompactInt();
                     float[] val = new float[len];
-
-                    for (int j = 0; j < len; j++) {
-                        val[j] = buffer.readFloat();
-                    }
+                    buffer.readFloats(val, 0, len);
 
                     floatMap.put(name, val);
                 }
@@ -274,11 +306,9 @@ public class ShaderData implements Operation, VariableSupport {
                 intMap = new HashMap<>();
                 for (int i = 0; i < intMapSize; i++) {
                     String name = buffer.readUTF8();
-                    int len = buffer.readInt();
+                    int len = buffer.readCompactInt();
                     int[] val = new int[len];
-                    for (int j = 0; j < len; j++) {
-                        val[j] = buffer.readInt();
-                    }
+                    buffer.readInts(val, 0, len);
                     intMap.put(name, val);
                 }
             }
@@ -288,7 +318,7 @@ public class ShaderData implements Operation, VariableSupport {
                 bitmapMap = new HashMap<>();
                 for (int i = 0; i < bitmapMapSize; i++) {
                     String name = buffer.readUTF8();
-                    int val = buffer.readInt();
+                    int val = buffer.readCompactInt();
                     bitmapMap.put(name, val);
                 }
             }
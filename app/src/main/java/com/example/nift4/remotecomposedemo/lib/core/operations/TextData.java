@@ -16,6 +16,7 @@
 package com.example.nift4.remotecomposedemo.lib.core.operations;
 
 import com.example.nift4.remotecomposedemo.lib.core.CompanionOperation;
+import com.example.nift4.remotecomposedemo.lib.core.DocumentVerifier;
 import com.example.nift4.remotecomposedemo.lib.core.Operation;
 import com.example.nift4.remotecomposedemo.lib.core.Operations;
 import com.example.nift4.remotecomposedemo.lib.core.RemoteContext;
@@ -64,13 +65,23 @@ public class TextData implements Operation {
 
         public void apply(WireBuffer buffer, int textId, String text) {
             buffer.start(Operations.DATA_TEXT);
-            buffer.writeInt(textId);
+            buffer.writeCompactInt(textId);
             buffer.writeUTF8(text);
         }
 
+        @Override
+        public boolean verify(WireBuffer buffer, DocumentVerifier verifier) {
+            buffer.readCompactInt();
+            int length = buffer.readCompactInt();
+            verifier.checkLength(length, MAX_STRING_SIZE, 1, buffer);
+            buffer.skip(length);
+            verifier.allocate(length * 2);
+            return true;
+        }
+
         @Override
         public void read(WireBuffer buffer, List<Operation> operations) {
-            int textId = buffer.readInt();
+            int textId = buffer.readCompactInt();
 
             String text = buffer.readUTF8(MAX_STRING_SIZE);
             operations.add(new TextData(textId, text));
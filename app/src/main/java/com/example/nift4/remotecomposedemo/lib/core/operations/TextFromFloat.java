@@ -16,6 +16,8 @@
 package com.example.nift4.remotecomposedemo.lib.core.operations;
 
 import com.example.nift4.remotecomposedemo.lib.core.CompanionOperation;
+import com.example.nift4.remotecomposedemo.lib.core.DocumentVerifier;
+import com.example.nift4.remotecomposedemo.lib.core.ExpressionOperation;
 import com.example.nift4.remotecomposedemo.lib.core.Operation;
 import com.example.nift4.remotecomposedemo.lib.core.Operations;
 import com.example.nift4.remotecomposedemo.lib.core.RemoteContext;
@@ -30,7 +32,7 @@ import java.util.List;
  * This command is structured [command][textID][before,after][flags]
  * before and after define number of digits before and after the decimal point
  */
-public class TextFromFloat implements Operation, VariableSupport {
+public class TextFromFloat implements ExpressionOperation, VariableSupport {
     public int mTextId;
     public float mValue;
     public float mOutValue;
@@ -81,9 +83,22 @@ public class TextFromFloat implements Operation, VariableSupport {
         }
     }
 
+    @Override
+    public int getOutputId() {
+        return mTextId;
+    }
+
+    @Override
+    public int[] getInputIds() {
+        if (Float.isNaN(mValue)) {
+            return new int[]{Utils.idFromNan(mValue)};
+        }
+        return new int[0];
+    }
+
     @Override
     public void write(WireBuffer buffer) {
-        COMPANION.apply(buffer, mTextId, mValue, mDigitsAfter, mDigitsBefore, mFlags);
+        COMPANION.apply(buffer, mTextId, mValue, mDigitsBefore, mDigitsAfter, mFlags);
     }
 
     @Override
@@ -137,16 +152,25 @@ public class TextFromFloat implements Operation, VariableSupport {
                           float value, short digitsBefore,
                           short digitsAfter, int flags) {
             buffer.start(Operations.TEXT_FROM_FLOAT);
-            buffer.writeInt(textId);
+            buffer.writeCompactInt(textId);
             buffer.writeFloat(value);
             buffer.writeInt((digitsBefore << 16) | digitsAfter);
             buffer.writeInt(flags);
 
         }
 
+        @Override
+        public boolean verify(WireBuffer buffer, DocumentVerifier verifier) {
+            buffer.readCompactInt();
+            verifier.checkFloat(buffer.readFloat());
+            buffer.readInt();
+            buffer.readInt();
+            return true;
+        }
+
         @Override
         public void read(WireBuffer buffer, List<Operation> operations) {
-            int textId = buffer.readInt();
+            int textId = buffer.readCompactInt();
             float value = buffer.readFloat();
             int tmp = buffer.readInt();
             short post = (short) (tmp & 0xFFFF);
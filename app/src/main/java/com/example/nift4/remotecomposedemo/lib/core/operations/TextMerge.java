@@ -16,6 +16,7 @@
 package com.example.nift4.remotecomposedemo.lib.core.operations;
 
 import com.example.nift4.remotecomposedemo.lib.core.CompanionOperation;
+import com.example.nift4.remotecomposedemo.lib.core.ExpressionOperation;
 import com.example.nift4.remotecomposedemo.lib.core.Operation;
 import com.example.nift4.remotecomposedemo.lib.core.Operations;
 import com.example.nift4.remotecomposedemo.lib.core.RemoteContext;
@@ -26,7 +27,7 @@ import java.util.List;
 /**
  * Operation to deal with Text data
  */
-public class TextMerge implements Operation {
+public class TextMerge implements ExpressionOperation {
     public int mTextId;
     public int mSrcId1;
     public int mSrcId2;
@@ -39,6 +40,16 @@ public class TextMerge implements Operation {
         this.mSrcId2 = srcId2;
     }
 
+    @Override
+    public int getOutputId() {
+        return mTextId;
+    }
+
+    @Override
+    public int[] getInputIds() {
+        return new int[]{mSrcId1, mSrcId2};
+    }
+
     @Override
     public void write(WireBuffer buffer) {
         COMPANION.apply(buffer, mTextId, mSrcId1, mSrcId2);
@@ -72,16 +83,16 @@ public class TextMerge implements Operation {
          */
         public void apply(WireBuffer buffer, int textId, int srcId1, int srcId2) {
             buffer.start(Operations.TEXT_MERGE);
-            buffer.writeInt(textId);
-            buffer.writeInt(srcId1);
-            buffer.writeInt(srcId2);
+            buffer.writeCompactInt(textId);
+            buffer.writeCompactInt(srcId1);
+            buffer.writeCompactInt(srcId2);
         }
 
         @Override
         public void read(WireBuffer buffer, List<Operation> operations) {
-            int textId = buffer.readInt();
-            int srcId1 = buffer.readInt();
-            int srcId2 = buffer.readInt();
+            int textId = buffer.readCompactInt();
+            int srcId1 = buffer.readCompactInt();
+            int srcId2 = buffer.readCompactInt();
 
             operations.add(new TextMerge(textId, srcId1, srcId2));
         }
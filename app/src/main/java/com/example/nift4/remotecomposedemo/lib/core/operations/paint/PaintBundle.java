@@ -435,21 +435,17 @@ public class PaintBundle {
     }
 
     public void writeBundle(WireBuffer buffer) {
-        buffer.writeInt(mPos);
-        for (int index = 0; index < mPos; index++) {
-            buffer.writeInt(mArray[index]);
-        }
+        buffer.writeCompactInt(mPos);
+        buffer.writeInts(mArray, 0, mPos);
     }
 
     public void readBundle(WireBuffer buffer) {
-        int len = buffer.readInt();
+        int len = buffer.readCompactInt();
         if (len <= 0 || len > 1024) {
             throw new RuntimeException("buffer corrupt paint len = " + len);
         }
         mArray = new int[len];
-        for (int i = 0; i < mArray.length; i++) {
-            mArray[i] = buffer.readInt();
-        }
+        buffer.readInts(mArray, 0, len);
         mPos = len;
     }
 
@@ -19,7 +19,7 @@ package com.example.nift4.remotecomposedemo.lib.core.operations.utilities;
  * high performance floating point expression evaluator used in animation
  */
 public class AnimatedFloatExpression {
-    static IntMap<String> sNames = new IntMap<>();
+    static IntObjectMap<String> sNames = new IntObjectMap<>();
     public static final int OFFSET = 0x100;
     public static final float ADD = asNan(OFFSET + 1);
     public static final float SUB = asNan(OFFSET + 2);
@@ -65,11 +65,16 @@ public class AnimatedFloatExpression {
 
     // TODO CLAMP, CBRT, DEG, RAD, EXPM1, CEIL, FLOOR
     private static final float FP_PI = (float) Math.PI;
-    private static final float FP_TO_RAD = 57.29577951f; // 180/PI
-    private static final float FP_TO_DEG = 0.01745329252f; // 180/PI
+    static final float FP_TO_RAD = 57.29577951f; // 180/PI
+    static final float FP_TO_DEG = 0.01745329252f; // 180/PI
+
+    /**
+     * Maximum depth of the evaluation stack (see DocumentVerifier)
+     */
+    public static final int MAX_STACK_SIZE = 128;
 
     float[] mStack;
-    float[] mLocalStack = new float[128];
+    float[] mLocalStack = new float[MAX_STACK_SIZE];
     float[] mVar;
 
     /**
@@ -85,6 +90,33 @@ public class AnimatedFloatExpression {
         return false;
     }
 
+    /**
+     * Number of values an operator takes from the stack, it then pushes its result
+     * @param op the operator, offset from OFFSET
+     * @return
+     */
+    public static int arguments(int op) {
+        switch (op) {
+            case 1: // ADD
+            case 2: // SUB
+            case 3: // MUL
+            case 4: // DIV
+            case 5: // MOD
+            case 6: // MIN
+            case 7: // MAX
+            case 8: // POW
+            case 12: // COPY_SIGN
+            case 24: // ATAN2
+                return 2;
+            case 25: // MAD
+            case 26: // IFELSE
+            case 27: // CLAMP
+                return 3;
+            default:
+                return 1;
+        }
+    }
+
     interface Op {
         int eval(int sp);
     }
@@ -111,19 +143,25 @@ public class AnimatedFloatExpression {
     }
 
     /**
-     * Evaluate a float expression
+     * Evaluate a float expression, exp is not modified
      * @param exp
      * @param len
      * @param var
      * @return
      */
     public float eval(float[] exp, int len, float... var) {
-        System.arraycopy(exp, 0, mLocalStack, 0, len);
-        mStack = mLocalStack;
         mVar = var;
+        return evalLocal(exp, len);
+    }
+
+    private float evalLocal(float[] exp, int len) {
+        if (len > mLocalStack.length) {
+            mLocalStack = new float[len];
+        }
+        mStack = mLocalStack;
         int sp = -1;
         for (int i = 0; i < len; i++) {
-            float v = mStack[i];
+            float v = exp[i];
             if (Float.isNaN(v)) {
                 sp = mOps[fromNaN(v) - OFFSET].eval(sp);
             } else {
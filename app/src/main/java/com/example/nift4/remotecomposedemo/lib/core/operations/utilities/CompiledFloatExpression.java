@@ -0,0 +1,363 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.nift4.remotecomposedemo.lib.core.operations.utilities;
+
+import java.util.Arrays;
+
+/**
+ * Float expression compiled once from its RPN form (see AnimatedFloatExpression)
+ * into int instructions run by a single switch.
+ * <p>
+ * An instruction is an opcode in the low 8 bits and an argument above it:
+ * PUSH pushes a constant of the constant pool, LOAD pushes the value of a variable
+ * slot, operators keep the numbers of AnimatedFloatExpression and CONST_RHS + op
+ * applies a binary operator with a constant as its right operand.
+ * Sub expressions made only of constants are evaluated at compile time, and
+ * multiplying or dividing by 1 and subtracting 0 are removed.
+ * Every variable id gets one slot, its value is set with setVariable() before eval().
+ */
+public class CompiledFloatExpression {
+    static final int PUSH = 0;
+    static final int ADD = 1;
+    static final int SUB = 2;
+    static final int MUL = 3;
+    static final int DIV = 4;
+    static final int MOD = 5;
+    static final int MIN = 6;
+    static final int MAX = 7;
+    static final int POW = 8;
+    static final int SQRT = 9;
+    static final int ABS = 10;
+    static final int SIGN = 11;
+    static final int COPY_SIGN = 12;
+    static final int EXP = 13;
+    static final int FLOOR = 14;
+    static final int LOG = 15;
+    static final int LN = 16;
+    static final int ROUND = 17;
+    static final int SIN = 18;
+    static final int COS = 19;
+    static final int TAN = 20;
+    static final int ASIN = 21;
+    static final int ACOS = 22;
+    static final int ATAN = 23;
+    static final int ATAN2 = 24;
+    static final int MAD = 25;
+    static final int IFELSE = 26;
+    static final int CLAMP = 27;
+    static final int CBRT = 28;
+    static final int DEG = 29;
+    static final int RAD = 30;
+    static final int CEIL = 31;
+    static final int LOAD = 32;
+    static final int CONST_RHS = 64;
+    static final int ARG_SHIFT = 8;
+
+    final int[] mCode;
+    final float[] mConstants;
+    final int[] mVariableIds;
+    final float[] mValues;
+    final float[] mStack;
+
+    private CompiledFloatExpression(int[] code, float[] constants, int[] variableIds,
+            int maxStack) {
+        mCode = code;
+        mConstants = constants;
+        mVariableIds = variableIds;
+        mValues = new float[variableIds.length];
+        mStack = new float[Math.max(maxStack, 1)];
+    }
+
+    /**
+     * Compile an expression, NaN values that are not operators are variable ids
+     *
+     * @param exp the expression in RPN form
+     * @throws RuntimeException if an operator misses arguments or nothing is left
+     */
+    public static CompiledFloatExpression compile(float[] exp) {
+        int[] code = new int[exp.length];
+        float[] constants = new float[exp.length];
+        int[] ids = new int[exp.length];
+        boolean[] isConstant = new boolean[exp.length];
+        int pc = 0;
+        int constantCount = 0;
+        int idCount = 0;
+        int sp = -1;
+        int maxStack = 0;
+        for (int i = 0; i < exp.length; i++) {
+            float v = exp[i];
+            if (!Float.isNaN(v)) {
+                code[pc++] = PUSH | (constantCount << ARG_SHIFT);
+                constants[constantCount++] = v;
+                isConstant[++sp] = true;
+            } else if (!AnimatedFloatExpression.isMathOperator(v)) {
+                int id = AnimatedFloatExpression.fromNaN(v);
+                int slot = 0;
+                while (slot < idCount && ids[slot] != id) {
+                    slot++;
+                }
+                if (slot == idCount) {
+                    ids[idCount++] = id;
+                }
+                code[pc++] = LOAD | (slot << ARG_SHIFT);
+                isConstant[++sp] = false;
+            } else {
+                int op = AnimatedFloatExpression.fromNaN(v) - AnimatedFloatExpression.OFFSET;
+                int arguments = AnimatedFloatExpression.arguments(op);
+                if (sp + 1 < arguments) {
+                    throw new RuntimeException("stack underflow at " + i + " in expression");
+                }
+                boolean constant = true;
+                for (int k = 0; k < arguments; k++) {
+                    constant &= isConstant[sp - k];
+                }
+                if (constant) {
+                    // the arguments are the last pushes, and the last constants
+                    pc -= arguments;
+                    constantCount -= arguments;
+                    float value = fold(op, Arrays.copyOfRange(constants, constantCount,
+                            constantCount + arguments));
+                    code[pc++] = PUSH | (constantCount << ARG_SHIFT);
+                    constants[constantCount++] = value;
+                    sp -= arguments - 1;
+                    continue;
+                }
+                if (arguments == 2 && isConstant[sp] && op <= MAX) {
+                    float c = constants[constantCount - 1];
+                    if ((c == 1 && (op == MUL || op == DIV)) || (c == 0 && op == SUB)) {
+                        pc--;
+                        constantCount--;
+                    } else {
+                        code[pc - 1] = (CONST_RHS + op) | ((constantCount - 1) << ARG_SHIFT);
+                    }
+                } else {
+                    code[pc++] = op;
+                }
+                sp -= arguments - 1;
+                isConstant[sp] = false;
+            }
+            maxStack = Math.max(maxStack, sp + 1);
+        }
+        if (sp < 0) {
+            throw new RuntimeException("expression leaves no value on the stack");
+        }
+        return new CompiledFloatExpression(Arrays.copyOf(code, pc),
+                Arrays.copyOf(constants, constantCount), Arrays.copyOf(ids, idCount), maxStack);
+    }
+
+    /**
+     * Apply an operator to constant arguments, with the interpreter so the result is
+     * the one it would compute (NaN constants included)
+     */
+    private static float fold(int op, float[] arguments) {
+        int[] code = new int[arguments.length + 1];
+        for (int i = 0; i < arguments.length; i++) {
+            code[i] = PUSH | (i << ARG_SHIFT);
+        }
+        code[arguments.length] = op;
+        return new CompiledFloatExpression(code, arguments, new int[0], arguments.length).eval();
+    }
+
+    /**
+     * Number of distinct variables of the expression
+     */
+    public int getVariableCount() {
+        return mVariableIds.length;
+    }
+
+    public int getVariableId(int slot) {
+        return mVariableIds[slot];
+    }
+
+    public float getVariable(int slot) {
+        return mValues[slot];
+    }
+
+    public void setVariable(int slot, float value) {
+        mValues[slot] = value;
+    }
+
+    /**
+     * Number of instructions after folding
+     */
+    public int getCodeLength() {
+        return mCode.length;
+    }
+
+    /**
+     * Expressions have the same shape when they have the same instructions, they can
+     * then be evaluated together by a FloatExpressionBatch
+     */
+    public boolean sameShape(CompiledFloatExpression other) {
+        return Arrays.equals(mCode, other.mCode);
+    }
+
+    public int shapeHash() {
+        return Arrays.hashCode(mCode);
+    }
+
+    /**
+     * Evaluate the expression with the current values of the variables
+     */
+    public float eval() {
+        final int[] code = mCode;
+        final float[] s = mStack;
+        final float[] c = mConstants;
+        int sp = -1;
+        for (int pc = 0; pc < code.length; pc++) {
+            int instruction = code[pc];
+            int arg = instruction >>> ARG_SHIFT;
+            switch (instruction & 0xFF) {
+                case PUSH:
+                    s[++sp] = c[arg];
+                    break;
+                case LOAD:
+                    s[++sp] = mValues[arg];
+                    break;
+                case ADD:
+                    sp--;
+                    s[sp] = s[sp] + s[sp + 1];
+                    break;
+                case SUB:
+                    sp--;
+                    s[sp] = s[sp] - s[sp + 1];
+                    break;
+                case MUL:
+                    sp--;
+                    s[sp] = s[sp] * s[sp + 1];
+                    break;
+                case DIV:
+                    sp--;
+                    s[sp] = s[sp] / s[sp + 1];
+                    break;
+                case MOD:
+                    sp--;
+                    s[sp] = s[sp] % s[sp + 1];
+                    break;
+                case MIN:
+                    sp--;
+                    s[sp] = Math.min(s[sp], s[sp + 1]);
+                    break;
+                case MAX:
+                    sp--;
+                    s[sp] = Math.max(s[sp], s[sp + 1]);
+                    break;
+                case POW:
+                    sp--;
+                    s[sp] = (float) Math.pow(s[sp], s[sp + 1]);
+                    break;
+                case SQRT:
+                    s[sp] = (float) Math.sqrt(s[sp]);
+                    break;
+                case ABS:
+                    s[sp] = Math.abs(s[sp]);
+                    break;
+                case SIGN:
+                    s[sp] = Math.signum(s[sp]);
+                    break;
+                case COPY_SIGN:
+                    sp--;
+                    s[sp] = Math.copySign(s[sp], s[sp + 1]);
+                    break;
+                case EXP:
+                    s[sp] = (float) Math.exp(s[sp]);
+                    break;
+                case FLOOR:
+                    s[sp] = (float) Math.floor(s[sp]);
+                    break;
+                case LOG:
+                    s[sp] = (float) Math.log10(s[sp]);
+                    break;
+                case LN:
+                    s[sp] = (float) Math.log(s[sp]);
+                    break;
+                case ROUND:
+                    s[sp] = (float) Math.round(s[sp]);
+                    break;
+                case SIN:
+                    s[sp] = (float) Math.sin(s[sp]);
+                    break;
+                case COS:
+                    s[sp] = (float) Math.cos(s[sp]);
+                    break;
+                case TAN:
+                    s[sp] = (float) Math.tan(s[sp]);
+                    break;
+                case ASIN:
+                    s[sp] = (float) Math.asin(s[sp]);
+                    break;
+                case ACOS:
+                    s[sp] = (float) Math.acos(s[sp]);
+                    break;
+                case ATAN:
+                    s[sp] = (float) Math.atan(s[sp]);
+                    break;
+                case ATAN2:
+                    sp--;
+                    s[sp] = (float) Math.atan2(s[sp], s[sp + 1]);
+                    break;
+                case MAD:
+                    sp -= 2;
+                    s[sp] = s[sp + 2] + s[sp + 1] * s[sp];
+                    break;
+                case IFELSE:
+                    sp -= 2;
+                    s[sp] = (s[sp + 2] > 0) ? s[sp + 1] : s[sp];
+                    break;
+                case CLAMP:
+                    sp -= 2;
+                    s[sp] = Math.min(Math.max(s[sp], s[sp + 2]), s[sp + 1]);
+                    break;
+                case CBRT:
+                    s[sp] = (float) Math.pow(s[sp], 1 / 3.);
+                    break;
+                case DEG:
+                    s[sp] = s[sp] * AnimatedFloatExpression.FP_TO_RAD;
+                    break;
+                case RAD:
+                    s[sp] = s[sp] * AnimatedFloatExpression.FP_TO_DEG;
+                    break;
+                case CEIL:
+                    s[sp] = (float) Math.ceil(s[sp]);
+                    break;
+                case CONST_RHS + ADD:
+                    s[sp] = s[sp] + c[arg];
+                    break;
+                case CONST_RHS + SUB:
+                    s[sp] = s[sp] - c[arg];
+                    break;
+                case CONST_RHS + MUL:
+                    s[sp] = s[sp] * c[arg];
+                    break;
+                case CONST_RHS + DIV:
+                    s[sp] = s[sp] / c[arg];
+                    break;
+                case CONST_RHS + MOD:
+                    s[sp] = s[sp] % c[arg];
+                    break;
+                case CONST_RHS + MIN:
+                    s[sp] = Math.min(s[sp], c[arg]);
+                    break;
+                case CONST_RHS + MAX:
+                    s[sp] = Math.max(s[sp], c[arg]);
+                    break;
+                default:
+                    throw new RuntimeException("invalid instruction " + instruction);
+            }
+        }
+        return s[sp];
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.nift4.remotecomposedemo.lib.core.operations.utilities;
+
+import java.util.Arrays;
+
+/**
+ * Rewrites float expressions (see AnimatedFloatExpression) while a document is written.
+ * <p>
+ * Sub expressions made only of constants are replaced by their value, unless it is
+ * NaN which would read as an id. Sub expressions identical to an expression already
+ * written without animation are replaced by a reference to its id, and expressions
+ * identical to one already written get its id, so shared terms such as
+ * "FLOAT_TIME_IN_SEC 60 MOD" are written and evaluated once.
+ */
+public class ExpressionOptimizer {
+    private final ObjectIdMap mExpressions = new ObjectIdMap(true);
+    private final ObjectIdMap mAnimatedExpressions = new ObjectIdMap(true);
+
+    /**
+     * Fold constants and reference the expressions already written
+     *
+     * @param exp the expression in RPN form, not modified
+     * @return the expression to write
+     * @throws RuntimeException if an operator misses arguments
+     */
+    public float[] optimize(float[] exp) {
+        float[] out = new float[exp.length];
+        int[] start = new int[exp.length]; // where the value of each stack entry starts
+        boolean[] isConstant = new boolean[exp.length];
+        int n = 0;
+        int sp = -1;
+        for (int i = 0; i < exp.length; i++) {
+            float v = exp[i];
+            if (!AnimatedFloatExpression.isMathOperator(v)) {
+                start[++sp] = n;
+                isConstant[sp] = !Float.isNaN(v);
+                out[n++] = v;
+                continue;
+            }
+            int op = AnimatedFloatExpression.fromNaN(v) - AnimatedFloatExpression.OFFSET;
+            int arguments = AnimatedFloatExpression.arguments(op);
+            if (sp + 1 < arguments) {
+                throw new RuntimeException("stack underflow at " + i + " in expression");
+            }
+            boolean constant = true;
+            for (int k = 0; k < arguments; k++) {
+                constant &= isConstant[sp - k];
+            }
+            sp -= arguments - 1;
+            int s = start[sp];
+            out[n++] = v;
+            if (constant) {
+                float value = CompiledFloatExpression.compile(
+                        Arrays.copyOfRange(out, s, n)).eval();
+                if (!Float.isNaN(value)) {
+                    n = s;
+                    out[n++] = value;
+                    continue;
+                }
+            }
+            isConstant[sp] = false;
+            if (s > 0 || i < exp.length - 1) { // the whole expression is looked up by getId()
+                int id = mExpressions.get(Arrays.copyOfRange(out, s, n));
+                if (id != -1) {
+                    n = s;
+                    out[n++] = AnimatedFloatExpression.asNan(id);
+                }
+            }
+        }
+        return (n == exp.length) ? out : Arrays.copyOf(out, n);
+    }
+
+    /**
+     * @param exp       an expression returned by optimize()
+     * @param animation the animation of the expression, null if it has none
+     * @return the id of an identical expression already written, -1 if there is none
+     */
+    public int getId(float[] exp, float[] animation) {
+        if (animation == null) {
+            return mExpressions.get(exp);
+        }
+        return mAnimatedExpressions.get(animatedKey(exp, animation));
+    }
+
+    /**
+     * Record an expression written with the given id, it must not be modified afterwards
+     */
+    public void put(float[] exp, float[] animation, int id) {
+        if (animation == null) {
+            mExpressions.put(exp, id);
+        } else {
+            mAnimatedExpressions.put(animatedKey(exp, animation), id);
+        }
+    }
+
+    public void clear() {
+        mExpressions.clear();
+        mAnimatedExpressions.clear();
+    }
+
+    private static float[] animatedKey(float[] exp, float[] animation) {
+        float[] key = new float[1 + exp.length + animation.length];
+        key[0] = exp.length;
+        System.arraycopy(exp, 0, key, 1, exp.length);
+        System.arraycopy(animation, 0, key, 1 + exp.length, animation.length);
+        return key;
+    }
+}
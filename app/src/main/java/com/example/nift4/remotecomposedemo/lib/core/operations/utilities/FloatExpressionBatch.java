@@ -0,0 +1,372 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.nift4.remotecomposedemo.lib.core.operations.utilities;
+
+import static com.example.nift4.remotecomposedemo.lib.core.operations.utilities.CompiledFloatExpression.*;
+
+/**
+ * Evaluates together expressions of the same shape (see CompiledFloatExpression.sameShape()),
+ * differing only by their constants and variable ids.
+ * <p>
+ * Each expression is a row, constants, variables and stack entries are stored as columns
+ * so every instruction is a loop over the rows on primitive arrays, that the JIT can
+ * unroll and vectorize. Typically one formula computing each bar of a chart.
+ */
+public class FloatExpressionBatch {
+    private final int[] mCode;
+    private final int mRows;
+    private final float[][] mConstants; // [constant][row]
+    private final int[][] mVariableIds; // [slot][row]
+    private final float[][] mValues; // [slot][row]
+    private final float[][] mStack; // [depth][row]
+    private final int mResult; // stack entry holding the result
+
+    /**
+     * @param expressions expressions of the same shape, at least one
+     */
+    public FloatExpressionBatch(CompiledFloatExpression[] expressions) {
+        CompiledFloatExpression first = expressions[0];
+        mCode = first.mCode;
+        mRows = expressions.length;
+        mConstants = new float[first.mConstants.length][mRows];
+        mVariableIds = new int[first.mVariableIds.length][mRows];
+        mValues = new float[first.mVariableIds.length][mRows];
+        mStack = new float[first.mStack.length][mRows];
+        for (int row = 0; row < mRows; row++) {
+            CompiledFloatExpression expression = expressions[row];
+            if (!expression.sameShape(first)) {
+                throw new IllegalArgumentException("expression " + row + " has another shape");
+            }
+            for (int i = 0; i < mConstants.length; i++) {
+                mConstants[i][row] = expression.mConstants[i];
+            }
+            for (int i = 0; i < mVariableIds.length; i++) {
+                mVariableIds[i][row] = expression.mVariableIds[i];
+            }
+        }
+        int sp = -1;
+        for (int instruction : mCode) {
+            int op = instruction & 0xFF;
+            if (op == PUSH || op == LOAD) {
+                sp++;
+            } else if (op < CONST_RHS) {
+                sp += 1 - AnimatedFloatExpression.arguments(op);
+            }
+        }
+        mResult = sp;
+    }
+
+    /**
+     * Number of expressions
+     */
+    public int size() {
+        return mRows;
+    }
+
+    public int getVariableCount() {
+        return mVariableIds.length;
+    }
+
+    public int getVariableId(int slot, int row) {
+        return mVariableIds[slot][row];
+    }
+
+    public void setVariable(int slot, int row, float value) {
+        mValues[slot][row] = value;
+    }
+
+    /**
+     * Evaluate all the expressions with the current values of their variables
+     *
+     * @return the result of each expression, by row, valid until the next eval()
+     */
+    public float[] eval() {
+        final int n = mRows;
+        final float[][] s = mStack;
+        int sp = -1;
+        for (int instruction : mCode) {
+            int arg = instruction >>> ARG_SHIFT;
+            float[] a;
+            float[] b;
+            float[] c;
+            switch (instruction & 0xFF) {
+                case PUSH:
+                    System.arraycopy(mConstants[arg], 0, s[++sp], 0, n);
+                    break;
+                case LOAD:
+                    System.arraycopy(mValues[arg], 0, s[++sp], 0, n);
+                    break;
+                case ADD:
+                    a = s[--sp];
+                    b = s[sp + 1];
+                    for (int r = 0; r < n; r++) {
+                        a[r] = a[r] + b[r];
+                    }
+                    break;
+                case SUB:
+                    a = s[--sp];
+                    b = s[sp + 1];
+                    for (int r = 0; r < n; r++) {
+                        a[r] = a[r] - b[r];
+                    }
+                    break;
+                case MUL:
+                    a = s[--sp];
+                    b = s[sp + 1];
+                    for (int r = 0; r < n; r++) {
+                        a[r] = a[r] * b[r];
+                    }
+                    break;
+                case DIV:
+                    a = s[--sp];
+                    b = s[sp + 1];
+                    for (int r = 0; r < n; r++) {
+                        a[r] = a[r] / b[r];
+                    }
+                    break;
+                case MOD:
+                    a = s[--sp];
+                    b = s[sp + 1];
+                    for (int r = 0; r < n; r++) {
+                        a[r] = a[r] % b[r];
+                    }
+                    break;
+                case MIN:
+                    a = s[--sp];
+                    b = s[sp + 1];
+                    for (int r = 0; r < n; r++) {
+                        a[r] = Math.min(a[r], b[r]);
+                    }
+                    break;
+                case MAX:
+                    a = s[--sp];
+                    b = s[sp + 1];
+                    for (int r = 0; r < n; r++) {
+                        a[r] = Math.max(a[r], b[r]);
+                    }
+                    break;
+                case POW:
+                    a = s[--sp];
+                    b = s[sp + 1];
+                    for (int r = 0; r < n; r++) {
+                        a[r] = (float) Math.pow(a[r], b[r]);
+                    }
+                    break;
+                case SQRT:
+                    a = s[sp];
+                    for (int r = 0; r < n; r++) {
+                        a[r] = (float) Math.sqrt(a[r]);
+                    }
+                    break;
+                case ABS:
+                    a = s[sp];
+                    for (int r = 0; r < n; r++) {
+                        a[r] = Math.abs(a[r]);
+                    }
+                    break;
+                case SIGN:
+                    a = s[sp];
+                    for (int r = 0; r < n; r++) {
+                        a[r] = Math.signum(a[r]);
+                    }
+                    break;
+                case COPY_SIGN:
+                    a = s[--sp];
+                    b = s[sp + 1];
+                    for (int r = 0; r < n; r++) {
+                        a[r] = Math.copySign(a[r], b[r]);
+                    }
+                    break;
+                case EXP:
+                    a = s[sp];
+                    for (int r = 0; r < n; r++) {
+                        a[r] = (float) Math.exp(a[r]);
+                    }
+                    break;
+                case FLOOR:
+                    a = s[sp];
+                    for (int r = 0; r < n; r++) {
+                        a[r] = (float) Math.floor(a[r]);
+                    }
+                    break;
+                case LOG:
+                    a = s[sp];
+                    for (int r = 0; r < n; r++) {
+                        a[r] = (float) Math.log10(a[r]);
+                    }
+                    break;
+                case LN:
+                    a = s[sp];
+                    for (int r = 0; r < n; r++) {
+                        a[r] = (float) Math.log(a[r]);
+                    }
+                    break;
+                case ROUND:
+                    a = s[sp];
+                    for (int r = 0; r < n; r++) {
+                        a[r] = (float) Math.round(a[r]);
+                    }
+                    break;
+                case SIN:
+                    a = s[sp];
+                    for (int r = 0; r < n; r++) {
+                        a[r] = (float) Math.sin(a[r]);
+                    }
+                    break;
+                case COS:
+                    a = s[sp];
+                    for (int r = 0; r < n; r++) {
+                        a[r] = (float) Math.cos(a[r]);
+                    }
+                    break;
+                case TAN:
+                    a = s[sp];
+                    for (int r = 0; r < n; r++) {
+                        a[r] = (float) Math.tan(a[r]);
+                    }
+                    break;
+                case ASIN:
+                    a = s[sp];
+                    for (int r = 0; r < n; r++) {
+                        a[r] = (float) Math.asin(a[r]);
+                    }
+                    break;
+                case ACOS:
+                    a = s[sp];
+                    for (int r = 0; r < n; r++) {
+                        a[r] = (float) Math.acos(a[r]);
+                    }
+                    break;
+                case ATAN:
+                    a = s[sp];
+                    for (int r = 0; r < n; r++) {
+                        a[r] = (float) Math.atan(a[r]);
+                    }
+                    break;
+                case ATAN2:
+                    a = s[--sp];
+                    b = s[sp + 1];
+                    for (int r = 0; r < n; r++) {
+                        a[r] = (float) Math.atan2(a[r], b[r]);
+                    }
+                    break;
+                case MAD:
+                    sp -= 2;
+                    a = s[sp];
+                    b = s[sp + 1];
+                    c = s[sp + 2];
+                    for (int r = 0; r < n; r++) {
+                        a[r] = c[r] + b[r] * a[r];
+                    }
+                    break;
+                case IFELSE:
+                    sp -= 2;
+                    a = s[sp];
+                    b = s[sp + 1];
+                    c = s[sp + 2];
+                    for (int r = 0; r < n; r++) {
+                        a[r] = (c[r] > 0) ? b[r] : a[r];
+                    }
+                    break;
+                case CLAMP:
+                    sp -= 2;
+                    a = s[sp];
+                    b = s[sp + 1];
+                    c = s[sp + 2];
+                    for (int r = 0; r < n; r++) {
+                        a[r] = Math.min(Math.max(a[r], c[r]), b[r]);
+                    }
+                    break;
+                case CBRT:
+                    a = s[sp];
+                    for (int r = 0; r < n; r++) {
+                        a[r] = (float) Math.pow(a[r], 1 / 3.);
+                    }
+                    break;
+                case DEG:
+                    a = s[sp];
+                    for (int r = 0; r < n; r++) {
+                        a[r] = a[r] * AnimatedFloatExpression.FP_TO_RAD;
+                    }
+                    break;
+                case RAD:
+                    a = s[sp];
+                    for (int r = 0; r < n; r++) {
+                        a[r] = a[r] * AnimatedFloatExpression.FP_TO_DEG;
+                    }
+                    break;
+                case CEIL:
+                    a = s[sp];
+                    for (int r = 0; r < n; r++) {
+                        a[r] = (float) Math.ceil(a[r]);
+                    }
+                    break;
+                case CONST_RHS + ADD:
+                    a = s[sp];
+                    b = mConstants[arg];
+                    for (int r = 0; r < n; r++) {
+                        a[r] = a[r] + b[r];
+                    }
+                    break;
+                case CONST_RHS + SUB:
+                    a = s[sp];
+                    b = mConstants[arg];
+                    for (int r = 0; r < n; r++) {
+                        a[r] = a[r] - b[r];
+                    }
+                    break;
+                case CONST_RHS + MUL:
+                    a = s[sp];
+                    b = mConstants[arg];
+                    for (int r = 0; r < n; r++) {
+                        a[r] = a[r] * b[r];
+                    }
+                    break;
+                case CONST_RHS + DIV:
+                    a = s[sp];
+                    b = mConstants[arg];
+                    for (int r = 0; r < n; r++) {
+                        a[r] = a[r] / b[r];
+                    }
+                    break;
+                case CONST_RHS + MOD:
+                    a = s[sp];
+                    b = mConstants[arg];
+                    for (int r = 0; r < n; r++) {
+                        a[r] = a[r] % b[r];
+                    }
+                    break;
+                case CONST_RHS + MIN:
+                    a = s[sp];
+                    b = mConstants[arg];
+                    for (int r = 0; r < n; r++) {
+                        a[r] = Math.min(a[r], b[r]);
+                    }
+                    break;
+                case CONST_RHS + MAX:
+                    a = s[sp];
+                    b = mConstants[arg];
+                    for (int r = 0; r < n; r++) {
+                        a[r] = Math.max(a[r], b[r]);
+                    }
+                    break;
+                default:
+                    throw new RuntimeException("invalid instruction " + instruction);
+            }
+        }
+        return s[mResult];
+    }
+}
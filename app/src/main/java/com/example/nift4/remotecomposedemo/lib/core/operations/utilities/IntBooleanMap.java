@@ -0,0 +1,195 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.nift4.remotecomposedemo.lib.core.operations.utilities;
+
+import java.util.Arrays;
+
+/**
+ * Map from int keys to booleans, in plain arrays.
+ * <p>
+ * Open addressing with linear probing in a power of two table, keys are spread by a
+ * multiplicative hash. Removal shifts the following entries back instead of leaving
+ * tombstones. Iterate without allocating with
+ * {@code for (int i = map.next(-1); i >= 0; i = map.next(i))} and keyAt(i)/valueAt(i);
+ * the map must not be modified while iterating.
+ * Integer.MIN_VALUE can't be used as a key.
+ */
+public class IntBooleanMap {
+    private static final int EMPTY = Integer.MIN_VALUE;
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private int[] mKeys;
+    private boolean[] mValues;
+    private int mMask;
+    private int mThreshold;
+    private int mSize;
+
+    public IntBooleanMap() {
+        this(DEFAULT_CAPACITY / 2);
+    }
+
+    /**
+     * @param expectedSize number of entries the map can hold without growing
+     */
+    public IntBooleanMap(int expectedSize) {
+        int capacity = DEFAULT_CAPACITY;
+        while (capacity * 3 / 4 < expectedSize) {
+            capacity *= 2;
+        }
+        allocate(capacity);
+    }
+
+    private void allocate(int capacity) {
+        mKeys = new int[capacity];
+        Arrays.fill(mKeys, EMPTY);
+        mValues = new boolean[capacity];
+        mMask = capacity - 1;
+        mThreshold = capacity * 3 / 4;
+    }
+
+    static int hash(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private int find(int key) {
+        int slot = hash(key) & mMask;
+        int k;
+        while ((k = mKeys[slot]) != EMPTY) {
+            if (k == key) {
+                return slot;
+            }
+            slot = (slot + 1) & mMask;
+        }
+        return -1;
+    }
+
+    public boolean containsKey(int key) {
+        return find(key) >= 0;
+    }
+
+    /**
+     * @return the value of key, defaultValue if absent
+     */
+    public boolean get(int key, boolean defaultValue) {
+        int slot = find(key);
+        return (slot < 0) ? defaultValue : mValues[slot];
+    }
+
+    /**
+     * Set the value of key
+     */
+    public void put(int key, boolean value) {
+        if (key == EMPTY) {
+            throw new IllegalArgumentException("Key cannot be " + EMPTY);
+        }
+        int slot = hash(key) & mMask;
+        while (mKeys[slot] != EMPTY) {
+            if (mKeys[slot] == key) {
+                mValues[slot] = value;
+                return;
+            }
+            slot = (slot + 1) & mMask;
+        }
+        mKeys[slot] = key;
+        mValues[slot] = value;
+        if (++mSize > mThreshold) {
+            rehash(mKeys.length * 2);
+        }
+    }
+
+    /**
+     * Remove key
+     *
+     * @return true if it was present
+     */
+    public boolean remove(int key) {
+        int slot = find(key);
+        if (slot < 0) {
+            return false;
+        }
+        removeSlot(slot);
+        return true;
+    }
+
+    private void removeSlot(int gap) {
+        // move back the entries following gap that are not at their home slot
+        int slot = gap;
+        while (true) {
+            slot = (slot + 1) & mMask;
+            int key = mKeys[slot];
+            if (key == EMPTY) {
+                break;
+            }
+            int home = hash(key) & mMask;
+            if (((slot - home) & mMask) >= ((slot - gap) & mMask)) {
+                mKeys[gap] = key;
+                mValues[gap] = mValues[slot];
+                gap = slot;
+            }
+        }
+        mKeys[gap] = EMPTY;
+        mSize--;
+    }
+
+    private void rehash(int capacity) {
+        int[] keys = mKeys;
+        boolean[] values = mValues;
+        allocate(capacity);
+        for (int i = 0; i < keys.length; i++) {
+            int key = keys[i];
+            if (key != EMPTY) {
+                int slot = hash(key) & mMask;
+                while (mKeys[slot] != EMPTY) {
+                    slot = (slot + 1) & mMask;
+                }
+                mKeys[slot] = key;
+                mValues[slot] = values[i];
+            }
+        }
+    }
+
+    public void clear() {
+        Arrays.fill(mKeys, EMPTY);
+        mSize = 0;
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * Slot of the entry after the given slot, -1 if there are no more entries
+     *
+     * @param slot the previous slot, -1 to start
+     */
+    public int next(int slot) {
+        for (int i = slot + 1; i < mKeys.length; i++) {
+            if (mKeys[i] != EMPTY) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public int keyAt(int slot) {
+        return mKeys[slot];
+    }
+
+    public boolean valueAt(int slot) {
+        return mValues[slot];
+    }
+}
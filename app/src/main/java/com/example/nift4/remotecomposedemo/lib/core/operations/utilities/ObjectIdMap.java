@@ -0,0 +1,149 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.nift4.remotecomposedemo.lib.core.operations.utilities;
+
+import java.util.Arrays;
+
+/**
+ * Map from objects to ids, used to find the id of data already written to a document.
+ * <p>
+ * Keys are compared by identity, or by content (equals(), and the elements of float
+ * arrays, by bits). Ids are stored unboxed, in open addressing tables.
+ */
+public class ObjectIdMap {
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private final boolean mByContent;
+    private Object[] mKeys = new Object[DEFAULT_CAPACITY];
+    private int[] mIds = new int[DEFAULT_CAPACITY];
+    private int mSize;
+
+    /**
+     * @param byContent compare keys by content instead of identity
+     */
+    public ObjectIdMap(boolean byContent) {
+        mByContent = byContent;
+    }
+
+    private int hash(Object key) {
+        int h;
+        if (!mByContent) {
+            h = System.identityHashCode(key);
+        } else if (key instanceof float[]) {
+            h = 1;
+            for (float v : (float[]) key) {
+                h = 31 * h + Float.floatToRawIntBits(v);
+            }
+        } else {
+            h = key.hashCode();
+        }
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private boolean same(Object a, Object b) {
+        if (a == b) {
+            return true;
+        }
+        if (!mByContent) {
+            return false;
+        }
+        if (a instanceof float[] && b instanceof float[]) {
+            return sameFloats((float[]) a, (float[]) b);
+        }
+        return a.equals(b);
+    }
+
+    // NaN values are ids or commands, they are compared by their bits
+    private static boolean sameFloats(float[] a, float[] b) {
+        if (a.length != b.length) {
+            return false;
+        }
+        for (int i = 0; i < a.length; i++) {
+            if (Float.floatToRawIntBits(a[i]) != Float.floatToRawIntBits(b[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the id of key, -1 if absent
+     */
+    public int get(Object key) {
+        int mask = mKeys.length - 1;
+        int slot = hash(key) & mask;
+        Object k;
+        while ((k = mKeys[slot]) != null) {
+            if (same(k, key)) {
+                return mIds[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * @throws NullPointerException if key is null
+     */
+    public void put(Object key, int id) {
+        if (key == null) {
+            throw new NullPointerException("null key");
+        }
+        int mask = mKeys.length - 1;
+        int slot = hash(key) & mask;
+        Object k;
+        while ((k = mKeys[slot]) != null) {
+            if (same(k, key)) {
+                mIds[slot] = id;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        mKeys[slot] = key;
+        mIds[slot] = id;
+        if (++mSize > mKeys.length * 3 / 4) {
+            rehash();
+        }
+    }
+
+    private void rehash() {
+        Object[] keys = mKeys;
+        int[] ids = mIds;
+        mKeys = new Object[keys.length * 2];
+        mIds = new int[keys.length * 2];
+        int mask = mKeys.length - 1;
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != null) {
+                int slot = hash(keys[i]) & mask;
+                while (mKeys[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                mKeys[slot] = keys[i];
+                mIds[slot] = ids[i];
+            }
+        }
+    }
+
+    public void clear() {
+        Arrays.fill(mKeys, null);
+        mSize = 0;
+    }
+
+    public int size() {
+        return mSize;
+    }
+}
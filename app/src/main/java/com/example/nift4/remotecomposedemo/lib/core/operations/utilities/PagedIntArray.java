@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.nift4.remotecomposedemo.lib.core.operations.utilities;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Growable array of ints indexed by id, allocated by pages of PAGE_SIZE values
+ * so that sparse high ids only allocate the pages they use.
+ * Ids never written read as the default value.
+ */
+public class PagedIntArray {
+    public static final int PAGE_SHIFT = 8;
+    public static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+
+    private final int mDefault;
+    private int[][] mPages = new int[4][];
+
+    public PagedIntArray(int defaultValue) {
+        mDefault = defaultValue;
+    }
+
+    public int get(int id) {
+        int page = id >>> PAGE_SHIFT;
+        if (page >= mPages.length || mPages[page] == null) {
+            return mDefault;
+        }
+        return mPages[page][id & PAGE_MASK];
+    }
+
+    public void set(int id, int value) {
+        page(id)[id & PAGE_MASK] = value;
+    }
+
+    private int[] page(int id) {
+        if (id < 0) {
+            throw new RuntimeException("invalid id " + id);
+        }
+        int page = id >>> PAGE_SHIFT;
+        if (page >= mPages.length) {
+            mPages = Arrays.copyOf(mPages, Math.max(page + 1, mPages.length * 2));
+        }
+        int[] values = mPages[page];
+        if (values == null) {
+            values = new int[PAGE_SIZE];
+            Arrays.fill(values, mDefault);
+            mPages[page] = values;
+        }
+        return values;
+    }
+
+    /**
+     * Copy all the values
+     */
+    public PagedIntArray snapshot() {
+        PagedIntArray copy = new PagedIntArray(mDefault);
+        copy.mPages = new int[mPages.length][];
+        for (int i = 0; i < mPages.length; i++) {
+            if (mPages[i] != null) {
+                copy.mPages[i] = mPages[i].clone();
+            }
+        }
+        return copy;
+    }
+
+    /**
+     * Set all the values back to the ones of a snapshot
+     *
+     * @param snapshot values to restore
+     * @param changed  set to the ids whose value changed
+     */
+    public void restore(PagedIntArray snapshot, BitSet changed) {
+        int pages = Math.max(mPages.length, snapshot.mPages.length);
+        for (int page = 0; page < pages; page++) {
+            int[] from = (page < snapshot.mPages.length) ? snapshot.mPages[page] : null;
+            int[] to = (page < mPages.length) ? mPages[page] : null;
+            if (from == null && to == null) {
+                continue;
+            }
+            int base = page << PAGE_SHIFT;
+            for (int i = 0; i < PAGE_SIZE; i++) {
+                int value = (from != null) ? from[i] : mDefault;
+                int current = (to != null) ? to[i] : mDefault;
+                if (value != current) {
+                    set(base + i, value);
+                    changed.set(base + i);
+                }
+            }
+        }
+    }
+}
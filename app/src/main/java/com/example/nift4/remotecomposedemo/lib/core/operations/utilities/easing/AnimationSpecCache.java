@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.nift4.remotecomposedemo.lib.core.operations.utilities.easing;
+
+import com.example.nift4.remotecomposedemo.lib.core.operations.utilities.ObjectIdMap;
+
+import java.util.ArrayList;
+
+/**
+ * Interns the animation specs of a document while it is read, so expressions animated
+ * the same way (e.g. every item of a list using EASING_CUBIC_STANDARD for 300ms)
+ * share one description array and one easing curve, and only keep their own
+ * initial and target values in their FloatAnimation.
+ * <p>
+ * Each reader of a document (inflateFromBuffer(), LazyOperationList,
+ * RemoteComposeStreamParser) owns one, see FloatExpression.shareAnimation().
+ */
+public class AnimationSpecCache {
+    private final ObjectIdMap mIndex = new ObjectIdMap(true);
+    private final ArrayList<FloatAnimation.Spec> mSpecs = new ArrayList<>();
+    private final float mBakedError;
+
+    public AnimationSpecCache() {
+        this(0);
+    }
+
+    /**
+     * @param bakedError the largest error allowed on the eased value in [0, 1] when the
+     *                   easing curves are sampled into tables (see BakedEasing),
+     *                   0 keeps the analytical curves
+     */
+    public AnimationSpecCache(float bakedError) {
+        mBakedError = bakedError;
+    }
+
+    /**
+     * @param description the float encoding of an animation, it must not be modified
+     *                    afterwards
+     * @return the spec of an identical description already seen, or a new one
+     */
+    public FloatAnimation.Spec get(float[] description) {
+        int index = mIndex.get(description);
+        if (index == -1) {
+            index = mSpecs.size();
+            mSpecs.add(new FloatAnimation.Spec(description, mBakedError));
+            mIndex.put(description, index);
+        }
+        return mSpecs.get(index);
+    }
+
+    public float getBakedError() {
+        return mBakedError;
+    }
+
+    /**
+     * Number of distinct specs
+     */
+    public int size() {
+        return mSpecs.size();
+    }
+
+    public void clear() {
+        mIndex.clear();
+        mSpecs.clear();
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.nift4.remotecomposedemo.lib.core.operations.utilities.easing;
+
+/**
+ * An easing curve sampled once into a table, get() then interpolates linearly between
+ * two samples instead of solving the bezier (CubicEasing) or searching the spline
+ * (StepCurve).
+ * <p>
+ * The number of samples is doubled until the table is within the given error of the
+ * curve, checked at points between the samples.
+ * Outside of [0, 1] and for the slope the original curve is used.
+ */
+public class BakedEasing extends Easing {
+    private static final int MIN_SEGMENTS = 16;
+    private static final int MAX_SEGMENTS = 4096;
+    private static final int CHECKS = 7; // points checked inside each segment, middle included
+    private final Easing mCurve;
+    private final float[] mTable;
+    private final int mSegments;
+
+    /**
+     * @param curve    the curve to sample
+     * @param maxError the largest difference allowed between get() and the curve, it
+     *                 may not be reached with MAX_SEGMENTS for curves with corners such
+     *                 as BounceCurve
+     */
+    public BakedEasing(Easing curve, float maxError) {
+        mCurve = curve;
+        mType = curve.getType();
+        float[] table = sample(curve, MIN_SEGMENTS);
+        while (table.length - 1 < MAX_SEGMENTS && error(curve, table) > maxError) {
+            table = sample(curve, (table.length - 1) * 2);
+        }
+        mTable = table;
+        mSegments = table.length - 1;
+    }
+
+    private static float[] sample(Easing curve, int segments) {
+        float[] table = new float[segments + 1];
+        for (int i = 0; i < segments; i++) {
+            table[i] = curve.get(i / (float) segments);
+        }
+        // the table is only used below 1, where ElasticOutCurve does not reach 1 yet
+        table[segments] = curve.get(Math.nextDown(1f));
+        return table;
+    }
+
+    private static float error(Easing curve, float[] table) {
+        int segments = table.length - 1;
+        float error = 0;
+        for (int i = 0; i < segments; i++) {
+            for (int k = 1; k <= CHECKS; k++) {
+                float f = k / (float) (CHECKS + 1);
+                float expected = curve.get((i + f) / segments);
+                float baked = table[i] + (table[i + 1] - table[i]) * f;
+                error = Math.max(error, Math.abs(expected - baked));
+            }
+        }
+        return error;
+    }
+
+    /**
+     * Number of intervals of the table, it has one more sample
+     */
+    public int getSegmentCount() {
+        return mSegments;
+    }
+
+    @Override
+    public float get(float x) {
+        if (!(x >= 0 && x < 1)) { // NaN included
+            return mCurve.get(x);
+        }
+        float p = x * mSegments;
+        int i = (int) p;
+        float v = mTable[i];
+        return v + (mTable[i + 1] - v) * (p - i);
+    }
+
+    @Override
+    public float getDiff(float x) {
+        return mCurve.getDiff(x);
+    }
+}
@@ -19,44 +19,107 @@ package com.example.nift4.remotecomposedemo.lib.core.operations.utilities.easing
  * Support Animation of the FloatExpression
  */
 public class FloatAnimation extends Easing {
-    float[] mSpec;
-    // mSpec[0] = duration
-    // int(mSpec[1]) = num_of_param << 16 | type
-    // mSpec[2..1+num_of_param] params
-    // mSpec[2+num_of_param] starting Value
-    Easing mEasingCurve;
-    private int mType = CUBIC_STANDARD;
-    private float mDuration = 1;
-    private float mWrap = Float.NaN;
+    private Spec mSpec;
     private float mInitialValue = Float.NaN;
     private float mTargetValue = Float.NaN;
-    private float mScale = 1;
-    float mOffset = 0;
+
+    /**
+     * The immutable part of an animation, decoded from its float encoding.
+     * Animations with the same encoding can share one (see AnimationSpecCache).
+     */
+    public static class Spec {
+        final float[] mDescription;
+        // mDescription[0] = duration
+        // int(mDescription[1]) = num_of_param << 16 | type
+        // mDescription[2..1+num_of_param] params
+        // mDescription[2+num_of_param] starting Value
+        final int mType;
+        final float mDuration;
+        final float mWrap;
+        final float mInitialValue;
+        final Easing mEasingCurve;
+
+        /**
+         * @param description the float encoding (see packToFloatArray()), not copied
+         */
+        public Spec(float[] description) {
+            this(description, 0);
+        }
+
+        /**
+         * @param description the float encoding (see packToFloatArray()), not copied
+         * @param bakedError  if not 0 the easing curve is sampled into a table within
+         *                    this error (see BakedEasing), trading the construction time
+         *                    for a cheaper get()
+         */
+        public Spec(float[] description, float bakedError) {
+            mDescription = description;
+            mDuration = (description.length == 0) ? 1 : description[0];
+            int type = CUBIC_STANDARD;
+            float initialValue = Float.NaN;
+            float wrapValue = Float.NaN;
+            int len = 0;
+            if (description.length > 1) {
+                int num_type = Float.floatToRawIntBits(description[1]);
+                type = num_type & 0xFF;
+                boolean wrap = ((num_type >> 8) & 0x1) > 0;
+                boolean init = ((num_type >> 8) & 0x2) > 0;
+                len = (num_type >> 16) & 0xFFFF;
+                int off = 2 + len;
+                if (init) {
+                    initialValue = description[off++];
+                }
+                if (wrap) {
+                    wrapValue = description[off];
+                }
+            }
+            mType = type;
+            mInitialValue = initialValue;
+            mWrap = wrapValue;
+            mEasingCurve = create(type, description, 2, len, bakedError);
+        }
+
+        public float[] getDescription() {
+            return mDescription;
+        }
+
+        public Easing getEasingCurve() {
+            return mEasingCurve;
+        }
+    }
 
     @Override
     public String toString() {
 
-        String str = "type " + mType;
+        String str = "type " + mSpec.mType;
         if (!Float.isNaN(mInitialValue)) {
             str += " " + mInitialValue;
         }
         if (!Float.isNaN(mTargetValue)) {
             str += " -> " + mTargetValue;
         }
-        if (!Float.isNaN(mWrap)) {
-            str += "  % " + mWrap;
+        if (!Float.isNaN(mSpec.mWrap)) {
+            str += "  % " + mSpec.mWrap;
         }
 
         return str;
     }
 
     public FloatAnimation() {
+        this(new Spec(new float[0]));
     }
 
     public FloatAnimation(float... description) {
         setAnimationDescription(description);
     }
 
+    /**
+     * Create an animation sharing an already decoded spec
+     */
+    public FloatAnimation(Spec spec) {
+        setSpec(spec);
+    }
+
     public FloatAnimation(int type,
                           float duration,
                           float[] description,
@@ -134,27 +197,24 @@ public class FloatAnimation extends Easing {
      * @param description
      */
     public void setAnimationDescription(float[] description) {
-        mSpec = description;
-        mDuration = (mSpec.length == 0) ? 1 : mSpec[0];
-        int len = 0;
-        if (mSpec.length > 1) {
-            int num_type = Float.floatToRawIntBits(mSpec[1]);
-            mType = num_type & 0xFF;
-            boolean wrap = ((num_type >> 8) & 0x1) > 0;
-            boolean init = ((num_type >> 8) & 0x2) > 0;
-            len = (num_type >> 16) & 0xFFFF;
-            int off = 2 + len;
-            if (init) {
-                mInitialValue = mSpec[off++];
-            }
-            if (wrap) {
-                mWrap = mSpec[off];
-            }
+        setSpec(new Spec(description));
+    }
+
+    private void setSpec(Spec spec) {
+        mSpec = spec;
+        mType = spec.mType;
+        if (!Float.isNaN(spec.mInitialValue)) {
+            mInitialValue = spec.mInitialValue;
         }
-        create(mType, description, 2, len);
     }
 
-    private void create(int type, float[] params, int offset, int len) {
+    public Spec getSpec() {
+        return mSpec;
+    }
+
+    private static Easing create(int type, float[] params, int offset, int len,
+                                 float bakedError) {
+        Easing curve = null;
         switch (type) {
             case CUBIC_STANDARD:
             case CUBIC_ACCELERATE:
@@ -162,25 +222,30 @@ public class FloatAnimation extends Easing {
             case CUBIC_LINEAR:
             case CUBIC_ANTICIPATE:
             case CUBIC_OVERSHOOT:
-                mEasingCurve = new CubicEasing(type);
+                curve = new CubicEasing(type);
                 break;
             case CUBIC_CUSTOM:
-                mEasingCurve = new CubicEasing(params[offset + 0],
+                curve = new CubicEasing(params[offset + 0],
                         params[offset + 1],
                         params[offset + 2],
                         params[offset + 3]
                 );
                 break;
             case EASE_OUT_BOUNCE:
-                mEasingCurve = new BounceCurve(type);
+                curve = new BounceCurve(type);
                 break;
             case EASE_OUT_ELASTIC:
-                mEasingCurve = new ElasticOutCurve();
+                curve = new ElasticOutCurve();
                 break;
             case SPLINE_CUSTOM:
-                mEasingCurve = new StepCurve(params, offset, len);
+                curve = new StepCurve(params, offset, len);
                 break;
         }
+        // a bounce is cheaper to compute than to look up, and its corners need many samples
+        if (bakedError > 0 && curve != null && type != EASE_OUT_BOUNCE) {
+            curve = new BakedEasing(curve, bakedError);
+        }
+        return curve;
     }
 
     /**
@@ -188,7 +253,7 @@ public class FloatAnimation extends Easing {
      * @return duration in seconds
      */
     public float getDuration() {
-        return mDuration;
+        return mSpec.mDuration;
     }
 
     /**
@@ -196,13 +261,12 @@ public class FloatAnimation extends Easing {
      * @param value
      */
     public void setInitialValue(float value) {
-
-        if (Float.isNaN(mWrap)) {
+        float wrap = mSpec.mWrap;
+        if (Float.isNaN(wrap)) {
             mInitialValue = value;
         } else {
-            mInitialValue = value % mWrap;
+            mInitialValue = value % wrap;
         }
-        setScaleOffset();
     }
 
     /**
@@ -210,39 +274,29 @@ public class FloatAnimation extends Easing {
      * @param value
      */
     public void setTargetValue(float value) {
-        if (Float.isNaN(mWrap)) {
+        float wrap = mSpec.mWrap;
+        if (Float.isNaN(wrap)) {
             mTargetValue = value;
         } else {
-            if (Math.abs((value % mWrap) + mWrap - mInitialValue)
-                    < Math.abs((value % mWrap) - mInitialValue)) {
-                mTargetValue = (value % mWrap) + mWrap;
+            if (Math.abs((value % wrap) + wrap - mInitialValue)
+                    < Math.abs((value % wrap) - mInitialValue)) {
+                mTargetValue = (value % wrap) + wrap;
 
             } else {
-                mTargetValue = value % mWrap;
+                mTargetValue = value % wrap;
             }
         }
-        setScaleOffset();
     }
 
     public float getTargetValue() {
         return mTargetValue;
     }
 
-    private void setScaleOffset() {
-        if (!Float.isNaN(mInitialValue) && !Float.isNaN(mTargetValue)) {
-            mScale = (mTargetValue - mInitialValue);
-            mOffset = mInitialValue;
-        } else {
-            mScale = 1;
-            mOffset = 0;
-        }
-    }
-
     /**
      * get the value at time t in seconds since start
      */
     public float get(float t) {
-        return mEasingCurve.get(t / mDuration)
+        return mSpec.mEasingCurve.get(t / mSpec.mDuration)
                 * (mTargetValue - mInitialValue) + mInitialValue;
     }
 
@@ -250,7 +304,7 @@ public class FloatAnimation extends Easing {
      * get the slope of the easing function at at x
      */
     public float getDiff(float t) {
-        return mEasingCurve.getDiff(t / mDuration) * (mTargetValue - mInitialValue);
+        return mSpec.mEasingCurve.getDiff(t / mSpec.mDuration) * (mTargetValue - mInitialValue);
     }
 
     public float getInitialValue() {
@@ -19,7 +19,10 @@ import com.example.nift4.remotecomposedemo.lib.core.CoreDocument;
 import com.example.nift4.remotecomposedemo.lib.core.RemoteComposeBuffer;
 import com.example.nift4.remotecomposedemo.lib.core.RemoteContext;
 
+import java.io.FileInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 
 /**
  * Public API to create a new RemoteComposeDocument coming from an input stream
@@ -28,10 +31,67 @@ public class RemoteComposeDocument {
 
     CoreDocument mDocument = new CoreDocument();
 
+    /**
+     * Create a document from a stream, plain or wrapped in a compressed container
+     * (see RemoteComposeBuffer#toCompressedByteArray) which is inflated transparently.
+     *
+     * Files are memory mapped, other streams are decoded as they are received.
+     *
+     * @param inputStream the document
+     */
     public RemoteComposeDocument(InputStream inputStream) {
+        if (inputStream instanceof FileInputStream) {
+            RemoteComposeBuffer buffer = RemoteComposeBuffer.fromInputStream(inputStream,
+                    mDocument.getRemoteComposeState());
+            mDocument.initFromBuffer(buffer);
+        } else {
+            initFromStream(inputStream, null);
+        }
+    }
+
+    /**
+     * Create a document from a stream, decoding operations as they are received.
+     * The callbacks are invoked on the calling thread as soon as the document size
+     * is known, eg. to size the view before the rest of the document is loaded.
+     *
+     * @param inputStream the document
+     * @param callbacks   notified once the document properties are decoded
+     */
+    public RemoteComposeDocument(InputStream inputStream, CoreDocument.LoadCallbacks callbacks) {
+        initFromStream(inputStream, callbacks);
+    }
+
+    private void initFromStream(InputStream inputStream, CoreDocument.LoadCallbacks callbacks) {
+        try {
+            mDocument.initFromStream(inputStream, callbacks);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Create a document reading in place from a ByteBuffer, e.g. a memory mapped file
+     * or a shared memory region. The content is not copied to the heap, unless it
+     * is a compressed container in which case it is inflated.
+     *
+     * @param byteBuffer the document, between position and limit
+     */
+    public RemoteComposeDocument(ByteBuffer byteBuffer) {
+        this(byteBuffer, false);
+    }
+
+    /**
+     * Create a document reading in place from a ByteBuffer.
+     *
+     * @param byteBuffer the document, between position and limit
+     * @param lazy       only index the operations, constant draw operations are then
+     *                   created when first painted. The ByteBuffer must stay valid
+     *                   as long as the document is used.
+     */
+    public RemoteComposeDocument(ByteBuffer byteBuffer, boolean lazy) {
         RemoteComposeBuffer buffer =
-                RemoteComposeBuffer.fromInputStream(inputStream, mDocument.getRemoteComposeState());
-        mDocument.initFromBuffer(buffer);
+                RemoteComposeBuffer.fromByteBuffer(byteBuffer, mDocument.getRemoteComposeState());
+        mDocument.initFromBuffer(buffer, lazy);
     }
 
     public CoreDocument getDocument() {
@@ -78,6 +138,22 @@ public class RemoteComposeDocument {
         mDocument.paint(context, theme);
     }
 
+    /**
+     * Update the document for a new frame, see CoreDocument#updateFrame
+     *
+     * @return true if the frame differs from the previous one
+     */
+    public boolean updateFrame(RemoteContext context, int theme) {
+        return mDocument.updateFrame(context, theme);
+    }
+
+    /**
+     * Draw the frame prepared by updateFrame()
+     */
+    public void draw(RemoteContext context, int theme) {
+        mDocument.draw(context, theme);
+    }
+
     /**
      * The delay in milliseconds to next repaint -1 = not needed 0 = asap
      *
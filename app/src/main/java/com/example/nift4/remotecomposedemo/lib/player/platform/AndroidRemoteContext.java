@@ -142,8 +142,8 @@ class AndroidRemoteContext extends RemoteContext {
     }
 
     @Override
-    public int updateOps() {
-        return mRemoteComposeState.getOpsToUpdate(this);
+    public void updateOps() {
+        mRemoteComposeState.getOpsToUpdate(this);
     }
 
     @Override
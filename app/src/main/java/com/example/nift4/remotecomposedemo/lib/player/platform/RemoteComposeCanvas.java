@@ -19,12 +19,16 @@ import android.content.Context;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Point;
+import android.graphics.RecordingCanvas;
+import android.graphics.RenderNode;
+import android.os.Debug;
 import android.util.AttributeSet;
 import android.view.MotionEvent;
 import android.view.View;
 import android.widget.FrameLayout;
 
 import com.example.nift4.remotecomposedemo.lib.core.CoreDocument;
+import com.example.nift4.remotecomposedemo.lib.core.FrameClock;
 import com.example.nift4.remotecomposedemo.lib.core.operations.RootContentBehavior;
 import com.example.nift4.remotecomposedemo.lib.core.operations.Theme;
 import com.example.nift4.remotecomposedemo.lib.player.RemoteComposeDocument;
@@ -37,11 +41,16 @@ import java.util.Set;
 public class RemoteComposeCanvas extends FrameLayout implements View.OnAttachStateChangeListener {
 
     static final boolean USE_VIEW_AREA_CLICK = true; // Use views to represent click areas
+    // postDelayed() runs on the uptime clock, which stops in deep sleep and ignores time
+    // and time zone changes: long delays are split to check the time again
+    static final int MAX_REPAINT_DELAY = 60 * 1000;
     RemoteComposeDocument mDocument = null;
     int mTheme = Theme.LIGHT;
     boolean mInActionDown = false;
     boolean mDebug = false;
     Point mActionDownPoint = new Point(0, 0);
+    final Runnable mRepaint = this::invalidate; // posted until the document changes
+    final RenderNode mFrame = new RenderNode("RemoteComposeFrame"); // last frame drawn
 
     public RemoteComposeCanvas(Context context) {
         super(context);
@@ -65,9 +74,17 @@ public class RemoteComposeCanvas extends FrameLayout implements View.OnAttachSta
         }
     }
 
+    @SuppressWarnings("deprecation") // allocation counting is only used for debugging
     public void setDebug(boolean value) {
         if (mDebug != value) {
             mDebug = value;
+            if (mDebug) {
+                Debug.resetThreadAllocSize();
+                Debug.startAllocCounting();
+            } else {
+                Debug.stopAllocCounting();
+            }
+            mFrame.discardDisplayList();
             if (USE_VIEW_AREA_CLICK) {
                 for (int i = 0; i < getChildCount(); i++) {
                     View child = getChildAt(i);
@@ -90,6 +107,15 @@ public class RemoteComposeCanvas extends FrameLayout implements View.OnAttachSta
 
     AndroidRemoteContext mARContext = new AndroidRemoteContext();
 
+    /**
+     * Set the source of the animation time, e.g. a FrameClock.FixedStep for reproducible
+     * frames or a FrameClock.RealTime to pause and resume the document
+     */
+    public void setFrameClock(FrameClock frameClock) {
+        mARContext.setFrameClock(frameClock);
+        invalidate();
+    }
+
     @Override
     public void onViewAttachedToWindow(View view) {
         if (mDocument == null) {
@@ -117,6 +143,7 @@ public class RemoteComposeCanvas extends FrameLayout implements View.OnAttachSta
 
     @Override
     public void onViewDetachedFromWindow(View view) {
+        removeCallbacks(mRepaint);
         removeAllViews();
     }
 
@@ -215,28 +242,59 @@ public class RemoteComposeCanvas extends FrameLayout implements View.OnAttachSta
 
     private int mCount;
     private long mTime = System.nanoTime();
+    private long mAllocated; // bytes allocated by the frames counted, in debug mode
+
+    private void paintFrame(Canvas canvas) {
+        mARContext.useCanvas(canvas);
+        mARContext.mWidth = getWidth();
+        mARContext.mHeight = getHeight();
+        mDocument.draw(mARContext, mTheme);
+    }
 
     @Override
+    @SuppressWarnings("deprecation") // allocation counting is only used for debugging
     protected void onDraw(Canvas canvas) {
         super.onDraw(canvas);
         if (mDocument == null) {
             return;
         }
+        int allocStart = mDebug ? Debug.getThreadAllocSize() : 0;
         mARContext.setDebug(mDebug);
-        mARContext.useCanvas(canvas);
         mARContext.mWidth = getWidth();
         mARContext.mHeight = getHeight();
-        mDocument.paint(mARContext, mTheme);
+        boolean changed = mDocument.updateFrame(mARContext, mTheme);
+        if (canvas.isHardwareAccelerated()) {
+            // unchanged frames are drawn from the recording of the last one
+            if (changed || !mFrame.hasDisplayList()) {
+                mFrame.setPosition(0, 0, getWidth(), getHeight());
+                RecordingCanvas recordingCanvas = mFrame.beginRecording();
+                try {
+                    paintFrame(recordingCanvas);
+                } finally {
+                    mFrame.endRecording();
+                }
+            }
+            canvas.drawRenderNode(mFrame);
+        } else {
+            paintFrame(canvas);
+        }
         if (mDebug) {
             mCount++;
+            mAllocated += Debug.getThreadAllocSize() - allocStart;
             if (System.nanoTime() - mTime > 1000000000L) {
-                System.out.println(" count " + mCount + " fps");
+                System.out.println(" count " + mCount + " fps "
+                        + (mAllocated / mCount) + " bytes allocated per frame");
                 mCount = 0;
+                mAllocated = 0;
                 mTime = System.nanoTime();
             }
         }
-        if (mDocument.needsRepaint() > 0) {
+        removeCallbacks(mRepaint);
+        int delay = mDocument.needsRepaint();
+        if (delay == 1) {
             invalidate();
+        } else if (delay > 0) {
+            postDelayed(mRepaint, Math.min(delay, MAX_REPAINT_DELAY));
         }
     }
 
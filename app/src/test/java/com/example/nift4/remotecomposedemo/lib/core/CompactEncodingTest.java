@@ -0,0 +1,189 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.nift4.remotecomposedemo.lib.core;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.example.nift4.remotecomposedemo.lib.core.operations.BitmapData;
+import com.example.nift4.remotecomposedemo.lib.core.operations.DrawBitmap;
+import com.example.nift4.remotecomposedemo.lib.core.operations.DrawBitmapInt;
+import com.example.nift4.remotecomposedemo.lib.core.operations.DrawTextOnPath;
+import com.example.nift4.remotecomposedemo.lib.core.operations.DrawTextRun;
+import com.example.nift4.remotecomposedemo.lib.core.operations.Header;
+import com.example.nift4.remotecomposedemo.lib.core.operations.PathData;
+import com.example.nift4.remotecomposedemo.lib.core.operations.ShaderData;
+import com.example.nift4.remotecomposedemo.lib.core.operations.paint.PaintBundle;
+import com.example.nift4.remotecomposedemo.lib.core.operations.utilities.AnimatedFloatExpression;
+import com.example.nift4.remotecomposedemo.lib.core.operations.utilities.easing.AnimationSpecCache;
+import com.example.nift4.remotecomposedemo.lib.core.operations.utilities.easing.Easing;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Round trips of every operation written differently in the compact profile
+ * (Header.CAPABILITY_COMPACT_ENCODING): the same document is written in both profiles,
+ * decoded, and the decoded operations must write back the exact same bytes.
+ */
+public class CompactEncodingTest {
+    private static final float NAN = Float.intBitsToFloat(0xFFC00042); // not an id
+    private static final float LARGE = 1e9f;
+    private static final int PATH = 5000;
+    private static final int PATH2 = 5001;
+    private static final int BITMAP = 5002;
+    private static final int SHADER = 5003;
+
+    private static void writeDocument(RemoteComposeBuffer document, long capabilities) {
+        document.header(1000, 2000, "document", capabilities);
+        WireBuffer buffer = document.getBuffer();
+        float var = document.addFloat(-0f); // FloatConstant, NaN id of a variable
+        float sum = document.addAnimatedFloat(new float[]{var, LARGE, AnimatedFloatExpression.ADD},
+                RemoteComposeBuffer.packAnimation(0.3f, Easing.CUBIC_STANDARD, null, NAN, NAN));
+        int text = document.addText("text");
+
+        // DrawBase2/3/4/6, coordinates through the tagged encoding
+        document.addMatrixTranslate(-0f, var);
+        document.addMatrixRotate(Float.POSITIVE_INFINITY, -1, LARGE);
+        document.addDrawCircle(sum, 1 << 27, -(1 << 27));
+        document.addDrawLine(0, -16, 16, 0.5f);
+        document.addDrawRect(Float.NEGATIVE_INFINITY, Float.NaN, NAN, -LARGE);
+        document.addClipRect(Float.MAX_VALUE, Float.MIN_VALUE, -Float.MAX_VALUE, 12345678);
+        document.addMatrixScale(2, 2);
+        document.addDrawRoundRect(0, 0, 1000, 2000, -0f, var);
+        document.addDrawArc(10, 10, 90, 90, 0, 360.5f);
+
+        // PathData delta stream
+        PathData.COMPANION.apply(buffer, PATH, new float[]{
+                PathData.MOVE_NAN, 100, 200,
+                PathData.LINE_NAN, 101, 198,
+                PathData.LINE_NAN, var, -0f,
+                PathData.CUBIC_NAN, LARGE, -LARGE, 0.25f, NAN, Float.POSITIVE_INFINITY, 7,
+                PathData.CLOSE_NAN, PathData.DONE_NAN});
+        PathData.COMPANION.apply(buffer, PATH2, new float[0]);
+        document.addDrawPath(PATH);
+        document.addClipPath(PATH);
+        document.addDrawTweenPath(PATH, PATH2, var, -0f, 1);
+        DrawTextOnPath.COMPANION.apply(buffer, text, PATH, -0f, LARGE);
+
+        // ids and lengths written as varints
+        BitmapData.COMPANION.apply(buffer, BITMAP, 2, 1, new byte[]{1, 2, 3, 4, 5, 6, 7, 8});
+        DrawBitmap.COMPANION.apply(buffer, BITMAP, -0f, 0, LARGE, var, text);
+        DrawBitmapInt.COMPANION.apply(buffer, BITMAP, 0, 0, 2, 1, -5, -5, 300, 200, text);
+        document.addClickArea(Integer.MAX_VALUE, "button", 0, 0, 128, 16383, "meta");
+        document.addDrawTextRun(text, 0, 4, 0, 4, var, -0f, true);
+        DrawTextRun.COMPANION.apply(buffer, text, 0, 4, 0, 4, LARGE, NAN, false);
+        document.drawTextAnchored(text, var, 10, -1, Float.NaN, 1);
+        int merged = document.textMerge(text, document.addText("other"));
+        document.drawTextAnchored(merged, 0, 0, 0, 0, 0);
+        int number = document.createTextFromFloat(sum, (short) 3, (short) 2,
+                RemoteComposeBuffer.PAD_PRE_ZERO);
+        document.drawTextAnchored(number, 0, 0, 0, 0, 0);
+        document.addColorExpression(0xFF000000, 0xFFFFFFFF, var);
+        document.addColorExpression(0x80, -0f, 0.5f, Float.POSITIVE_INFINITY);
+
+        HashMap<String, float[]> floats = new HashMap<>();
+        floats.put("f", new float[]{-0f, NAN, var, LARGE});
+        HashMap<String, int[]> ints = new HashMap<>();
+        ints.put("i", new int[]{Integer.MIN_VALUE, -1, 0, 128});
+        HashMap<String, Integer> bitmaps = new HashMap<>();
+        bitmaps.put("b", BITMAP);
+        ShaderData.COMPANION.apply(buffer, SHADER, document.addText("shader"),
+                floats, ints, bitmaps);
+
+        PaintBundle paint = new PaintBundle();
+        paint.setColor(0xFF00FF00);
+        paint.setStrokeWidth(-0f);
+        paint.setTextSize(LARGE);
+        paint.setShader(SHADER);
+        document.addPaint(paint);
+    }
+
+    private static byte[] write(RemoteComposeBuffer document) {
+        return document.getBuffer().toByteArray();
+    }
+
+    private static ArrayList<Operation> read(byte[] bytes) {
+        RemoteComposeBuffer document = RemoteComposeBuffer.fromByteBuffer(
+                ByteBuffer.wrap(bytes), new RemoteComposeState());
+        ArrayList<Operation> operations = new ArrayList<>();
+        document.inflateFromBuffer(operations);
+        return operations;
+    }
+
+    /**
+     * Write the operations again, the header selects the profile
+     */
+    static byte[] rewrite(ArrayList<Operation> operations, boolean skipHeader) {
+        WireBuffer buffer = new WireBuffer(64);
+        for (Operation operation : operations) {
+            if (!(skipHeader && operation instanceof Header)) {
+                operation.write(buffer);
+            }
+        }
+        return buffer.toByteArray();
+    }
+
+    static byte[] document(long capabilities) {
+        RemoteComposeBuffer document = new RemoteComposeBuffer(new RemoteComposeState());
+        writeDocument(document, capabilities);
+        return write(document);
+    }
+
+    @Test
+    public void standardDocumentRoundTrips() {
+        byte[] bytes = document(0);
+        assertArrayEquals(bytes, rewrite(read(bytes), false));
+    }
+
+    @Test
+    public void compactDocumentRoundTrips() {
+        byte[] bytes = document(Header.CAPABILITY_COMPACT_ENCODING);
+        assertArrayEquals(bytes, rewrite(read(bytes), false));
+    }
+
+    @Test
+    public void bothProfilesDecodeToTheSameOperations() {
+        byte[] standard = document(0);
+        byte[] compact = document(Header.CAPABILITY_COMPACT_ENCODING);
+        assertTrue(compact.length + " >= " + standard.length, compact.length < standard.length);
+
+        ArrayList<Operation> fromStandard = read(standard);
+        ArrayList<Operation> fromCompact = read(compact);
+        assertEquals(fromStandard.size(), fromCompact.size());
+        for (int i = 0; i < fromStandard.size(); i++) {
+            assertEquals(fromStandard.get(i).getClass(), fromCompact.get(i).getClass());
+        }
+        // written without the header, both in the standard profile: every value bit for bit
+        assertArrayEquals(rewrite(fromStandard, true), rewrite(fromCompact, true));
+    }
+
+    @Test
+    public void compactDocumentsAreVerified() {
+        RemoteComposeBuffer document = new RemoteComposeBuffer(new RemoteComposeState());
+        writeDocument(document, Header.CAPABILITY_COMPACT_ENCODING);
+        DocumentVerifier.Report report = document.verify();
+        assertTrue(report.toString(), report.isValid());
+
+        ArrayList<Operation> operations = new ArrayList<>();
+        document.inflateFromBuffer(operations, new DocumentVerifier(), new AnimationSpecCache());
+        assertEquals(read(write(document)).size(), operations.size());
+    }
+}
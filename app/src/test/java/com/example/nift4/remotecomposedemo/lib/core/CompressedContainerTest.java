@@ -0,0 +1,171 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.nift4.remotecomposedemo.lib.core;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+
+public class CompressedContainerTest {
+
+    private static WireBuffer document(int size) {
+        WireBuffer buffer = new WireBuffer(size);
+        for (int i = 0; buffer.getSize() < size; i++) {
+            buffer.writeInt(i % 1000); // compressible, but not constant
+        }
+        return buffer;
+    }
+
+    private static byte[] content(WireBuffer buffer) {
+        return Arrays.copyOf(buffer.getBuffer(), buffer.getSize());
+    }
+
+    /** A container holding one block, as written by a hostile or broken producer */
+    private static byte[] container(int length, int compressed, byte[] data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        DataOutputStream dos = new DataOutputStream(out);
+        dos.writeInt(CompressedContainer.MAGIC);
+        dos.writeInt(length);
+        dos.writeInt(compressed);
+        dos.write(data);
+        dos.writeInt(0);
+        return out.toByteArray();
+    }
+
+    private static byte[] deflate(byte[] data, byte[] dictionary) {
+        Deflater deflater = new Deflater();
+        if (dictionary != null) {
+            deflater.setDictionary(dictionary);
+        }
+        deflater.setInput(data);
+        deflater.finish();
+        byte[] out = new byte[CompressedContainer.deflateBound(data.length)];
+        int n = deflater.deflate(out);
+        deflater.end();
+        return Arrays.copyOf(out, n);
+    }
+
+    private static WireBuffer inflateStream(byte[] container) throws IOException {
+        ByteArrayInputStream in = new ByteArrayInputStream(container);
+        in.skip(4); // the magic
+        return CompressedContainer.inflate(in);
+    }
+
+    @Test
+    public void roundTripSeveralBlocks() throws IOException {
+        WireBuffer document = document(CompressedContainer.BLOCK_SIZE * 3 + 123);
+        byte[] compressed = CompressedContainer.compress(document);
+        assertTrue(CompressedContainer.isCompressed(ByteBuffer.wrap(compressed)));
+        assertTrue(compressed.length < document.getSize());
+
+        WireBuffer fromByteBuffer = CompressedContainer.inflate(ByteBuffer.wrap(compressed));
+        assertArrayEquals(content(document), content(fromByteBuffer));
+        assertEquals(0, fromByteBuffer.getIndex());
+
+        assertArrayEquals(content(document), content(inflateStream(compressed)));
+    }
+
+    @Test
+    public void directBuffersAreCompressedInPlace() throws IOException {
+        WireBuffer document = document(CompressedContainer.BLOCK_SIZE * 2 + 45);
+        ByteBuffer direct = ByteBuffer.allocateDirect(document.getSize() + 8);
+        direct.position(8); // content not at the start of the mapping
+        direct.put(document.asByteBuffer());
+        direct.position(8);
+        WireBuffer wrapped = WireBuffer.wrap(direct);
+
+        assertThrows(UnsupportedOperationException.class, wrapped::getBuffer); // no hidden copy
+        assertArrayEquals(content(document), wrapped.toByteArray());
+        assertArrayEquals(CompressedContainer.compress(document),
+                CompressedContainer.compress(wrapped));
+        assertEquals(8, direct.position());
+    }
+
+    @Test
+    public void roundTripEmpty() throws IOException {
+        byte[] compressed = CompressedContainer.compress(new WireBuffer(16));
+        assertEquals(0, CompressedContainer.inflate(ByteBuffer.wrap(compressed)).getSize());
+        assertEquals(0, inflateStream(compressed).getSize());
+    }
+
+    @Test
+    public void truncatedContainerIsRejected() {
+        byte[] compressed = CompressedContainer.compress(document(10000));
+        byte[] truncated = Arrays.copyOf(compressed, compressed.length / 2);
+        assertThrows(RuntimeException.class,
+                () -> CompressedContainer.inflate(ByteBuffer.wrap(truncated)));
+        assertThrows(IOException.class, () -> inflateStream(truncated));
+    }
+
+    @Test
+    public void truncatedDeflateDataIsRejected() throws IOException {
+        byte[] data = content(document(10000));
+        byte[] deflated = deflate(data, null);
+        byte[] cut = Arrays.copyOf(deflated, deflated.length / 2);
+        byte[] container = container(data.length, cut.length, cut);
+        assertThrows(RuntimeException.class,
+                () -> CompressedContainer.inflate(ByteBuffer.wrap(container)));
+        assertThrows(RuntimeException.class, () -> inflateStream(container));
+    }
+
+    @Test
+    public void longerLengthThanDataIsRejected() throws IOException {
+        byte[] data = content(document(1000));
+        byte[] deflated = deflate(data, null);
+        byte[] container = container(data.length + 1, deflated.length, deflated);
+        assertThrows(RuntimeException.class,
+                () -> CompressedContainer.inflate(ByteBuffer.wrap(container)));
+    }
+
+    @Test
+    public void presetDictionaryIsRejected() throws IOException {
+        byte[] data = content(document(1000));
+        byte[] deflated = deflate(data, new byte[]{1, 2, 3, 4});
+        byte[] container = container(data.length, deflated.length, deflated);
+        assertThrows(RuntimeException.class,
+                () -> CompressedContainer.inflate(ByteBuffer.wrap(container)));
+        assertThrows(RuntimeException.class, () -> inflateStream(container));
+    }
+
+    @Test
+    public void hugeCompressedLengthIsRejectedBeforeAllocating() throws IOException {
+        byte[] container = container(1000, Integer.MAX_VALUE, new byte[16]);
+        assertThrows(RuntimeException.class,
+                () -> CompressedContainer.inflate(ByteBuffer.wrap(container)));
+        assertThrows(RuntimeException.class, () -> inflateStream(container));
+    }
+
+    @Test
+    public void negativeOrHugeLengthIsRejected() throws IOException {
+        byte[] negative = container(-1, 10, new byte[10]);
+        assertThrows(RuntimeException.class,
+                () -> CompressedContainer.inflate(ByteBuffer.wrap(negative)));
+        byte[] huge = container(Integer.MAX_VALUE, 10, new byte[10]);
+        assertThrows(RuntimeException.class,
+                () -> CompressedContainer.inflate(ByteBuffer.wrap(huge)));
+    }
+}
@@ -0,0 +1,295 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.nift4.remotecomposedemo.lib.core;
+
+import static com.example.nift4.remotecomposedemo.lib.core.operations.utilities.AnimatedFloatExpression.ADD;
+import static com.example.nift4.remotecomposedemo.lib.core.operations.utilities.AnimatedFloatExpression.MUL;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import com.example.nift4.remotecomposedemo.lib.core.operations.Theme;
+import com.example.nift4.remotecomposedemo.lib.core.operations.Utils;
+import com.example.nift4.remotecomposedemo.lib.core.operations.paint.PaintBundle;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+
+/**
+ * A document painted through its DisplayList must issue the same PaintContext calls as
+ * its operations applied one by one
+ */
+public class DisplayListTest {
+
+    /** Records every call as text */
+    private static class RecordingPaintContext extends PaintContext {
+        final ArrayList<String> mCalls = new ArrayList<>();
+
+        RecordingPaintContext(RemoteContext context) {
+            super(context);
+        }
+
+        private void call(String name, Object... args) {
+            StringBuilder call = new StringBuilder(name);
+            for (Object arg : args) {
+                call.append(' ').append(arg);
+            }
+            mCalls.add(call.toString());
+        }
+
+        @Override
+        public void drawBitmap(int imageId, int srcLeft, int srcTop, int srcRight,
+                               int srcBottom, int dstLeft, int dstTop, int dstRight,
+                               int dstBottom, int cdId) {
+            call("drawBitmap", imageId, srcLeft, srcTop, srcRight, srcBottom,
+                    dstLeft, dstTop, dstRight, dstBottom, cdId);
+        }
+
+        @Override
+        public void scale(float scaleX, float scaleY) {
+            call("scale", scaleX, scaleY);
+        }
+
+        @Override
+        public void translate(float translateX, float translateY) {
+            call("translate", translateX, translateY);
+        }
+
+        @Override
+        public void drawArc(float left, float top, float right, float bottom,
+                            float startAngle, float sweepAngle) {
+            call("drawArc", left, top, right, bottom, startAngle, sweepAngle);
+        }
+
+        @Override
+        public void drawBitmap(int id, float left, float top, float right, float bottom) {
+            call("drawBitmap", id, left, top, right, bottom);
+        }
+
+        @Override
+        public void drawCircle(float centerX, float centerY, float radius) {
+            call("drawCircle", centerX, centerY, radius);
+        }
+
+        @Override
+        public void drawLine(float x1, float y1, float x2, float y2) {
+            call("drawLine", x1, y1, x2, y2);
+        }
+
+        @Override
+        public void drawOval(float left, float top, float right, float bottom) {
+            call("drawOval", left, top, right, bottom);
+        }
+
+        @Override
+        public void drawPath(int id, float start, float end) {
+            call("drawPath", id, start, end);
+        }
+
+        @Override
+        public void drawRect(float left, float top, float right, float bottom) {
+            call("drawRect", left, top, right, bottom);
+        }
+
+        @Override
+        public void drawRoundRect(float left, float top, float right, float bottom,
+                                  float radiusX, float radiusY) {
+            call("drawRoundRect", left, top, right, bottom, radiusX, radiusY);
+        }
+
+        @Override
+        public void drawTextOnPath(int textId, int pathId, float hOffset, float vOffset) {
+            call("drawTextOnPath", textId, pathId, hOffset, vOffset);
+        }
+
+        @Override
+        public void getTextBounds(int textId, int start, int end, boolean monospace,
+                                  float[] bounds) {
+            call("getTextBounds", textId, start, end, monospace);
+        }
+
+        @Override
+        public void drawTextRun(int textId, int start, int end, int contextStart,
+                                int contextEnd, float x, float y, boolean rtl) {
+            call("drawTextRun", textId, start, end, contextStart, contextEnd, x, y, rtl);
+        }
+
+        @Override
+        public void drawTweenPath(int path1Id, int path2Id, float tween, float start,
+                                  float stop) {
+            call("drawTweenPath", path1Id, path2Id, tween, start, stop);
+        }
+
+        @Override
+        public void applyPaint(PaintBundle mPaintData) {
+            call("applyPaint", mPaintData);
+        }
+
+        @Override
+        public void matrixScale(float scaleX, float scaleY, float centerX, float centerY) {
+            call("matrixScale", scaleX, scaleY, centerX, centerY);
+        }
+
+        @Override
+        public void matrixTranslate(float translateX, float translateY) {
+            call("matrixTranslate", translateX, translateY);
+        }
+
+        @Override
+        public void matrixSkew(float skewX, float skewY) {
+            call("matrixSkew", skewX, skewY);
+        }
+
+        @Override
+        public void matrixRotate(float rotate, float pivotX, float pivotY) {
+            call("matrixRotate", rotate, pivotX, pivotY);
+        }
+
+        @Override
+        public void matrixSave() {
+            call("matrixSave");
+        }
+
+        @Override
+        public void matrixRestore() {
+            call("matrixRestore");
+        }
+
+        @Override
+        public void clipRect(float left, float top, float right, float bottom) {
+            call("clipRect", left, top, right, bottom);
+        }
+
+        @Override
+        public void clipPath(int pathId, int regionOp) {
+            call("clipPath", pathId, regionOp);
+        }
+
+        @Override
+        public void reset() {
+            call("reset");
+        }
+    }
+
+    private static final int VARIABLE_ID = 5000; // set by the host
+
+    /**
+     * Every primitive of the display list, constant and bound to variables, under
+     * the themes, between operations painted as objects
+     */
+    private static RemoteComposeBuffer document() {
+        RemoteComposeBuffer buffer = new RemoteComposeBuffer(new RemoteComposeState());
+        buffer.header(300, 200, "display list", 0);
+        float variable = Utils.asNan(VARIABLE_ID);
+        float constant = buffer.addFloat(7);
+        float width = buffer.addAnimatedFloat(RemoteContext.FLOAT_WINDOW_WIDTH, 0.5f, MUL);
+        float sum = buffer.addAnimatedFloat(variable, width, ADD);
+        for (int theme : new int[]{Theme.UNSPECIFIED, Theme.DARK, Theme.LIGHT}) {
+            buffer.setTheme(theme);
+            buffer.addMatrixSave();
+            buffer.addMatrixTranslate(variable, 2);
+            buffer.addMatrixRotate(45, width, variable);
+            buffer.addMatrixScale(2, variable, 1, 1);
+            buffer.addClipRect(0, 0, width, sum);
+            buffer.addDrawRect(1, 2, 3, 4);
+            buffer.addDrawRect(variable, 2, sum, width);
+            buffer.addDrawCircle(sum, sum, 5);
+            buffer.addDrawLine(0, variable, 10, 10);
+            buffer.addDrawOval(0, 0, width, constant);
+            buffer.addDrawArc(0, 0, 10, 10, variable, 90);
+            buffer.addDrawRoundRect(0, 0, 10, sum, 2, 2);
+            PaintBundle paint = new PaintBundle();
+            paint.setColor(0xFF0000FF);
+            buffer.addPaint(paint);
+            buffer.addDrawTextRun(buffer.addText("text"), 0, 4, 0, 4, constant, 1, false);
+            buffer.addMatrixSkew(0.5f, 0);
+            buffer.addMatrixRestore();
+        }
+        return buffer;
+    }
+
+    private static ArrayList<String> draw(CoreDocument document, RemoteContext context,
+                                          RecordingPaintContext paint, int theme,
+                                          boolean displayList) {
+        DisplayList list = document.mDisplayList;
+        if (!displayList) {
+            document.mDisplayList = null;
+        }
+        paint.mCalls.clear();
+        document.draw(context, theme);
+        document.mDisplayList = list;
+        return new ArrayList<>(paint.mCalls);
+    }
+
+    private void assertSamePaint(boolean lazy) {
+        CoreDocument document = new CoreDocument();
+        document.initFromBuffer(document(), lazy);
+        RemoteContext context = new ExpressionGraphTest.TestContext(new RemoteComposeState());
+        RecordingPaintContext paint = new RecordingPaintContext(context);
+        context.setPaintContext(paint);
+        document.initializeContext(context);
+        assertTrue(document.mDisplayList != null);
+
+        for (float value : new float[]{4, -9, 0.25f}) {
+            context.loadFloat(VARIABLE_ID, value);
+            document.updateFrame(context, Theme.UNSPECIFIED);
+            for (int theme : new int[]{Theme.UNSPECIFIED, Theme.DARK, Theme.LIGHT}) {
+                ArrayList<String> expected = draw(document, context, paint, theme, false);
+                ArrayList<String> actual = draw(document, context, paint, theme, true);
+                assertEquals("theme " + theme + " value " + value, expected, actual);
+            }
+            ArrayList<String> calls = draw(document, context, paint, Theme.UNSPECIFIED, true);
+            // the variable and the expression reading it were resolved
+            assertTrue(calls.toString(), calls.contains("matrixTranslate " + value + " 2.0"));
+            assertTrue(calls.toString(), calls.contains(
+                    "drawCircle " + (value + 150) + " " + (value + 150) + " 5.0"));
+        }
+    }
+
+    @Test
+    public void displayListPaintsLikeTheOperations() {
+        assertSamePaint(false);
+    }
+
+    @Test
+    public void lazyDisplayListPaintsLikeTheOperations() {
+        assertSamePaint(true);
+    }
+
+    @Test
+    public void primitivesHaveTheirArity() {
+        assertEquals(2, DisplayList.arity(Operations.MATRIX_TRANSLATE));
+        assertEquals(3, DisplayList.arity(Operations.DRAW_CIRCLE));
+        assertEquals(3, DisplayList.arity(Operations.MATRIX_ROTATE));
+        assertEquals(4, DisplayList.arity(Operations.DRAW_RECT));
+        assertEquals(4, DisplayList.arity(Operations.DRAW_LINE));
+        assertEquals(4, DisplayList.arity(Operations.DRAW_OVAL));
+        assertEquals(4, DisplayList.arity(Operations.CLIP_RECT));
+        assertEquals(4, DisplayList.arity(Operations.MATRIX_SCALE));
+        assertEquals(6, DisplayList.arity(Operations.DRAW_ARC));
+        assertEquals(6, DisplayList.arity(Operations.DRAW_ROUND_RECT));
+        assertEquals(-1, DisplayList.arity(Operations.DRAW_TEXT_RUN));
+        assertEquals(-1, DisplayList.arity(Operations.MATRIX_SKEW));
+
+        DisplayList list = new DisplayList();
+        assertThrows(RuntimeException.class, () -> list.add(Operations.DRAW_RECT, 1, 2));
+        assertThrows(RuntimeException.class,
+                () -> list.add(Operations.MATRIX_SKEW, 1, 2, 3, 4));
+        list.add(Operations.DRAW_CIRCLE, 1, 2, 3);
+        assertEquals(1, list.size());
+    }
+}
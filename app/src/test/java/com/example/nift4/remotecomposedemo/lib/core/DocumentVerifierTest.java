@@ -0,0 +1,186 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.nift4.remotecomposedemo.lib.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import com.example.nift4.remotecomposedemo.lib.core.operations.FloatExpression;
+import com.example.nift4.remotecomposedemo.lib.core.operations.Utils;
+import com.example.nift4.remotecomposedemo.lib.core.operations.utilities.AnimatedFloatExpression;
+import com.example.nift4.remotecomposedemo.lib.core.operations.utilities.easing.Easing;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+
+public class DocumentVerifierTest {
+
+    private static DocumentVerifier.Report verifyExpression(float... expression) {
+        WireBuffer buffer = new WireBuffer(64);
+        FloatExpression.COMPANION.apply(buffer, 100, expression, null);
+        return new DocumentVerifier().verify(buffer);
+    }
+
+    @Test
+    public void validExpression() {
+        assertTrue(verifyExpression(1, 2, AnimatedFloatExpression.ADD).isValid());
+        assertTrue(verifyExpression(RemoteContext.FLOAT_CONTINUOUS_SEC).isValid());
+    }
+
+    @Test
+    public void emptyExpressionIsRejected() {
+        // CompiledFloatExpression cannot compile it, the document must not be decoded
+        assertFalse(verifyExpression().isValid());
+    }
+
+    @Test
+    public void stackUnderflowIsRejected() {
+        assertFalse(verifyExpression(1, AnimatedFloatExpression.ADD).isValid());
+        assertFalse(verifyExpression(1, 2, AnimatedFloatExpression.ADD,
+                AnimatedFloatExpression.ADD).isValid());
+    }
+
+    @Test
+    public void operatorIdsAreRejected() {
+        int operator = AnimatedFloatExpression.OFFSET + 1; // read as ADD by expressions
+        WireBuffer buffer = new WireBuffer(64);
+        FloatExpression.COMPANION.apply(buffer, operator, new float[]{1}, null);
+        assertFalse(new DocumentVerifier().verify(buffer).isValid());
+
+        RemoteComposeBuffer document = new RemoteComposeBuffer(new RemoteComposeState());
+        document.addDrawLine(Utils.asNan(operator), 2, 3, 4);
+        assertFalse(new DocumentVerifier().verify(document.getBuffer()).isValid());
+    }
+
+    @Test
+    public void operatorIdsAreNotIssued() {
+        RemoteComposeState state = new RemoteComposeState();
+        for (int i = 0; i < 1000; i++) {
+            int id = state.nextId();
+            assertFalse(String.valueOf(id), id > AnimatedFloatExpression.OFFSET
+                    && id <= AnimatedFloatExpression.OFFSET + AnimatedFloatExpression.LAST_OP);
+        }
+    }
+
+    private static DocumentVerifier.Report verifyAnimation(float... animation) {
+        WireBuffer buffer = new WireBuffer(64);
+        FloatExpression.COMPANION.apply(buffer, 100, new float[]{1}, animation);
+        return new DocumentVerifier().verify(buffer);
+    }
+
+    private static float numType(int params, int type, boolean init, boolean wrap) {
+        return Float.intBitsToFloat(params << 16 | (wrap ? 0x100 : 0) | (init ? 0x200 : 0)
+                | type);
+    }
+
+    @Test
+    public void validAnimations() {
+        assertTrue(verifyAnimation(0.3f).isValid());
+        assertTrue(verifyAnimation(RemoteComposeBuffer.packAnimation(0.3f,
+                Easing.CUBIC_STANDARD, null, Float.NaN, Float.NaN)).isValid());
+        assertTrue(verifyAnimation(RemoteComposeBuffer.packAnimation(0.3f,
+                Easing.CUBIC_CUSTOM, new float[]{0.1f, 0.2f, 0.3f, 0.4f}, 5, 360)).isValid());
+        assertTrue(verifyAnimation(RemoteComposeBuffer.packAnimation(0.3f,
+                Easing.SPLINE_CUSTOM, new float[]{0, 0.5f, 1}, Float.NaN, 1)).isValid());
+    }
+
+    @Test
+    public void animationsNeedTheirParameters() {
+        // each of these used to throw ArrayIndexOutOfBoundsException once decoded
+        assertFalse(verifyAnimation(1, numType(0, Easing.CUBIC_CUSTOM, false, false))
+                .isValid());
+        assertFalse(verifyAnimation(1, numType(3, Easing.CUBIC_CUSTOM, false, false),
+                0, 0, 1).isValid());
+        assertFalse(verifyAnimation(1, numType(1, Easing.SPLINE_CUSTOM, false, false), 0)
+                .isValid());
+        assertFalse(verifyAnimation(1, numType(0, Easing.CUBIC_STANDARD, true, false))
+                .isValid());
+        assertFalse(verifyAnimation(1, numType(0, Easing.CUBIC_STANDARD, true, true), 5)
+                .isValid());
+        assertFalse(verifyAnimation(1, numType(2, Easing.CUBIC_STANDARD, false, false), 5)
+                .isValid());
+        assertFalse(verifyAnimation(1, numType(0, 0, false, false)).isValid());
+        assertFalse(verifyAnimation(1, numType(0, 99, false, false)).isValid());
+        assertTrue(verifyAnimation(1, numType(0, Easing.CUBIC_STANDARD, true, true), 5, 10)
+                .isValid());
+    }
+
+    @Test
+    public void invalidAnimationsAreRejectedWhenLoaded() {
+        RemoteComposeBuffer buffer = document();
+        FloatExpression.COMPANION.apply(buffer.getBuffer(), 5000, new float[]{1},
+                new float[]{1, numType(0, Easing.CUBIC_CUSTOM, false, false)});
+        RuntimeException e = assertThrows(RuntimeException.class,
+                () -> new CoreDocument().initFromBuffer(buffer, false));
+        assertFalse(e.toString(), e instanceof IndexOutOfBoundsException);
+    }
+
+    private static RemoteComposeBuffer document() {
+        RemoteComposeBuffer buffer = new RemoteComposeBuffer(new RemoteComposeState());
+        buffer.header(100, 200, "test", 0);
+        buffer.addDrawRect(1, 2, 3, 4);
+        buffer.addText("hello");
+        float x = buffer.addAnimatedFloat(RemoteContext.FLOAT_CONTINUOUS_SEC, 2,
+                AnimatedFloatExpression.MUL);
+        buffer.addDrawLine(x, 2, 3, 4);
+        return buffer;
+    }
+
+    @Test
+    public void verifiedOperationsAreTheDecodedOperations() {
+        RemoteComposeBuffer buffer = document();
+        ArrayList<Operation> expected = new ArrayList<>();
+        buffer.inflateFromBuffer(expected);
+        ArrayList<Operation> operations = new ArrayList<>();
+        DocumentVerifier.Report report = new DocumentVerifier().verify(buffer.getBuffer(),
+                operations);
+        assertTrue(report.isValid());
+        assertEquals(expected.size(), operations.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).toString(), operations.get(i).toString());
+        }
+        assertEquals(0, buffer.getBuffer().getIndex());
+    }
+
+    @Test
+    public void invalidDocumentsAreRejectedWhenLoaded() {
+        for (boolean lazy : new boolean[]{false, true}) {
+            RemoteComposeBuffer buffer = document();
+            FloatExpression.COMPANION.apply(buffer.getBuffer(), 100,
+                    new float[]{1, AnimatedFloatExpression.ADD}, null);
+            assertThrows(RuntimeException.class,
+                    () -> new CoreDocument().initFromBuffer(buffer, lazy));
+
+            RemoteComposeBuffer truncated = document();
+            truncated.getBuffer().start(Operations.DRAW_RECT);
+            truncated.getBuffer().writeFloat(1);
+            assertThrows(RuntimeException.class,
+                    () -> new CoreDocument().initFromBuffer(truncated, lazy));
+        }
+    }
+
+    @Test
+    public void validDocumentsAreLoaded() {
+        for (boolean lazy : new boolean[]{false, true}) {
+            CoreDocument document = new CoreDocument();
+            document.initFromBuffer(document(), lazy);
+            assertTrue(document.toString().contains("DrawLine"));
+        }
+    }
+}
@@ -0,0 +1,271 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.nift4.remotecomposedemo.lib.core;
+
+import static com.example.nift4.remotecomposedemo.lib.core.operations.utilities.AnimatedFloatExpression.ADD;
+import static com.example.nift4.remotecomposedemo.lib.core.operations.utilities.AnimatedFloatExpression.MUL;
+import static com.example.nift4.remotecomposedemo.lib.core.operations.utilities.AnimatedFloatExpression.asNan;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.example.nift4.remotecomposedemo.lib.core.operations.FloatExpression;
+import com.example.nift4.remotecomposedemo.lib.core.operations.ShaderData;
+import com.example.nift4.remotecomposedemo.lib.core.operations.utilities.easing.Easing;
+import com.example.nift4.remotecomposedemo.lib.core.operations.utilities.easing.FloatAnimation;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+public class ExpressionGraphTest {
+    private static final int X = 5000;
+    private static final int Y = 5001;
+
+    /**
+     * Context keeping the variables in a RemoteComposeState, as the player does
+     */
+    static class TestContext extends RemoteContext {
+        TestContext(RemoteComposeState state) {
+            mRemoteComposeState = state;
+        }
+
+        @Override
+        public void loadPathData(int instanceId, float[] floatPath) {
+            mRemoteComposeState.cache(instanceId, floatPath);
+        }
+
+        @Override
+        public void loadVariableName(String varName, int varId, int varType) {
+        }
+
+        @Override
+        public void loadColor(int id, int color) {
+            mRemoteComposeState.updateColor(id, color);
+        }
+
+        @Override
+        public void loadBitmap(int imageId, int width, int height, byte[] bitmap) {
+        }
+
+        @Override
+        public void loadText(int id, String text) {
+            mRemoteComposeState.update(id, text);
+        }
+
+        @Override
+        public String getText(int id) {
+            return (String) mRemoteComposeState.getFromId(id);
+        }
+
+        @Override
+        public void loadFloat(int id, float value) {
+            mRemoteComposeState.updateFloat(id, value);
+        }
+
+        @Override
+        public void loadAnimatedFloat(int id, FloatExpression animatedFloat) {
+        }
+
+        @Override
+        public void loadShader(int id, ShaderData value) {
+        }
+
+        @Override
+        public float getFloat(int id) {
+            return mRemoteComposeState.getFloat(id);
+        }
+
+        @Override
+        public int getColor(int id) {
+            return mRemoteComposeState.getColor(id);
+        }
+
+        @Override
+        public void listensTo(int id, VariableSupport variableSupport) {
+            mRemoteComposeState.listenToVar(id, variableSupport);
+        }
+
+        @Override
+        public void updateOps() {
+            mRemoteComposeState.getOpsToUpdate(this);
+        }
+
+        @Override
+        public ShaderData getShader(int id) {
+            return null;
+        }
+
+        @Override
+        public void addClickArea(int id, int contentDescription, float left, float top,
+                                 float right, float bottom, int metadataId) {
+        }
+    }
+
+    /**
+     * Float expression counting its evaluations
+     */
+    static class CountingExpression extends FloatExpression {
+        int mCount;
+
+        CountingExpression(int id, float... value) {
+            super(id, value, null);
+        }
+
+        @Override
+        public void apply(RemoteContext context) {
+            mCount++;
+            super.apply(context);
+        }
+    }
+
+    private RemoteComposeState mState;
+    private TestContext mContext;
+
+    @Before
+    public void setUp() {
+        mState = new RemoteComposeState();
+        mContext = new TestContext(mState);
+    }
+
+    /**
+     * A frame: evaluate the graph then update the listeners, which clears the changes
+     */
+    private void frame(ExpressionGraph graph) {
+        graph.evaluate(mContext);
+        mContext.updateOps();
+    }
+
+    @Test
+    public void onlyExpressionsReadingChangedVariablesAreEvaluated() {
+        CountingExpression a = new CountingExpression(6000, asNan(X), 2, MUL);
+        CountingExpression b = new CountingExpression(6001, asNan(6000), 1, ADD);
+        CountingExpression c = new CountingExpression(6002, asNan(Y), 1, ADD);
+        // document order differs from the dependency order
+        ExpressionGraph graph = ExpressionGraph.build(new ArrayList<>(Arrays.asList(b, c, a)));
+        mContext.loadFloat(X, 3);
+        mContext.loadFloat(Y, 1);
+        frame(graph);
+        assertEquals(7f, mContext.getFloat(6001), 0f);
+        assertEquals(1, a.mCount);
+        assertEquals(1, b.mCount);
+        assertEquals(1, c.mCount);
+
+        frame(graph); // nothing changed
+        assertEquals(1, a.mCount);
+        assertEquals(1, b.mCount);
+        assertEquals(1, c.mCount);
+
+        mContext.loadFloat(X, 4);
+        frame(graph);
+        assertEquals(9f, mContext.getFloat(6001), 0f);
+        assertEquals(2, a.mCount);
+        assertEquals(2, b.mCount);
+        assertEquals(1, c.mCount);
+
+        assertTrue(graph.reads(X));
+        assertTrue(graph.reads(6000));
+        assertFalse(graph.reads(6001));
+    }
+
+    @Test
+    public void animationsAreEvaluatedUntilTheyEnd() {
+        float[] animation = FloatAnimation.packToFloatArray(0.1f, Easing.CUBIC_LINEAR, null,
+                Float.NaN, Float.NaN);
+        FloatExpression a = new FloatExpression(6000, new float[]{asNan(X), 2, MUL}, animation);
+        ExpressionGraph graph = ExpressionGraph.build(new ArrayList<>(Arrays.asList(a)));
+        mContext.setFrameClock(new FrameClock.FixedStep(16_000_000L));
+        mContext.loadFloat(X, 1);
+        for (int i = 0; i < 20; i++) {
+            mContext.updateAnimationTime();
+            frame(graph);
+        }
+        mContext.loadFloat(X, 5);
+        int frames = 0;
+        do {
+            mContext.updateAnimationTime();
+            frame(graph);
+            frames++;
+        } while (graph.isAnimating(mContext.getAnimationTime()));
+        assertEquals(8, frames); // 7 during the 100ms at 16ms per frame, then the last one
+        assertEquals(10f, mContext.getFloat(6000), 0f);
+    }
+
+    @Test
+    public void expressionsInACycleAreAlwaysEvaluated() {
+        CountingExpression a = new CountingExpression(6000, asNan(6001), 1, ADD);
+        CountingExpression b = new CountingExpression(6001, asNan(6000), 1, ADD);
+        ExpressionGraph graph = ExpressionGraph.build(new ArrayList<>(Arrays.asList(a, b)));
+        assertEquals(2, graph.getCycleCount());
+        assertArrayEquals(new int[]{6000, 6001}, graph.getCycleIds());
+        frame(graph);
+        frame(graph);
+        assertEquals(2, a.mCount);
+        assertEquals(2, b.mCount);
+    }
+
+    @Test
+    public void expressionsOfTheSameShapeAreBatched() {
+        int count = ExpressionGraph.MIN_BATCH_SIZE + 2;
+        ArrayList<Operation> expressions = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            expressions.add(new FloatExpression(7000 + i,
+                    new float[]{asNan(i % 2 == 0 ? X : Y), i + 3, MUL}, null));
+        }
+        // reads a batched value, so it is evaluated after the batch
+        CountingExpression sum = new CountingExpression(6000, asNan(7001), 1, ADD);
+        expressions.add(sum);
+        ExpressionGraph graph = ExpressionGraph.build(expressions);
+        assertEquals(1, graph.getBatchCount());
+
+        mContext.loadFloat(X, 2);
+        mContext.loadFloat(Y, 5);
+        frame(graph);
+        for (int i = 0; i < count; i++) {
+            assertEquals((i % 2 == 0 ? 2 : 5) * (i + 3f), mContext.getFloat(7000 + i), 0f);
+        }
+        assertEquals(21f, mContext.getFloat(6000), 0f);
+        assertEquals(1, sum.mCount);
+
+        frame(graph); // nothing changed
+        assertEquals(1, sum.mCount);
+
+        mContext.loadFloat(Y, -1);
+        frame(graph);
+        for (int i = 0; i < count; i++) {
+            assertEquals((i % 2 == 0 ? 2 : -1) * (i + 3f), mContext.getFloat(7000 + i), 0f);
+        }
+        assertEquals(-3f, mContext.getFloat(6000), 0f);
+        assertEquals(2, sum.mCount);
+    }
+
+    @Test
+    public void expressionsAreNotListeners() {
+        RemoteComposeBuffer buffer = new RemoteComposeBuffer(new RemoteComposeState());
+        buffer.header(100, 100, "test", 0);
+        buffer.addAnimatedFloat(RemoteContext.FLOAT_CONTINUOUS_SEC, 2, MUL);
+        CoreDocument document = new CoreDocument();
+        document.initFromBuffer(buffer);
+        document.initializeContext(mContext);
+        assertFalse(mContext.mRemoteComposeState.hasListeners(RemoteContext.ID_CONTINUOUS_SEC));
+        document.updateFrame(mContext, 0);
+        // the continuous time is read by an expression
+        assertEquals(1, document.needsRepaint());
+    }
+}
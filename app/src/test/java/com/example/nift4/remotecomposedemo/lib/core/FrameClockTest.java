@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.nift4.remotecomposedemo.lib.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class FrameClockTest {
+
+    @Test
+    public void fixedStepStartsAtZero() {
+        FrameClock clock = new FrameClock.FixedStep(16);
+        assertEquals(0, clock.nextFrameNanos());
+        assertEquals(16, clock.nextFrameNanos());
+        assertEquals(32, clock.nextFrameNanos());
+    }
+
+    @Test
+    public void replayRepeatsTheLastFrame() {
+        FrameClock clock = new FrameClock.Replay(new long[]{5, 10, 20});
+        assertEquals(5, clock.nextFrameNanos());
+        assertEquals(10, clock.nextFrameNanos());
+        assertEquals(20, clock.nextFrameNanos());
+        assertEquals(20, clock.nextFrameNanos());
+        assertThrows(IllegalArgumentException.class,
+                () -> new FrameClock.Replay(new long[]{10, 5}));
+        assertThrows(IllegalArgumentException.class,
+                () -> new FrameClock.Replay(new long[0]));
+    }
+
+    @Test
+    public void realTimeDoesNotJumpOverAPause() throws InterruptedException {
+        FrameClock.RealTime clock = new FrameClock.RealTime();
+        clock.pause();
+        assertTrue(clock.isPaused());
+        long paused = clock.nextFrameNanos();
+        Thread.sleep(20);
+        assertEquals(paused, clock.nextFrameNanos());
+        clock.resume();
+        assertFalse(clock.isPaused());
+        assertTrue(clock.nextFrameNanos() - paused < 20_000_000L);
+    }
+
+    @Test
+    public void timeAdvancesAfterDaysOfUptime() {
+        long uptime = 4L * 24 * 3600 * 1_000_000_000L; // floats are 31ms apart there
+        FrameClock.FixedStep step = new FrameClock.FixedStep(16_666_667L);
+        FrameClock clock = new FrameClock() {
+            @Override
+            public long nextFrameNanos() {
+                return uptime + step.nextFrameNanos();
+            }
+        };
+        RemoteContext context = new ExpressionGraphTest.TestContext(new RemoteComposeState());
+        context.setFrameClock(clock);
+        for (int frame = 0; frame < 10; frame++) {
+            context.updateAnimationTime();
+            assertTrue("frame " + frame, context.isAnimationTimeAdvancing());
+        }
+
+        context.setFrameClock(new FrameClock.Replay(new long[]{uptime}));
+        context.updateAnimationTime();
+        context.updateAnimationTime(); // the replay ended
+        assertFalse(context.isAnimationTimeAdvancing());
+    }
+}
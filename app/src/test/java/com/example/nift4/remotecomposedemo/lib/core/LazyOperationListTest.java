@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.nift4.remotecomposedemo.lib.core;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import com.example.nift4.remotecomposedemo.lib.core.operations.Header;
+import com.example.nift4.remotecomposedemo.lib.core.operations.utilities.easing.AnimationSpecCache;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+
+/**
+ * A lazily indexed document must hold the operations inflateFromBuffer() creates
+ */
+public class LazyOperationListTest {
+
+    private static ArrayList<Operation> inflate(byte[] bytes) {
+        ArrayList<Operation> operations = new ArrayList<>();
+        RemoteComposeBuffer.fromByteBuffer(ByteBuffer.wrap(bytes), new RemoteComposeState())
+                .inflateFromBuffer(operations);
+        return operations;
+    }
+
+    private static LazyOperationList index(byte[] bytes, boolean verify) {
+        RemoteComposeBuffer document = RemoteComposeBuffer.fromByteBuffer(
+                ByteBuffer.wrap(bytes), new RemoteComposeState());
+        return verify
+                ? document.indexFromBuffer(new DocumentVerifier(), new AnimationSpecCache())
+                : document.indexFromBuffer();
+    }
+
+    /** One operation written on its own, in the given profile */
+    private static byte[] write(Operation operation, boolean compact) {
+        WireBuffer buffer = new WireBuffer(64);
+        buffer.setCompact(compact);
+        operation.write(buffer);
+        return buffer.toByteArray();
+    }
+
+    private static void assertMatchesEagerInflate(byte[] bytes, boolean compact, boolean verify) {
+        ArrayList<Operation> eager = inflate(bytes);
+        LazyOperationList lazy = index(bytes, verify);
+        assertEquals(eager.size(), lazy.size());
+        // backwards, each get() must position the shared buffer itself
+        for (int i = lazy.size() - 1; i >= 0; i--) {
+            Operation operation = lazy.get(i);
+            assertEquals("operation " + i, eager.get(i).getClass(), operation.getClass());
+            assertArrayEquals("operation " + i,
+                    write(eager.get(i), compact), write(operation, compact));
+        }
+        assertArrayEquals(CompactEncodingTest.rewrite(eager, false),
+                CompactEncodingTest.rewrite(new ArrayList<>(lazy), false));
+        assertThrows(IndexOutOfBoundsException.class, () -> lazy.get(lazy.size()));
+    }
+
+    @Test
+    public void standardDocumentsMatchTheEagerInflate() {
+        byte[] bytes = CompactEncodingTest.document(0);
+        assertMatchesEagerInflate(bytes, false, false);
+        assertMatchesEagerInflate(bytes, false, true);
+    }
+
+    @Test
+    public void compactDocumentsMatchTheEagerInflate() {
+        byte[] bytes = CompactEncodingTest.document(Header.CAPABILITY_COMPACT_ENCODING);
+        assertMatchesEagerInflate(bytes, true, false);
+        assertMatchesEagerInflate(bytes, true, true);
+    }
+
+    @Test
+    public void skippedOperationsAreReadAgainByGet() {
+        byte[] bytes = CompactEncodingTest.document(0);
+        LazyOperationList lazy = index(bytes, false);
+        int skipped = 0;
+        for (int i = 0; i < lazy.size(); i++) {
+            Operation operation = lazy.peek(i);
+            if (operation == null) {
+                // created for each caller, not retained
+                Operation first = lazy.get(i);
+                Operation second = lazy.get(i);
+                assertNotSame(first, second);
+                assertArrayEquals(write(first, false), write(second, false));
+                assertNull(lazy.peek(i));
+                skipped++;
+            } else {
+                assertSame(operation, lazy.get(i));
+            }
+        }
+        assertTrue(skipped > 0);
+        assertTrue(skipped < lazy.size());
+    }
+
+    @Test
+    public void offsetsFollowTheProfile() {
+        byte[] standard = CompactEncodingTest.document(0);
+        byte[] compact = CompactEncodingTest.document(Header.CAPABILITY_COMPACT_ENCODING);
+        LazyOperationList fromStandard = index(standard, false);
+        LazyOperationList fromCompact = index(compact, false);
+        assertEquals(fromStandard.size(), fromCompact.size());
+        for (int i = 0; i < fromStandard.size(); i++) {
+            assertEquals(fromStandard.getType(i), fromCompact.getType(i));
+            assertEquals(standard[fromStandard.getOffset(i)] & 0xFF, fromStandard.getType(i));
+            assertEquals(compact[fromCompact.getOffset(i)] & 0xFF, fromCompact.getType(i));
+            if (i > 0) {
+                assertTrue(fromStandard.getOffset(i) > fromStandard.getOffset(i - 1));
+                assertTrue(fromCompact.getOffset(i) > fromCompact.getOffset(i - 1));
+                // the header is the same size in both, compact operations are smaller
+                assertTrue(fromCompact.getOffset(i) <= fromStandard.getOffset(i));
+            }
+        }
+        assertEquals(0, fromCompact.getOffset(0));
+        assertTrue(fromCompact.getOffset(fromCompact.size() - 1)
+                < fromStandard.getOffset(fromStandard.size() - 1));
+    }
+}
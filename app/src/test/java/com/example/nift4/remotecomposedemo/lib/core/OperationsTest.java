@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.nift4.remotecomposedemo.lib.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
+
+import com.example.nift4.remotecomposedemo.lib.core.operations.DrawText;
+import com.example.nift4.remotecomposedemo.lib.core.operations.DrawTextRun;
+
+import org.junit.Test;
+
+import java.util.List;
+
+public class OperationsTest {
+
+    @Test
+    public void companionsAreRegisteredUnderTheirId() {
+        for (int id = 0; id < 256; id++) {
+            CompanionOperation companion = Operations.get(id);
+            if (companion != null) {
+                assertEquals(companion.name(), id, companion.id());
+            }
+        }
+        assertSame(DrawText.COMPANION, Operations.get(Operations.DRAW_TEXT_RUN));
+    }
+
+    @Test
+    public void idsCannotBeReused() {
+        // same id as DrawText.COMPANION
+        assertThrows(RuntimeException.class, () -> Operations.register(DrawTextRun.COMPANION));
+        assertSame(DrawText.COMPANION, Operations.get(Operations.DRAW_TEXT_RUN));
+        Operations.register(DrawText.COMPANION); // registering again is allowed
+    }
+
+    @Test
+    public void operationsNeedTheirDocumentVersion() {
+        int id = 250;
+        assertNull(Operations.get(id));
+        CompanionOperation companion = new CompanionOperation() {
+            @Override
+            public void read(WireBuffer buffer, List<Operation> operations) {
+            }
+
+            @Override
+            public String name() {
+                return "Future";
+            }
+
+            @Override
+            public int id() {
+                return id;
+            }
+        };
+        Operations.register(companion, 2, 1);
+        try {
+            assertNull(Operations.get(id, Operations.version(2, 0)));
+            assertSame(companion, Operations.get(id, Operations.version(2, 1)));
+            assertSame(companion, Operations.get(id, Operations.version(3, 0)));
+        } finally {
+            Operations.unregister(companion);
+        }
+        assertNull(Operations.get(id));
+        assertNull(Operations.get(id, Operations.version(3, 0)));
+    }
+}
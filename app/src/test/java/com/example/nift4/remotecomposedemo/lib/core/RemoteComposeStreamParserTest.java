@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.nift4.remotecomposedemo.lib.core;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+
+import com.example.nift4.remotecomposedemo.lib.core.operations.Header;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Documents fed in pieces must decode to the operations inflateFromBuffer() reads
+ */
+public class RemoteComposeStreamParserTest {
+
+    private static ArrayList<Operation> inflate(byte[] bytes) {
+        RemoteComposeBuffer document = RemoteComposeBuffer.fromByteBuffer(
+                ByteBuffer.wrap(bytes), new RemoteComposeState());
+        ArrayList<Operation> operations = new ArrayList<>();
+        document.inflateFromBuffer(operations);
+        return operations;
+    }
+
+    private static byte[] compress(byte[] bytes) {
+        return CompressedContainer.compress(WireBuffer.wrap(ByteBuffer.wrap(bytes)));
+    }
+
+    /**
+     * Feed the bytes in chunks of 1 to maxChunk bytes, maxChunk 1 feeds them one at a time
+     */
+    private static ArrayList<Operation> stream(byte[] bytes, int maxChunk, long seed) {
+        ArrayList<Operation> operations = new ArrayList<>();
+        RemoteComposeStreamParser parser = new RemoteComposeStreamParser(operations);
+        Random random = new Random(seed);
+        int decoded = 0;
+        for (int offset = 0; offset < bytes.length; ) {
+            int length = Math.min(1 + random.nextInt(maxChunk), bytes.length - offset);
+            decoded += parser.feed(bytes, offset, length);
+            assertEquals(decoded, operations.size());
+            offset += length;
+        }
+        decoded += parser.finish();
+        assertEquals(decoded, operations.size());
+        return operations;
+    }
+
+    private static void assertSameOperations(ArrayList<Operation> expected,
+                                             ArrayList<Operation> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getClass(), actual.get(i).getClass());
+        }
+        assertArrayEquals(CompactEncodingTest.rewrite(expected, false),
+                CompactEncodingTest.rewrite(actual, false));
+    }
+
+    private static void assertStreams(byte[] bytes, ArrayList<Operation> expected) {
+        assertSameOperations(expected, stream(bytes, 1, 0));
+        for (long seed = 0; seed < 20; seed++) {
+            assertSameOperations(expected, stream(bytes, 64, seed));
+        }
+        assertSameOperations(expected, stream(bytes, bytes.length, 0));
+    }
+
+    @Test
+    public void standardDocumentsStream() {
+        byte[] bytes = CompactEncodingTest.document(0);
+        assertStreams(bytes, inflate(bytes));
+    }
+
+    @Test
+    public void compactDocumentsStream() {
+        byte[] bytes = CompactEncodingTest.document(Header.CAPABILITY_COMPACT_ENCODING);
+        assertStreams(bytes, inflate(bytes));
+    }
+
+    @Test
+    public void compressedDocumentsStream() {
+        byte[] bytes = CompactEncodingTest.document(Header.CAPABILITY_COMPACT_ENCODING);
+        byte[] compressed = compress(bytes);
+        assertStreams(compressed, inflate(compressed));
+    }
+
+    @Test
+    public void truncatedDocumentsFailInFinish() {
+        byte[] bytes = CompactEncodingTest.document(Header.CAPABILITY_COMPACT_ENCODING);
+        int operationCount = inflate(bytes).size();
+        for (int cut = 1; cut < 16; cut++) {
+            byte[] truncated = Arrays.copyOf(bytes, bytes.length - cut);
+            ArrayList<Operation> operations = new ArrayList<>();
+            RemoteComposeStreamParser parser = new RemoteComposeStreamParser(operations);
+            parser.feed(truncated, 0, truncated.length);
+            assertThrows(RuntimeException.class, parser::finish);
+            assertEquals(operationCount - 1, operations.size());
+        }
+    }
+
+    @Test
+    public void truncatedContainersFailInFinish() {
+        byte[] bytes = CompactEncodingTest.document(0);
+        byte[] compressed = compress(bytes);
+        byte[] truncated = Arrays.copyOf(compressed, compressed.length - 6);
+        RemoteComposeStreamParser parser = new RemoteComposeStreamParser(new ArrayList<>());
+        parser.feed(truncated, 0, truncated.length);
+        assertThrows(RuntimeException.class, parser::finish);
+    }
+}
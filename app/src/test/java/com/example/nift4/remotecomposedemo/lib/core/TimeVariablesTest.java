@@ -0,0 +1,197 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.nift4.remotecomposedemo.lib.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.BitSet;
+
+/**
+ * The cached minute boundaries of TimeVariables checked against LocalDateTime, with a
+ * clock stepped across second, minute, hour and day boundaries
+ */
+public class TimeVariablesTest {
+    private static final ZoneId PARIS = ZoneId.of("Europe/Paris");
+
+    /** A clock set by the test */
+    private static class SteppedClock extends Clock {
+        private final ZoneId mZone;
+        long mMillis;
+
+        SteppedClock(ZoneId zone, String instant) {
+            mZone = zone;
+            mMillis = Instant.parse(instant).toEpochMilli();
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return mZone;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            SteppedClock clock = new SteppedClock(zone, "1970-01-01T00:00:00Z");
+            clock.mMillis = mMillis;
+            return clock;
+        }
+
+        @Override
+        public long millis() {
+            return mMillis;
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochMilli(mMillis);
+        }
+    }
+
+    /** Records the variables loaded since the last clear() */
+    private static class RecordingContext extends ExpressionGraphTest.TestContext {
+        final BitSet mLoaded = new BitSet();
+
+        RecordingContext() {
+            super(new RemoteComposeState());
+        }
+
+        @Override
+        public void loadFloat(int id, float value) {
+            mLoaded.set(id);
+            super.loadFloat(id, value);
+        }
+    }
+
+    /**
+     * Update the time, check the variables and delays against LocalDateTime
+     *
+     * @return whether ID_TIME_IN_SEC was loaded
+     */
+    private static boolean update(TimeVariables time, SteppedClock clock,
+                                  RecordingContext context) {
+        context.mLoaded.clear();
+        time.updateTime(context);
+        LocalDateTime dateTime = LocalDateTime.ofInstant(clock.instant(), clock.getZone());
+        String at = dateTime.toString();
+        int seconds = dateTime.getMinute() * 60 + dateTime.getSecond();
+        int millis = dateTime.getNano() / 1000000;
+        assertEquals(at, seconds, context.getFloat(RemoteContext.ID_TIME_IN_SEC), 0f);
+        assertEquals(at, seconds + millis * 1e-3f,
+                context.getFloat(RemoteContext.ID_CONTINUOUS_SEC), 1e-3f);
+        assertEquals(at, dateTime.getHour() * 60 + dateTime.getMinute(),
+                context.getFloat(RemoteContext.ID_TIME_IN_MIN), 0f);
+        assertEquals(at, dateTime.getHour(), context.getFloat(RemoteContext.ID_TIME_IN_HR), 0f);
+        assertEquals(at, dateTime.getDayOfMonth(),
+                context.getFloat(RemoteContext.ID_CALENDAR_MONTH), 0f);
+
+        int toNextSecond = 1000 - millis;
+        int toNextMinute = (59 - dateTime.getSecond()) * 1000 + toNextSecond;
+        int toNextHour = (59 - dateTime.getMinute()) * 60 * 1000 + toNextMinute;
+        assertEquals(at, toNextSecond, time.getMillisToNextSecond());
+        assertEquals(at, toNextMinute, time.getMillisToNextMinute());
+        assertEquals(at, toNextHour, time.getMillisToNextHour());
+        assertEquals(at, (23 - dateTime.getHour()) * 3600 * 1000 + toNextHour,
+                time.getMillisToNextDay());
+        assertTrue(at, context.mLoaded.get(RemoteContext.ID_CONTINUOUS_SEC));
+        return context.mLoaded.get(RemoteContext.ID_TIME_IN_SEC);
+    }
+
+    @Test
+    public void variablesFollowTheClockAcrossBoundaries() {
+        // 01:59:58.500 in Paris, then 03:00 once the clocks move forward
+        SteppedClock clock = new SteppedClock(PARIS, "2024-03-31T00:59:58.500Z");
+        TimeVariables time = new TimeVariables(clock);
+        RecordingContext context = new RecordingContext();
+        assertTrue(update(time, clock, context));
+        for (int step = 0; step < 24; step++) {
+            long before = clock.mMillis / 1000;
+            clock.mMillis += 125;
+            // the quantized seconds are loaded only when they change
+            assertEquals(clock.mMillis / 1000 != before, update(time, clock, context));
+        }
+        assertEquals(3f, context.getFloat(RemoteContext.ID_TIME_IN_HR), 0f);
+
+        // 23:59:59 summer time, to the next day
+        clock.mMillis = Instant.parse("2024-03-31T21:59:59.900Z").toEpochMilli();
+        update(time, clock, context);
+        assertEquals(31f, context.getFloat(RemoteContext.ID_CALENDAR_MONTH), 0f);
+        clock.mMillis += 200;
+        update(time, clock, context);
+        assertEquals(1f, context.getFloat(RemoteContext.ID_CALENDAR_MONTH), 0f);
+        assertEquals(0f, context.getFloat(RemoteContext.ID_TIME_IN_MIN), 0f);
+    }
+
+    @Test
+    public void calendarFieldsAreOnlyLoadedOncePerMinute() {
+        SteppedClock clock = new SteppedClock(ZoneId.of("UTC"), "2024-06-01T10:20:00Z");
+        TimeVariables time = new TimeVariables(clock);
+        RecordingContext context = new RecordingContext();
+        update(time, clock, context);
+        assertTrue(context.mLoaded.get(RemoteContext.ID_TIME_IN_HR));
+        for (int step = 0; step < 59; step++) {
+            clock.mMillis += 1000;
+            update(time, clock, context);
+            assertFalse(context.mLoaded.get(RemoteContext.ID_TIME_IN_MIN));
+            assertFalse(context.mLoaded.get(RemoteContext.ID_TIME_IN_HR));
+            assertFalse(context.mLoaded.get(RemoteContext.ID_CALENDAR_MONTH));
+        }
+        clock.mMillis += 1000;
+        update(time, clock, context);
+        assertTrue(context.mLoaded.get(RemoteContext.ID_TIME_IN_MIN));
+        assertEquals(10 * 60 + 21f, context.getFloat(RemoteContext.ID_TIME_IN_MIN), 0f);
+    }
+
+    @Test
+    public void clockGoingBackwardsIsFollowed() {
+        SteppedClock clock = new SteppedClock(PARIS, "2024-10-27T01:00:00.250Z");
+        TimeVariables time = new TimeVariables(clock);
+        RecordingContext context = new RecordingContext();
+        update(time, clock, context);
+        // within the same minute, then to the previous minute, hour and day
+        clock.mMillis -= 200;
+        update(time, clock, context);
+        clock.mMillis -= 100;
+        update(time, clock, context);
+        clock.mMillis -= 3600 * 1000;
+        update(time, clock, context);
+        clock.mMillis -= 24 * 3600 * 1000;
+        update(time, clock, context);
+        assertEquals(26f, context.getFloat(RemoteContext.ID_CALENDAR_MONTH), 0f);
+        clock.mMillis += 24 * 3600 * 1000 + 10;
+        update(time, clock, context);
+        assertEquals(27f, context.getFloat(RemoteContext.ID_CALENDAR_MONTH), 0f);
+    }
+
+    @Test
+    public void aNewContextGetsEveryVariable() {
+        SteppedClock clock = new SteppedClock(ZoneId.of("UTC"), "2024-06-01T10:20:30.400Z");
+        TimeVariables time = new TimeVariables(clock);
+        update(time, clock, new RecordingContext());
+        // same time, nothing changed for the time variables but the context is new
+        RecordingContext other = new RecordingContext();
+        assertTrue(update(time, clock, other));
+        assertTrue(other.mLoaded.get(RemoteContext.ID_TIME_IN_MIN));
+        assertTrue(other.mLoaded.get(RemoteContext.ID_TIME_IN_HR));
+        assertTrue(other.mLoaded.get(RemoteContext.ID_CALENDAR_MONTH));
+    }
+}
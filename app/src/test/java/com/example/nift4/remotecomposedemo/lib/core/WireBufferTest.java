@@ -0,0 +1,269 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.nift4.remotecomposedemo.lib.core;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import com.example.nift4.remotecomposedemo.lib.core.operations.PathData;
+import com.example.nift4.remotecomposedemo.lib.core.operations.Utils;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+public class WireBufferTest {
+
+    /**
+     * Obtain enough buffers to empty the pool, checking none of them is the given one
+     */
+    private static void assertNotPooled(WireBuffer buffer) {
+        for (int i = 0; i < 8; i++) {
+            assertNotSame(buffer, WireBuffer.obtain(16));
+        }
+    }
+
+    @Test
+    public void obtainedBuffersArePooled() {
+        WireBuffer buffer = WireBuffer.obtain(16);
+        buffer.writeInt(42);
+        buffer.recycle();
+        assertSame(buffer, WireBuffer.obtain(16));
+    }
+
+    @Test
+    public void wrappedArraysAreNotPooled() {
+        byte[] array = new byte[64];
+        WireBuffer buffer = new WireBuffer(array, 0);
+        buffer.recycle();
+        assertNotPooled(buffer);
+
+        WireBuffer wrapped = WireBuffer.wrap(ByteBuffer.wrap(array));
+        wrapped.recycle();
+        assertNotPooled(wrapped);
+
+        WireBuffer direct = WireBuffer.wrap(ByteBuffer.allocateDirect(64));
+        direct.recycle();
+        assertNotPooled(direct);
+    }
+
+    @Test
+    public void wrappedArraysArePooledOnceReplaced() {
+        WireBuffer buffer = new WireBuffer(new byte[4], 0);
+        for (int i = 0; i < 4; i++) {
+            buffer.writeInt(i); // grows into an array of its own
+        }
+        buffer.recycle();
+        assertSame(buffer, WireBuffer.obtain(16));
+    }
+
+    /**
+     * Values the tagged encoding must keep bit for bit: small integers and their limits,
+     * -0f, fractions, large coordinates, infinities, NaN ids and other NaNs
+     */
+    private static final float[] EDGE_FLOATS = {
+            0f, -0f, 1f, -1f, 15f, -16f, 16f, 0.5f, -2.75f,
+            (1 << 24) - 1, (1 << 27) - 8, -((1 << 27) - 8), 1 << 27, -(1 << 27),
+            1e9f, -1e9f, 123456.5f,
+            Float.MAX_VALUE, -Float.MAX_VALUE, Float.MIN_VALUE,
+            Float.POSITIVE_INFINITY, Float.NEGATIVE_INFINITY, Float.NaN,
+            Utils.asNan(0), Utils.asNan(42), Utils.asNan(0xFFFFF),
+            RemoteContext.FLOAT_CONTINUOUS_SEC,
+            Float.intBitsToFloat(0x7F800000 | 42), // NaN id bits with the sign cleared
+            Float.intBitsToFloat(0xFFC00042), // quiet NaN, not an id
+    };
+
+    private static final int[] EDGE_INTS = {
+            0, 1, 63, 64, 127, 128, 16383, 16384, 1 << 21, 1 << 28,
+            Integer.MAX_VALUE, -1, -128, Integer.MIN_VALUE,
+    };
+
+    private static int[] bits(float[] values) {
+        int[] bits = new int[values.length];
+        for (int i = 0; i < values.length; i++) {
+            bits[i] = Float.floatToRawIntBits(values[i]);
+        }
+        return bits;
+    }
+
+    /**
+     * Write the values one by one then as a stream, and read them back both ways
+     */
+    private static void assertFloatsRoundTrip(boolean compact, float[] values) {
+        WireBuffer buffer = new WireBuffer(16);
+        buffer.setCompact(compact);
+        for (float value : values) {
+            buffer.writeCompactFloat(value);
+        }
+        buffer.writeCompactFloats(values, 0, values.length);
+        buffer.writeInt(0xCAFE); // nothing more or less is read
+
+        buffer.setIndex(0);
+        float[] single = new float[values.length];
+        for (int i = 0; i < values.length; i++) {
+            single[i] = buffer.readCompactFloat();
+        }
+        float[] stream = new float[values.length + 2];
+        buffer.readCompactFloats(stream, 1, values.length);
+        assertEquals(0xCAFE, buffer.readInt());
+
+        assertArrayEquals(bits(values), bits(single));
+        assertArrayEquals(bits(values), bits(Arrays.copyOfRange(stream, 1,
+                values.length + 1)));
+    }
+
+    private static int compactSize(float value) {
+        WireBuffer buffer = new WireBuffer(16);
+        buffer.setCompact(true);
+        buffer.writeCompactFloat(value);
+        return buffer.getSize();
+    }
+
+    @Test
+    public void varIntsRoundTrip() {
+        int[] sizes = {1, 1, 1, 1, 1, 2, 2, 3, 4, 5, 5, 5, 5, 5};
+        for (int i = 0; i < EDGE_INTS.length; i++) {
+            WireBuffer buffer = new WireBuffer(16);
+            buffer.writeVarInt(EDGE_INTS[i]);
+            assertEquals("size of " + EDGE_INTS[i], sizes[i], buffer.getSize());
+            buffer.setIndex(0);
+            assertEquals(EDGE_INTS[i], buffer.readVarInt());
+        }
+    }
+
+    @Test
+    public void compactIntsRoundTrip() {
+        for (boolean compact : new boolean[]{false, true}) {
+            WireBuffer buffer = new WireBuffer(16);
+            buffer.setCompact(compact);
+            for (int value : EDGE_INTS) {
+                buffer.writeCompactInt(value);
+            }
+            buffer.setIndex(0);
+            for (int value : EDGE_INTS) {
+                assertEquals(value, buffer.readCompactInt());
+            }
+            assertEquals(0, buffer.remaining());
+        }
+    }
+
+    @Test
+    public void compactFloatsRoundTrip() {
+        assertFloatsRoundTrip(false, EDGE_FLOATS);
+        assertFloatsRoundTrip(true, EDGE_FLOATS);
+    }
+
+    @Test
+    public void compactFloatsAreTagged() {
+        assertEquals(1, compactSize(0f));
+        assertEquals(1, compactSize(-16f)); // zigzag keeps small negatives short
+        assertEquals(2, compactSize(16f));
+        assertEquals(4, compactSize((1 << 24) - 1));
+        assertEquals(5, compactSize((1 << 27) - 8)); // largest float integer tagged as one
+        assertEquals(5, compactSize(1 << 27)); // out of the integer range
+        assertEquals(5, compactSize(-0f)); // would read back as +0 as an integer
+        assertEquals(5, compactSize(0.5f));
+        assertEquals(5, compactSize(Float.POSITIVE_INFINITY));
+        assertEquals(5, compactSize(Float.NaN));
+        assertEquals(1, compactSize(Utils.asNan(1)));
+        assertEquals(4, compactSize(Utils.asNan(0xFFFFF)));
+    }
+
+    @Test
+    public void pathDeltaStreamRoundTrip() {
+        // x and y are delta coded separately, ids and floats between them must not
+        // shift the x/y alternation
+        float[] path = {
+                PathData.MOVE_NAN, 100, 200,
+                PathData.LINE_NAN, 101, 198,
+                PathData.LINE_NAN, Utils.asNan(42), 198,
+                PathData.QUADRATIC_NAN, 0.5f, 120, -0f, 1e9f,
+                PathData.CUBIC_NAN, -(1 << 26), (1 << 26), (1 << 26), -(1 << 26), 7, 7,
+                PathData.LINE_NAN, Float.NEGATIVE_INFINITY, Float.NaN,
+                PathData.CLOSE_NAN, PathData.DONE_NAN,
+        };
+        assertFloatsRoundTrip(false, path);
+        assertFloatsRoundTrip(true, path);
+
+        float[] grid = new float[1000];
+        for (int i = 0; i < grid.length; i += 2) {
+            grid[i] = 500 + i;
+            grid[i + 1] = 500 - i;
+        }
+        assertFloatsRoundTrip(true, grid);
+        WireBuffer buffer = new WireBuffer(16);
+        buffer.setCompact(true);
+        buffer.writeCompactFloats(grid, 0, grid.length);
+        assertEquals(2 + grid.length, buffer.getSize()); // 2 bytes for 500, then 1 per delta
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getCurrentThreadAllocatedBytes();
+    }
+
+    @Test
+    public void bulkCopiesRoundTrip() {
+        for (int len : new int[]{0, 1, WireBuffer.BULK_THRESHOLD - 1,
+                WireBuffer.BULK_THRESHOLD, 100}) {
+            float[] floats = new float[len];
+            int[] ints = new int[len];
+            for (int i = 0; i < len; i++) {
+                floats[i] = EDGE_FLOATS[i % EDGE_FLOATS.length];
+                ints[i] = EDGE_INTS[i % EDGE_INTS.length];
+            }
+            WireBuffer buffer = new WireBuffer(16);
+            buffer.writeInt(7); // not aligned on the values
+            buffer.writeFloats(floats, 0, len);
+            buffer.writeInts(ints, 0, len);
+            for (WireBuffer read : new WireBuffer[]{buffer,
+                    WireBuffer.wrap(ByteBuffer.allocateDirect(buffer.getSize())
+                            .put(buffer.asByteBuffer()).flip())}) {
+                read.setIndex(4);
+                float[] readFloats = new float[len + 1];
+                int[] readInts = new int[len + 1];
+                read.readFloats(readFloats, 1, len);
+                read.readInts(readInts, 1, len);
+                assertArrayEquals(bits(floats), bits(Arrays.copyOfRange(readFloats, 1, len + 1)));
+                assertArrayEquals(ints, Arrays.copyOfRange(readInts, 1, len + 1));
+                assertEquals(0, read.remaining());
+            }
+        }
+    }
+
+    @Test
+    public void smallBulkCopiesDoNotAllocate() {
+        if (!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean)) {
+            return; // the JVM does not count allocations per thread
+        }
+        float[] values = new float[WireBuffer.BULK_THRESHOLD - 1];
+        WireBuffer buffer = new WireBuffer(1024);
+        long start = allocatedBytes();
+        long overhead = allocatedBytes() - start;
+        start = allocatedBytes();
+        for (int i = 0; i < 1000; i++) {
+            buffer.setIndex(0);
+            buffer.writeFloats(values, 0, values.length);
+            buffer.setIndex(0);
+            buffer.readFloats(values, 0, values.length);
+        }
+        assertEquals(0, allocatedBytes() - start - overhead);
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.nift4.remotecomposedemo.lib.core.operations.utilities;
+
+import static com.example.nift4.remotecomposedemo.lib.core.operations.utilities.AnimatedFloatExpression.ADD;
+import static com.example.nift4.remotecomposedemo.lib.core.operations.utilities.AnimatedFloatExpression.COPY_SIGN;
+import static com.example.nift4.remotecomposedemo.lib.core.operations.utilities.AnimatedFloatExpression.DIV;
+import static com.example.nift4.remotecomposedemo.lib.core.operations.utilities.AnimatedFloatExpression.MUL;
+import static com.example.nift4.remotecomposedemo.lib.core.operations.utilities.AnimatedFloatExpression.SUB;
+import static com.example.nift4.remotecomposedemo.lib.core.operations.utilities.AnimatedFloatExpression.asNan;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+public class CompiledFloatExpressionTest {
+    static final int FIRST_ID = 10;
+    static final int ID_COUNT = 5;
+
+    /**
+     * Random well formed expressions, mixing constants (some 0 and 1 to hit the
+     * rewrites), variables and every operator
+     */
+    static float[] randomExpression(Random random) {
+        int length = 1 + random.nextInt(20);
+        float[] exp = new float[length];
+        int sp = 0;
+        for (int k = 0; k < length; k++) {
+            if (sp < 3 || random.nextInt(3) == 0) {
+                if (random.nextBoolean()) {
+                    exp[k] = (random.nextInt(4) == 0) ? random.nextInt(3)
+                            : random.nextFloat() * 10 - 3;
+                } else {
+                    exp[k] = asNan(FIRST_ID + random.nextInt(ID_COUNT));
+                }
+                sp++;
+            } else {
+                int op = 1 + random.nextInt(31);
+                if (op == 12) { // the sign of NaN is not specified, see copySign()
+                    op = 1;
+                }
+                exp[k] = asNan(AnimatedFloatExpression.OFFSET + op);
+                sp += 1 - AnimatedFloatExpression.arguments(op);
+            }
+        }
+        return exp;
+    }
+
+    static boolean same(float a, float b) {
+        return Float.floatToIntBits(a) == Float.floatToIntBits(b); // all NaNs are equal
+    }
+
+    @Test
+    public void randomExpressionsMatchTheInterpreter() {
+        Random random = new Random(1);
+        AnimatedFloatExpression reference = new AnimatedFloatExpression();
+        float[] values = new float[ID_COUNT];
+        for (int t = 0; t < 200000; t++) {
+            float[] exp = randomExpression(random);
+            for (int k = 0; k < ID_COUNT; k++) {
+                values[k] = (random.nextInt(3) == 0) ? random.nextInt(3)
+                        : random.nextFloat() * 10 - 5;
+            }
+            CompiledFloatExpression compiled = CompiledFloatExpression.compile(exp);
+            assertTrue(compiled.getCodeLength() <= exp.length);
+            for (int slot = 0; slot < compiled.getVariableCount(); slot++) {
+                compiled.setVariable(slot, values[compiled.getVariableId(slot) - FIRST_ID]);
+            }
+            float[] resolved = new float[exp.length];
+            for (int k = 0; k < exp.length; k++) {
+                float v = exp[k];
+                resolved[k] = (Float.isNaN(v) && !AnimatedFloatExpression.isMathOperator(v))
+                        ? values[AnimatedFloatExpression.fromNaN(v) - FIRST_ID] : v;
+            }
+            float expected = reference.eval(resolved, resolved.length);
+            float actual = compiled.eval();
+            if (!same(expected, actual)) {
+                fail(AnimatedFloatExpression.toString(exp, new String[exp.length])
+                        + " " + Arrays.toString(values) + ": " + expected + " != " + actual);
+            }
+        }
+    }
+
+    @Test
+    public void constantsAreFolded() {
+        CompiledFloatExpression compiled = CompiledFloatExpression.compile(
+                new float[]{2, 3, ADD, 4, MUL});
+        assertEquals(1, compiled.getCodeLength());
+        assertEquals(0, compiled.getVariableCount());
+        assertEquals(20f, compiled.eval(), 0f);
+    }
+
+    @Test
+    public void nanConstantsAreFoldedLikeTheInterpreter() {
+        CompiledFloatExpression compiled = CompiledFloatExpression.compile(
+                new float[]{0, 0, DIV, 1, ADD});
+        assertEquals(1, compiled.getCodeLength());
+        assertTrue(Float.isNaN(compiled.eval()));
+    }
+
+    @Test
+    public void neutralOperationsAreRemoved() {
+        float x = asNan(FIRST_ID);
+        CompiledFloatExpression compiled = CompiledFloatExpression.compile(
+                new float[]{x, 1, MUL, 1, DIV, 0, SUB});
+        assertEquals(1, compiled.getCodeLength());
+        compiled.setVariable(0, 7.5f);
+        assertEquals(7.5f, compiled.eval(), 0f);
+    }
+
+    @Test
+    public void constantRightOperandIsFused() {
+        float x = asNan(FIRST_ID);
+        CompiledFloatExpression compiled = CompiledFloatExpression.compile(
+                new float[]{x, 3, SUB});
+        assertEquals(2, compiled.getCodeLength()); // LOAD, SUB with a constant
+        compiled.setVariable(0, 10);
+        assertEquals(7f, compiled.eval(), 0f);
+    }
+
+    @Test
+    public void variablesShareASlot() {
+        float x = asNan(FIRST_ID);
+        float y = asNan(FIRST_ID + 1);
+        CompiledFloatExpression compiled = CompiledFloatExpression.compile(
+                new float[]{x, y, MUL, x, ADD});
+        assertEquals(2, compiled.getVariableCount());
+        assertEquals(FIRST_ID, compiled.getVariableId(0));
+        assertEquals(FIRST_ID + 1, compiled.getVariableId(1));
+        compiled.setVariable(0, 2);
+        compiled.setVariable(1, 5);
+        assertEquals(12f, compiled.eval(), 0f);
+    }
+
+    @Test
+    public void copySign() {
+        float x = asNan(FIRST_ID);
+        CompiledFloatExpression compiled = CompiledFloatExpression.compile(
+                new float[]{x, -1, COPY_SIGN});
+        compiled.setVariable(0, 3);
+        assertEquals(-3f, compiled.eval(), 0f);
+    }
+
+    @Test
+    public void shapeIgnoresConstantsAndIds() {
+        CompiledFloatExpression a = CompiledFloatExpression.compile(
+                new float[]{asNan(FIRST_ID), 3, MUL});
+        CompiledFloatExpression b = CompiledFloatExpression.compile(
+                new float[]{asNan(FIRST_ID + 1), 4, MUL});
+        CompiledFloatExpression c = CompiledFloatExpression.compile(
+                new float[]{asNan(FIRST_ID), 4, ADD});
+        assertTrue(a.sameShape(b));
+        assertEquals(a.shapeHash(), b.shapeHash());
+        assertFalse(a.sameShape(c));
+    }
+
+    @Test
+    public void invalidExpressionsAreRejected() {
+        assertThrows(RuntimeException.class,
+                () -> CompiledFloatExpression.compile(new float[0]));
+        assertThrows(RuntimeException.class,
+                () -> CompiledFloatExpression.compile(new float[]{1, ADD}));
+    }
+}
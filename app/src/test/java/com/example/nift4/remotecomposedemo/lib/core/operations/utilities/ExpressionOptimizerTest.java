@@ -0,0 +1,145 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.nift4.remotecomposedemo.lib.core.operations.utilities;
+
+import static com.example.nift4.remotecomposedemo.lib.core.operations.utilities.AnimatedFloatExpression.ADD;
+import static com.example.nift4.remotecomposedemo.lib.core.operations.utilities.AnimatedFloatExpression.DIV;
+import static com.example.nift4.remotecomposedemo.lib.core.operations.utilities.AnimatedFloatExpression.MOD;
+import static com.example.nift4.remotecomposedemo.lib.core.operations.utilities.AnimatedFloatExpression.MUL;
+import static com.example.nift4.remotecomposedemo.lib.core.operations.utilities.AnimatedFloatExpression.SQRT;
+import static com.example.nift4.remotecomposedemo.lib.core.operations.utilities.AnimatedFloatExpression.asNan;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertThrows;
+
+import com.example.nift4.remotecomposedemo.lib.core.RemoteComposeBuffer;
+import com.example.nift4.remotecomposedemo.lib.core.RemoteComposeState;
+import com.example.nift4.remotecomposedemo.lib.core.operations.utilities.easing.Easing;
+
+import org.junit.Test;
+
+public class ExpressionOptimizerTest {
+    private static final float X = asNan(5000);
+    private static final float[] ANIMATION = RemoteComposeBuffer.packAnimation(0.3f,
+            Easing.CUBIC_STANDARD, null, Float.NaN, Float.NaN);
+
+    /** Compared bit for bit, ids and operators are NaNs */
+    private static void assertExpression(float[] expected, float[] actual) {
+        int[] expectedBits = new int[expected.length];
+        int[] actualBits = new int[actual.length];
+        for (int i = 0; i < expected.length; i++) {
+            expectedBits[i] = Float.floatToRawIntBits(expected[i]);
+        }
+        for (int i = 0; i < actual.length; i++) {
+            actualBits[i] = Float.floatToRawIntBits(actual[i]);
+        }
+        assertArrayEquals(expectedBits, actualBits);
+    }
+
+    @Test
+    public void constantsAreFolded() {
+        ExpressionOptimizer optimizer = new ExpressionOptimizer();
+        assertExpression(new float[]{9}, optimizer.optimize(new float[]{1, 2, ADD, 3, MUL}));
+        assertExpression(new float[]{5, X, MUL},
+                optimizer.optimize(new float[]{2, 3, ADD, X, MUL}));
+        assertExpression(new float[]{X, 6, ADD},
+                optimizer.optimize(new float[]{X, 2, 3, MUL, ADD}));
+        // the variable blocks the folding of what reads it
+        assertExpression(new float[]{X, 2, MUL, 3, ADD},
+                optimizer.optimize(new float[]{X, 2, MUL, 3, ADD}));
+    }
+
+    @Test
+    public void nanResultsAreNotFolded() {
+        // a NaN would read as an id
+        ExpressionOptimizer optimizer = new ExpressionOptimizer();
+        assertExpression(new float[]{0, 0, DIV}, optimizer.optimize(new float[]{0, 0, DIV}));
+        assertExpression(new float[]{-1, SQRT, X, ADD},
+                optimizer.optimize(new float[]{-1, SQRT, X, ADD}));
+        assertExpression(new float[]{0, 0, DIV, 2, MUL},
+                optimizer.optimize(new float[]{0, 0, DIV, 2, MUL}));
+    }
+
+    @Test
+    public void missingArgumentsAreRejected() {
+        ExpressionOptimizer optimizer = new ExpressionOptimizer();
+        assertThrows(RuntimeException.class, () -> optimizer.optimize(new float[]{1, ADD}));
+        assertThrows(RuntimeException.class, () -> optimizer.optimize(new float[]{MUL}));
+    }
+
+    @Test
+    public void subExpressionsReferenceTheExpressionsWritten() {
+        ExpressionOptimizer optimizer = new ExpressionOptimizer();
+        float[] seconds = optimizer.optimize(new float[]{X, 60, MOD});
+        // the whole expression is not replaced by a reference to itself
+        assertExpression(new float[]{X, 60, MOD}, seconds);
+        optimizer.put(seconds, null, 7000);
+
+        assertExpression(new float[]{asNan(7000), 2, MUL},
+                optimizer.optimize(new float[]{X, 60, MOD, 2, MUL}));
+        assertExpression(new float[]{1, asNan(7000), ADD},
+                optimizer.optimize(new float[]{1, X, 30, 2, MUL, MOD, ADD}));
+        assertExpression(new float[]{X, 61, MOD, 2, MUL},
+                optimizer.optimize(new float[]{X, 61, MOD, 2, MUL}));
+
+        // animated expressions are not referenced, their value lags behind
+        optimizer.put(new float[]{X, 3, MUL}, ANIMATION, 7001);
+        assertExpression(new float[]{X, 3, MUL, 1, ADD},
+                optimizer.optimize(new float[]{X, 3, MUL, 1, ADD}));
+    }
+
+    @Test
+    public void identicalExpressionsShareAnId() {
+        ExpressionOptimizer optimizer = new ExpressionOptimizer();
+        float[] exp = {X, 2, MUL};
+        optimizer.put(exp, null, 7000);
+        optimizer.put(exp, ANIMATION, 7001);
+        assertEquals(7000, optimizer.getId(new float[]{X, 2, MUL}, null));
+        assertEquals(7001, optimizer.getId(new float[]{X, 2, MUL}, ANIMATION.clone()));
+        assertEquals(-1, optimizer.getId(new float[]{X, 3, MUL}, null));
+        float[] other = RemoteComposeBuffer.packAnimation(0.5f,
+                Easing.CUBIC_STANDARD, null, Float.NaN, Float.NaN);
+        assertEquals(-1, optimizer.getId(exp, other));
+
+        // the key keeps the boundary between the expression and its animation
+        float[] a = {X, 2};
+        float[] animation = {MUL, 1};
+        optimizer.put(a, animation, 7002);
+        assertEquals(7002, optimizer.getId(new float[]{X, 2}, new float[]{MUL, 1}));
+        assertEquals(-1, optimizer.getId(new float[]{X, 2, MUL}, new float[]{1}));
+
+        optimizer.clear();
+        assertEquals(-1, optimizer.getId(exp, null));
+        assertEquals(-1, optimizer.getId(exp, ANIMATION));
+    }
+
+    @Test
+    public void documentsOptInToTheOptimization() {
+        RemoteComposeBuffer document = new RemoteComposeBuffer(new RemoteComposeState());
+        assertNotEquals(Float.floatToRawIntBits(document.addAnimatedFloat(X, 2, MUL)),
+                Float.floatToRawIntBits(document.addAnimatedFloat(X, 2, MUL)));
+
+        document.setOptimizeExpressions(true);
+        float a = document.addAnimatedFloat(X, 2, 3, ADD, MUL);
+        assertEquals(Float.floatToRawIntBits(a),
+                Float.floatToRawIntBits(document.addAnimatedFloat(X, 5, MUL)));
+        float b = document.addAnimatedFloat(new float[]{X, 5, MUL}, ANIMATION);
+        assertNotEquals(Float.floatToRawIntBits(a), Float.floatToRawIntBits(b));
+        assertEquals(Float.floatToRawIntBits(b), Float.floatToRawIntBits(
+                document.addAnimatedFloat(new float[]{X, 5, MUL}, ANIMATION)));
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.nift4.remotecomposedemo.lib.core.operations.utilities;
+
+import static com.example.nift4.remotecomposedemo.lib.core.operations.utilities.AnimatedFloatExpression.ADD;
+import static com.example.nift4.remotecomposedemo.lib.core.operations.utilities.AnimatedFloatExpression.MUL;
+import static com.example.nift4.remotecomposedemo.lib.core.operations.utilities.AnimatedFloatExpression.SIN;
+import static com.example.nift4.remotecomposedemo.lib.core.operations.utilities.AnimatedFloatExpression.asNan;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Checks that evaluating expressions every frame produces no garbage once warmed up,
+ * counting the bytes allocated by the thread (on Android the player reports them
+ * per frame in debug mode, see RemoteComposeCanvas).
+ */
+public class FloatExpressionAllocationTest {
+    private static final int FRAMES = 10000;
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getCurrentThreadAllocatedBytes();
+    }
+
+    /**
+     * Bytes allocated per frame, the cost of measuring is subtracted
+     */
+    private static long bytesPerFrame(Runnable frames) {
+        long start = allocatedBytes();
+        long overhead = allocatedBytes() - start;
+        start = allocatedBytes();
+        frames.run();
+        return (allocatedBytes() - start - overhead) / FRAMES;
+    }
+
+    private static boolean canCount() {
+        return ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .isThreadAllocatedMemoryEnabled();
+    }
+
+    private static CompiledFloatExpression expression(int id) {
+        return CompiledFloatExpression.compile(
+                new float[]{asNan(id), 2, MUL, asNan(id + 1), ADD, SIN});
+    }
+
+    private static float frames(CompiledFloatExpression compiled) {
+        float sum = 0;
+        for (int frame = 0; frame < FRAMES; frame++) {
+            compiled.setVariable(0, frame);
+            sum += compiled.eval();
+        }
+        return sum;
+    }
+
+    private static float frames(FloatExpressionBatch batch) {
+        float sum = 0;
+        for (int frame = 0; frame < FRAMES; frame++) {
+            for (int row = 0; row < batch.size(); row++) {
+                batch.setVariable(0, row, frame + row);
+            }
+            sum += batch.eval()[0];
+        }
+        return sum;
+    }
+
+    @Test
+    public void compiledExpressionsDoNotAllocate() {
+        if (!canCount()) {
+            return; // the JVM does not count allocations per thread
+        }
+        CompiledFloatExpression compiled = expression(5000);
+        frames(compiled); // warm up
+        assertEquals(0, bytesPerFrame(() -> frames(compiled)));
+    }
+
+    @Test
+    public void batchesDoNotAllocate() {
+        if (!canCount()) {
+            return; // the JVM does not count allocations per thread
+        }
+        FloatExpressionBatch batch = new FloatExpressionBatch(new CompiledFloatExpression[]{
+                expression(5000), expression(5002), expression(5004)});
+        frames(batch); // warm up
+        assertEquals(0, bytesPerFrame(() -> frames(batch)));
+    }
+}
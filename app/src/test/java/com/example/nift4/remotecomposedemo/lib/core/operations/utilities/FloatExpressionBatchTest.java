@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.nift4.remotecomposedemo.lib.core.operations.utilities;
+
+import static com.example.nift4.remotecomposedemo.lib.core.operations.utilities.AnimatedFloatExpression.asNan;
+import static com.example.nift4.remotecomposedemo.lib.core.operations.utilities.CompiledFloatExpressionTest.FIRST_ID;
+import static com.example.nift4.remotecomposedemo.lib.core.operations.utilities.CompiledFloatExpressionTest.ID_COUNT;
+import static com.example.nift4.remotecomposedemo.lib.core.operations.utilities.CompiledFloatExpressionTest.randomExpression;
+import static com.example.nift4.remotecomposedemo.lib.core.operations.utilities.CompiledFloatExpressionTest.same;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Random;
+
+public class FloatExpressionBatchTest {
+    private static final int ROWS = 9;
+
+    /**
+     * The expression with other constants and variables, 0, 1 and 2 are kept as they
+     * change the rewrites of CompiledFloatExpression, so the shape is likely the same
+     */
+    private static float[] variant(float[] exp, Random random) {
+        float[] variant = exp.clone();
+        for (int k = 0; k < variant.length; k++) {
+            float v = variant[k];
+            if (AnimatedFloatExpression.isMathOperator(v) || v == 0 || v == 1 || v == 2) {
+                continue;
+            }
+            variant[k] = Float.isNaN(v) ? asNan(FIRST_ID + random.nextInt(ID_COUNT))
+                    : random.nextFloat() * 10 - 3;
+        }
+        return variant;
+    }
+
+    @Test
+    public void randomBatchesMatchTheirExpressions() {
+        Random random = new Random(2);
+        BitSet operators = new BitSet();
+        float[] values = new float[ID_COUNT];
+        int batches = 0;
+        for (int t = 0; t < 20000; t++) {
+            float[] exp = randomExpression(random);
+            CompiledFloatExpression first = CompiledFloatExpression.compile(exp);
+            ArrayList<CompiledFloatExpression> rows = new ArrayList<>();
+            rows.add(first);
+            for (int row = 1; row < ROWS; row++) {
+                CompiledFloatExpression compiled =
+                        CompiledFloatExpression.compile(variant(exp, random));
+                if (compiled.sameShape(first)) {
+                    rows.add(compiled);
+                }
+            }
+            if (rows.size() < 2) {
+                continue;
+            }
+            batches++;
+            for (float v : exp) {
+                if (AnimatedFloatExpression.isMathOperator(v)) {
+                    operators.set(AnimatedFloatExpression.fromNaN(v)
+                            - AnimatedFloatExpression.OFFSET);
+                }
+            }
+            for (int k = 0; k < ID_COUNT; k++) {
+                values[k] = (random.nextInt(3) == 0) ? random.nextInt(3)
+                        : random.nextFloat() * 10 - 5;
+            }
+            FloatExpressionBatch batch = new FloatExpressionBatch(
+                    rows.toArray(new CompiledFloatExpression[0]));
+            for (int row = 0; row < rows.size(); row++) {
+                CompiledFloatExpression compiled = rows.get(row);
+                for (int slot = 0; slot < compiled.getVariableCount(); slot++) {
+                    float value = values[compiled.getVariableId(slot) - FIRST_ID];
+                    compiled.setVariable(slot, value);
+                    assertEquals(compiled.getVariableId(slot), batch.getVariableId(slot, row));
+                    batch.setVariable(slot, row, value);
+                }
+            }
+            float[] results = batch.eval();
+            for (int row = 0; row < rows.size(); row++) {
+                float expected = rows.get(row).eval();
+                if (!same(expected, results[row])) {
+                    fail(AnimatedFloatExpression.toString(exp, new String[exp.length])
+                            + " row " + row + " " + Arrays.toString(values) + ": "
+                            + expected + " != " + results[row]);
+                }
+            }
+        }
+        for (int op = 1; op <= AnimatedFloatExpression.LAST_OP; op++) {
+            // COPY_SIGN (12) is not generated, see randomExpression()
+            assertTrue("operator " + op + " in " + batches + " batches",
+                    op == 12 || operators.get(op));
+        }
+    }
+
+    @Test
+    public void expressionsOfAnotherShapeAreRejected() {
+        CompiledFloatExpression a = CompiledFloatExpression.compile(
+                new float[]{asNan(FIRST_ID), 3, AnimatedFloatExpression.MUL});
+        CompiledFloatExpression b = CompiledFloatExpression.compile(
+                new float[]{asNan(FIRST_ID), 3, AnimatedFloatExpression.ADD});
+        assertThrows(IllegalArgumentException.class,
+                () -> new FloatExpressionBatch(new CompiledFloatExpression[]{a, b}));
+    }
+}
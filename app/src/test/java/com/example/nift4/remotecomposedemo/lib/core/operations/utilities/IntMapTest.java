@@ -0,0 +1,238 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.nift4.remotecomposedemo.lib.core.operations.utilities;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * IntObjectMap and IntBooleanMap, the probe chains are built from keys of a chosen
+ * home slot in the default table of 16 slots
+ */
+public class IntMapTest {
+    private static final int MASK = 15;
+
+    /** count keys whose home slot is home */
+    private static int[] keysAt(int home, int count) {
+        int[] keys = new int[count];
+        int n = 0;
+        for (int key = 1; n < count; key++) {
+            if ((IntObjectMap.hash(key) & MASK) == home) {
+                keys[n++] = key;
+            }
+        }
+        return keys;
+    }
+
+    @Test
+    public void collidingKeysWrapAroundTheTableEnd() {
+        int[] last = keysAt(MASK, 4); // slots 15, 0, 1, 2
+        int[] first = keysAt(0, 2); // pushed to 3 and 4
+        IntObjectMap<String> map = new IntObjectMap<>();
+        for (int key : last) {
+            map.put(key, "last" + key);
+        }
+        for (int key : first) {
+            map.put(key, "first" + key);
+        }
+        // the chain starting at the last slot continues at the start of the table
+        assertEquals(last[0], map.keyAt(MASK));
+        assertEquals(last[1], map.keyAt(0));
+        assertEquals(last[3], map.keyAt(2));
+        assertEquals(first[0], map.keyAt(3));
+        assertEquals(first[1], map.keyAt(4));
+        for (int key : last) {
+            assertEquals("last" + key, map.get(key));
+        }
+        for (int key : first) {
+            assertEquals("first" + key, map.get(key));
+        }
+        assertEquals(6, map.size());
+    }
+
+    @Test
+    public void removalInsideAProbeChainKeepsTheFollowingKeys() {
+        int[] last = keysAt(MASK, 4);
+        int[] first = keysAt(0, 2);
+        IntObjectMap<String> map = new IntObjectMap<>();
+        IntBooleanMap flags = new IntBooleanMap();
+        for (int key : last) {
+            map.put(key, "last" + key);
+            flags.put(key, true);
+        }
+        for (int key : first) {
+            map.put(key, "first" + key);
+            flags.put(key, false);
+        }
+        // the head of the chain, at the end of the table, then one in its middle
+        assertEquals("last" + last[0], map.remove(last[0]));
+        assertTrue(flags.remove(last[0]));
+        assertEquals("last" + last[2], map.remove(last[2]));
+        assertTrue(flags.remove(last[2]));
+        assertNull(map.remove(last[2]));
+        assertFalse(flags.remove(last[2]));
+
+        assertNull(map.get(last[0]));
+        assertNull(map.get(last[2]));
+        assertFalse(flags.containsKey(last[0]));
+        assertEquals("last" + last[1], map.get(last[1]));
+        assertEquals("last" + last[3], map.get(last[3]));
+        assertTrue(flags.get(last[3], false));
+        for (int key : first) {
+            assertEquals("first" + key, map.get(key));
+            assertFalse(flags.get(key, true));
+        }
+        assertEquals(4, map.size());
+        assertEquals(4, flags.size());
+
+        // the freed slots are reused
+        map.put(last[2], "again");
+        assertEquals("again", map.get(last[2]));
+        assertEquals(5, map.size());
+    }
+
+    @Test
+    public void mapsGrowPastTheirThreshold() {
+        IntObjectMap<Integer> map = new IntObjectMap<>();
+        IntBooleanMap flags = new IntBooleanMap();
+        for (int i = 0; i < 1000; i++) {
+            // 12 keys fit in the default table, then it doubles at each threshold
+            assertNull(map.put(i * 16, i));
+            flags.put(i * 16, (i & 1) == 0);
+            assertEquals(i + 1, map.size());
+            assertEquals(i + 1, flags.size());
+        }
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(Integer.valueOf(i), map.get(i * 16));
+            assertEquals((i & 1) == 0, flags.get(i * 16, (i & 1) != 0));
+        }
+        assertEquals(Integer.valueOf(5), map.put(5 * 16, -5));
+        assertEquals(1000, map.size());
+        map.clear();
+        flags.clear();
+        assertEquals(0, map.size());
+        assertEquals(-1, map.next(-1));
+        assertFalse(flags.containsKey(0));
+        assertThrows(IllegalArgumentException.class, () -> map.put(Integer.MIN_VALUE, 0));
+        assertThrows(IllegalArgumentException.class,
+                () -> flags.put(Integer.MIN_VALUE, true));
+    }
+
+    @Test
+    public void mapsMatchAHashMap() {
+        Random random = new Random(42);
+        IntObjectMap<Integer> map = new IntObjectMap<>();
+        IntBooleanMap flags = new IntBooleanMap();
+        HashMap<Integer, Integer> reference = new HashMap<>();
+        for (int i = 0; i < 200000; i++) {
+            int key = random.nextInt(64) - 8; // few keys: long chains, many removals
+            if (random.nextInt(3) == 0) {
+                assertEquals(reference.remove(key), map.remove(key));
+                flags.remove(key);
+            } else {
+                assertEquals(reference.put(key, i), map.put(key, i));
+                flags.put(key, (i & 1) == 0);
+            }
+            assertEquals(reference.size(), map.size());
+            assertEquals(reference.size(), flags.size());
+        }
+        for (int key = -8; key < 56; key++) {
+            assertEquals(reference.get(key), map.get(key));
+            Integer value = reference.get(key);
+            assertEquals(value != null, flags.containsKey(key));
+            if (value != null) {
+                assertEquals((value & 1) == 0, flags.get(key, (value & 1) != 0));
+            }
+        }
+    }
+
+    @Test
+    public void iterationVisitsEveryEntryOnce() {
+        IntObjectMap<Integer> map = new IntObjectMap<>();
+        HashMap<Integer, Integer> reference = new HashMap<>();
+        for (int i = 0; i < 100; i++) {
+            map.put(i * 7 - 50, i);
+            reference.put(i * 7 - 50, i);
+        }
+        for (int i = map.next(-1); i >= 0; i = map.next(i)) {
+            assertEquals(reference.remove(map.keyAt(i)), map.valueAt(i));
+        }
+        assertTrue(reference.isEmpty());
+
+        IntBooleanMap flags = new IntBooleanMap();
+        for (Map.Entry<Integer, Integer> entry : Map.of(3, 1, -4, 2).entrySet()) {
+            flags.put(entry.getKey(), entry.getValue() == 1);
+        }
+        int count = 0;
+        for (int i = flags.next(-1); i >= 0; i = flags.next(i)) {
+            assertEquals(flags.keyAt(i) == 3, flags.valueAt(i));
+            count++;
+        }
+        assertEquals(2, count);
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getCurrentThreadAllocatedBytes();
+    }
+
+    private static long sumKeys(IntObjectMap<Integer> map, IntBooleanMap flags) {
+        long sum = 0;
+        for (int i = map.next(-1); i >= 0; i = map.next(i)) {
+            sum += map.keyAt(i);
+        }
+        for (int i = flags.next(-1); i >= 0; i = flags.next(i)) {
+            sum += flags.valueAt(i) ? flags.keyAt(i) : 0;
+        }
+        return sum;
+    }
+
+    @Test
+    public void iterationDoesNotAllocate() {
+        if (!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean)) {
+            return; // allocations can't be counted on this VM
+        }
+        IntObjectMap<Integer> map = new IntObjectMap<>();
+        IntBooleanMap flags = new IntBooleanMap();
+        for (int i = 0; i < 100; i++) {
+            map.put(i, i);
+            flags.put(i, true);
+        }
+        long sum = 0;
+        for (int warmup = 0; warmup < 1000; warmup++) {
+            sum += sumKeys(map, flags);
+        }
+        long start = allocatedBytes();
+        long overhead = allocatedBytes() - start;
+        start = allocatedBytes();
+        for (int run = 0; run < 1000; run++) {
+            sum += sumKeys(map, flags);
+        }
+        long allocated = allocatedBytes() - start - overhead;
+        assertEquals(2000 * 2 * 4950L, sum);
+        assertEquals(0, allocated);
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.nift4.remotecomposedemo.lib.core.operations.utilities;
+
+import static com.example.nift4.remotecomposedemo.lib.core.operations.utilities.AnimatedFloatExpression.ADD;
+import static com.example.nift4.remotecomposedemo.lib.core.operations.utilities.AnimatedFloatExpression.MUL;
+import static com.example.nift4.remotecomposedemo.lib.core.operations.utilities.AnimatedFloatExpression.asNan;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+
+import org.junit.Test;
+
+public class ObjectIdMapTest {
+
+    @Test
+    public void floatArraysAreComparedByBits() {
+        ObjectIdMap map = new ObjectIdMap(true);
+        map.put(new float[]{1, 2, ADD}, 1);
+        map.put(new float[]{1, 2, MUL}, 2);
+        map.put(new float[]{asNan(5000), 2, ADD}, 3);
+        map.put(new float[]{0f}, 4);
+        map.put(new float[]{-0f}, 5);
+        assertEquals(5, map.size());
+        assertEquals(1, map.get(new float[]{1, 2, ADD}));
+        assertEquals(2, map.get(new float[]{1, 2, MUL}));
+        assertEquals(3, map.get(new float[]{asNan(5000), 2, ADD}));
+        assertEquals(-1, map.get(new float[]{asNan(5001), 2, ADD}));
+        assertEquals(4, map.get(new float[]{0f}));
+        assertEquals(5, map.get(new float[]{-0f}));
+    }
+
+    @Test
+    public void identityMapIgnoresContent() {
+        ObjectIdMap map = new ObjectIdMap(false);
+        float[] key = {1, 2};
+        map.put(key, 7);
+        assertEquals(7, map.get(key));
+        assertEquals(-1, map.get(new float[]{1, 2}));
+    }
+
+    @Test
+    public void growsAndClears() {
+        ObjectIdMap map = new ObjectIdMap(true);
+        for (int i = 0; i < 1000; i++) {
+            map.put("text" + i, i);
+        }
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i, map.get("text" + i));
+        }
+        map.clear();
+        assertEquals(0, map.size());
+        assertEquals(-1, map.get("text1"));
+    }
+
+    @Test
+    public void nullKeysAreRejected() {
+        assertThrows(NullPointerException.class, () -> new ObjectIdMap(true).put(null, 1));
+        assertThrows(NullPointerException.class, () -> new ObjectIdMap(false).put(null, 1));
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.nift4.remotecomposedemo.lib.core.operations.utilities;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+
+import com.example.nift4.remotecomposedemo.lib.core.RemoteComposeState;
+
+import org.junit.Test;
+
+import java.util.BitSet;
+
+public class PagedArrayTest {
+    private static final int HIGH_ID = RemoteComposeState.MAX_ID - 3;
+
+    @Test
+    public void floatArraysGrowByPage() {
+        PagedFloatArray array = new PagedFloatArray(Float.NaN);
+        assertEquals(Float.NaN, array.get(0), 0f);
+        for (int id = 0; id < 3 * PagedFloatArray.PAGE_SIZE; id += 7) {
+            array.set(id, id * 0.5f);
+        }
+        for (int id = 0; id < 3 * PagedFloatArray.PAGE_SIZE; id++) {
+            assertEquals(id % 7 == 0 ? id * 0.5f : Float.NaN, array.get(id), 0f);
+        }
+        // far past the pages allocated, the pages in between stay unallocated
+        array.set(HIGH_ID, 42);
+        assertEquals(42f, array.get(HIGH_ID), 0f);
+        assertEquals(Float.NaN, array.get(HIGH_ID - 1), 0f);
+        assertEquals(Float.NaN, array.get(RemoteComposeState.MAX_ID), 0f);
+        assertEquals(Float.NaN, array.get(HIGH_ID - 100 * PagedFloatArray.PAGE_SIZE), 0f);
+        assertEquals(Float.NaN, array.get(RemoteComposeState.MAX_ID + 1000), 0f);
+        assertEquals(7 * 0.5f, array.get(7), 0f);
+        assertThrows(RuntimeException.class, () -> array.set(-1, 0));
+    }
+
+    @Test
+    public void intArraysGrowByPage() {
+        PagedIntArray array = new PagedIntArray(-1);
+        assertEquals(-1, array.get(0));
+        for (int id = 0; id < 3 * PagedIntArray.PAGE_SIZE; id += 7) {
+            array.set(id, id * 2);
+        }
+        for (int id = 0; id < 3 * PagedIntArray.PAGE_SIZE; id++) {
+            assertEquals(id % 7 == 0 ? id * 2 : -1, array.get(id));
+        }
+        array.set(HIGH_ID, 42);
+        assertEquals(42, array.get(HIGH_ID));
+        assertEquals(-1, array.get(HIGH_ID + 1));
+        assertEquals(-1, array.get(HIGH_ID - 100 * PagedIntArray.PAGE_SIZE));
+        assertEquals(-1, array.get(RemoteComposeState.MAX_ID + 1000));
+        assertEquals(14, array.get(7));
+        assertThrows(RuntimeException.class, () -> array.set(-1, 0));
+    }
+
+    @Test
+    public void floatRestoreReportsTheChangedIds() {
+        PagedFloatArray array = new PagedFloatArray(0);
+        array.set(1, 1);
+        array.set(2, -0f);
+        array.set(300, 3);
+        PagedFloatArray snapshot = array.snapshot();
+
+        array.set(1, 10); // changed
+        array.set(2, 0f); // other bits, changed
+        array.set(300, 3); // same value
+        array.set(5, 5); // new in an allocated page
+        array.set(HIGH_ID, 7); // new in a page the snapshot doesn't have
+        array.set(600, 0); // the default in a new page, unchanged
+        snapshot.set(1, 1); // snapshots are copies
+
+        BitSet changed = new BitSet();
+        array.restore(snapshot, changed);
+        BitSet expected = new BitSet();
+        expected.set(1);
+        expected.set(2);
+        expected.set(5);
+        expected.set(HIGH_ID);
+        assertEquals(expected, changed);
+        assertEquals(1f, array.get(1), 0f);
+        assertEquals(Float.floatToRawIntBits(-0f), Float.floatToRawIntBits(array.get(2)));
+        assertEquals(3f, array.get(300), 0f);
+        assertEquals(0f, array.get(5), 0f);
+        assertEquals(0f, array.get(HIGH_ID), 0f);
+
+        // back: the ids only the snapshot lacks are set again
+        changed.clear();
+        array.set(HIGH_ID, 7);
+        PagedFloatArray other = array.snapshot();
+        array.set(HIGH_ID, 0);
+        array.restore(other, changed);
+        expected.clear();
+        expected.set(HIGH_ID);
+        assertEquals(expected, changed);
+        assertEquals(7f, array.get(HIGH_ID), 0f);
+
+        changed.clear();
+        array.restore(array.snapshot(), changed);
+        assertEquals(0, changed.cardinality());
+    }
+
+    @Test
+    public void intRestoreReportsTheChangedIds() {
+        PagedIntArray array = new PagedIntArray(0);
+        array.set(1, 1);
+        array.set(300, 3);
+        PagedIntArray snapshot = array.snapshot();
+
+        array.set(1, 10);
+        array.set(300, 3);
+        array.set(5, 5);
+        array.set(HIGH_ID, 7);
+        array.set(600, 0);
+
+        BitSet changed = new BitSet();
+        array.restore(snapshot, changed);
+        BitSet expected = new BitSet();
+        expected.set(1);
+        expected.set(5);
+        expected.set(HIGH_ID);
+        assertEquals(expected, changed);
+        assertEquals(1, array.get(1));
+        assertEquals(3, array.get(300));
+        assertEquals(0, array.get(5));
+        assertEquals(0, array.get(HIGH_ID));
+
+        changed.clear();
+        array.restore(array.snapshot(), changed);
+        assertEquals(0, changed.cardinality());
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.nift4.remotecomposedemo.lib.core.operations.utilities.easing;
+
+import static com.example.nift4.remotecomposedemo.lib.core.operations.utilities.AnimatedFloatExpression.MUL;
+import static com.example.nift4.remotecomposedemo.lib.core.operations.utilities.AnimatedFloatExpression.asNan;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.example.nift4.remotecomposedemo.lib.core.DocumentVerifier;
+import com.example.nift4.remotecomposedemo.lib.core.Operation;
+import com.example.nift4.remotecomposedemo.lib.core.RemoteComposeBuffer;
+import com.example.nift4.remotecomposedemo.lib.core.RemoteComposeState;
+import com.example.nift4.remotecomposedemo.lib.core.operations.FloatExpression;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+
+public class AnimationSpecCacheTest {
+
+    private static float[] standard() {
+        return FloatAnimation.packToFloatArray(0.3f, Easing.CUBIC_STANDARD, null,
+                Float.NaN, Float.NaN);
+    }
+
+    private static float[] custom() {
+        return FloatAnimation.packToFloatArray(0.5f, Easing.CUBIC_CUSTOM,
+                new float[]{0.1f, 0.9f, 0.2f, 1.5f}, Float.NaN, 360);
+    }
+
+    @Test
+    public void identicalDescriptionsShareOneSpec() {
+        AnimationSpecCache cache = new AnimationSpecCache();
+        FloatAnimation.Spec spec = cache.get(standard());
+        assertSame(spec, cache.get(standard()));
+        FloatAnimation.Spec other = cache.get(custom());
+        assertNotSame(spec, other);
+        assertSame(other, cache.get(custom()));
+        assertSame(other.getEasingCurve(), cache.get(custom()).getEasingCurve());
+        assertEquals(2, cache.size());
+
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertNotSame(spec, cache.get(standard()));
+    }
+
+    @Test
+    public void bakedCurvesAreShared() {
+        AnimationSpecCache cache = new AnimationSpecCache(1e-3f);
+        FloatAnimation.Spec spec = cache.get(custom());
+        assertTrue(spec.getEasingCurve() instanceof BakedEasing);
+        assertSame(spec.getEasingCurve(), cache.get(custom()).getEasingCurve());
+        assertEquals(1e-3f, cache.getBakedError(), 0f);
+    }
+
+    @Test
+    public void animationsSharingASpecKeepTheirValues() {
+        AnimationSpecCache cache = new AnimationSpecCache();
+        FloatAnimation a = new FloatAnimation(cache.get(standard()));
+        FloatAnimation b = new FloatAnimation(cache.get(standard()));
+        a.setInitialValue(0);
+        a.setTargetValue(10);
+        b.setInitialValue(100);
+        b.setTargetValue(50);
+        assertSame(a.getSpec(), b.getSpec());
+        assertEquals(0f, a.get(0), 0f);
+        assertEquals(100f, b.get(0), 0f);
+        assertEquals(10f, a.get(0.3f), 1e-5f);
+        assertEquals(50f, b.get(0.3f), 1e-5f);
+        float eased = a.getSpec().getEasingCurve().get(0.5f);
+        assertEquals(10 * eased, a.get(0.15f), 1e-4f);
+        assertEquals(100 - 50 * eased, b.get(0.15f), 1e-4f);
+
+        // with a wrap, each animation takes its own shortest way
+        FloatAnimation c = new FloatAnimation(cache.get(custom()));
+        FloatAnimation d = new FloatAnimation(cache.get(custom()));
+        c.setInitialValue(350);
+        c.setTargetValue(10);
+        d.setInitialValue(10);
+        d.setTargetValue(350);
+        assertEquals(370f, c.getTargetValue(), 0f);
+        assertEquals(350f, d.getTargetValue(), 0f);
+        assertEquals(10f, a.getTargetValue(), 0f);
+    }
+
+    @Test
+    public void expressionsReadTogetherShareTheirSpecs() {
+        RemoteComposeBuffer buffer = new RemoteComposeBuffer(new RemoteComposeState());
+        buffer.header(100, 100, "specs", 0);
+        for (int i = 0; i < 4; i++) {
+            buffer.addAnimatedFloat(new float[]{asNan(5000 + i), 2, MUL}, standard());
+        }
+        buffer.addAnimatedFloat(new float[]{asNan(5000), 3, MUL}, custom());
+        RemoteComposeBuffer document = RemoteComposeBuffer.fromByteBuffer(
+                ByteBuffer.wrap(buffer.toByteArray()), new RemoteComposeState());
+        ArrayList<Operation> operations = new ArrayList<>();
+        AnimationSpecCache cache = new AnimationSpecCache();
+        document.inflateFromBuffer(operations, new DocumentVerifier(), cache);
+
+        ArrayList<FloatAnimation> animations = new ArrayList<>();
+        for (Operation operation : operations) {
+            if (operation instanceof FloatExpression) {
+                animations.add(((FloatExpression) operation).getAnimation());
+            }
+        }
+        assertEquals(5, animations.size());
+        assertEquals(2, cache.size());
+        for (int i = 1; i < 4; i++) {
+            assertNotSame(animations.get(0), animations.get(i));
+            assertSame(animations.get(0).getSpec(), animations.get(i).getSpec());
+        }
+        assertNotSame(animations.get(0).getSpec(), animations.get(4).getSpec());
+        for (int i = 0; i < 4; i++) {
+            animations.get(i).setInitialValue(i);
+            animations.get(i).setTargetValue(10 * i);
+        }
+        for (int i = 0; i < 4; i++) {
+            assertEquals(i, animations.get(i).get(0), 0f);
+            assertEquals(10f * i, animations.get(i).get(1), 1e-5f);
+        }
+    }
+}
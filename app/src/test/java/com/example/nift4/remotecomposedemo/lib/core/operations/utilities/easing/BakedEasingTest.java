@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.nift4.remotecomposedemo.lib.core.operations.utilities.easing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class BakedEasingTest {
+    private static final int POINTS = 100003; // not aligned with the samples
+
+    private static Easing[] curves() {
+        return new Easing[]{
+                new CubicEasing(Easing.CUBIC_STANDARD),
+                new CubicEasing(Easing.CUBIC_ANTICIPATE),
+                new CubicEasing(Easing.CUBIC_OVERSHOOT),
+                new CubicEasing(0.1f, 0.9f, 0.2f, 1.5f),
+                new ElasticOutCurve(),
+                new StepCurve(new float[]{0, 0.3f, 0.2f, 0.9f, 1}, 0, 5),
+        };
+    }
+
+    private static float maxError(Easing curve, Easing baked) {
+        float error = 0;
+        for (int i = 0; i < POINTS; i++) {
+            float x = i / (float) POINTS;
+            error = Math.max(error, Math.abs(curve.get(x) - baked.get(x)));
+        }
+        return error;
+    }
+
+    @Test
+    public void bakedCurvesStayWithinTheirError() {
+        for (Easing curve : curves()) {
+            int segments = 0;
+            for (float maxError : new float[]{1e-2f, 1e-3f, 1e-4f}) {
+                BakedEasing baked = new BakedEasing(curve, maxError);
+                String name = curve.getClass().getSimpleName() + " " + maxError;
+                assertTrue(name, baked.getSegmentCount() >= segments);
+                segments = baked.getSegmentCount();
+                assertTrue(name + " " + segments, segments < 4096);
+                float error = maxError(curve, baked);
+                assertTrue(name + " error " + error, error <= maxError);
+                assertEquals(name, curve.getType(), baked.getType());
+            }
+        }
+    }
+
+    @Test
+    public void outsideOfTheTableTheCurveIsUsed() {
+        for (Easing curve : curves()) {
+            BakedEasing baked = new BakedEasing(curve, 1e-3f);
+            for (float x : new float[]{-0.5f, 1, 1.5f}) {
+                assertEquals(curve.get(x), baked.get(x), 0f);
+            }
+            assertEquals(curve.get(Float.NaN), baked.get(Float.NaN), 0f);
+            for (int i = 0; i <= 10; i++) {
+                assertEquals(curve.getDiff(i / 10f), baked.getDiff(i / 10f), 0f);
+            }
+            // the samples are exact
+            int segments = baked.getSegmentCount();
+            for (int i = 0; i < segments; i++) {
+                float x = i / (float) segments;
+                assertEquals(curve.get(x), baked.get(x), 1e-6f);
+            }
+        }
+    }
+}